@@ -0,0 +1,207 @@
+package DualSpeciesIsolation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ArrivalDistribution {
+
+    /**
+     * Earliest and latest arrival offset in ns of the distribution
+     */
+    private final long first;
+    private final long last;
+
+    /**
+     * cumulative[i] is the probability of an offset <= first + i
+     */
+    private final double[] cumulative;
+
+    /**
+     * sums[i] is the sum of cumulative[0] to cumulative[i]
+     */
+    private final double[] sums;
+
+    /*Abstraction Function:
+    The distribution of the arrival time of an ion of a bunch relative to the nominal arrival time, on a 1 ns grid
+    from first to last. Besides the cumulative probability P(x) of an offset <= x it keeps S(x), the sum of P(y) for
+    all y <= x, so the expected overlap of two runs moved by a random offset takes four lookups (see overlap).
+     */
+
+    /*Rep Invariant:
+    first <= last, cumulative and sums hold last - first + 1 entries, cumulative is non-decreasing from a value >= 0 to
+    exactly 1 and sums is its running sum.
+     */
+
+    /**
+     * @param first earliest offset in ns
+     * @param probabilities probability of each offset from first, 1 ns apart; non-empty, non-negative with a positive sum
+     */
+    private ArrivalDistribution(long first, double[] probabilities){
+
+        double total = 0;
+        for (double p : probabilities){
+            total += p;
+        }
+
+        this.first = first;
+        this.last = first + probabilities.length - 1;
+        this.cumulative = new double[probabilities.length];
+        this.sums = new double[probabilities.length];
+        double P = 0;
+        double S = 0;
+        for (int i = 0; i < probabilities.length; i++){
+            P += probabilities[i]/total;
+            S += P;
+            cumulative[i] = P;
+            sums[i] = S;
+        }
+        //rounding must not leave the distribution short of 1
+        cumulative[probabilities.length - 1] = 1;
+        sums[probabilities.length - 1] = S - P + 1;
+    }
+
+    /**
+     * @param mean the mean arrival offset in ns
+     * @param sigma the standard deviation of the arrival offset in ns; non-negative, all ions arrive at the mean
+     * (rounded to 1 ns) if 0
+     * @return a Gaussian arrival distribution sampled every ns, cut off 6 standard deviations from the mean
+     */
+    public static ArrivalDistribution gaussian(double mean, double sigma){
+
+        if (sigma <= 0){
+            return new ArrivalDistribution(java.lang.Math.round(mean), new double[]{1});
+        }
+
+        long low = (long) java.lang.Math.floor(mean - 6*sigma);
+        long high = (long) java.lang.Math.ceil(mean + 6*sigma);
+        double[] probabilities = new double[(int) (high - low + 1)];
+        for (int i = 0; i < probabilities.length; i++){
+            double z = (low + i - mean)/sigma;
+            probabilities[i] = java.lang.Math.exp(-z*z/2);
+        }
+        return new ArrivalDistribution(low, probabilities);
+    }
+
+    /**
+     * @param offsets the earliest offset in ns of every bin of the histogram; non-null
+     * @param weights the weight of every bin, spread evenly over its binWidth ns; non-negative with a positive sum and
+     * as many as offsets
+     * @param binWidth the width of every bin in ns; greater than zero
+     * @return the arrival distribution of the histogram
+     */
+    public static ArrivalDistribution histogram(long[] offsets, double[] weights, long binWidth){
+
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        for (long offset : offsets){
+            low = java.lang.Math.min(low, offset);
+            high = java.lang.Math.max(high, offset + binWidth - 1);
+        }
+
+        double[] probabilities = new double[(int) (high - low + 1)];
+        for (int k = 0; k < offsets.length; k++){
+            for (long t = offsets[k]; t < offsets[k] + binWidth; t++){
+                probabilities[(int) (t - low)] += weights[k]/binWidth;
+            }
+        }
+        return new ArrivalDistribution(low, probabilities);
+    }
+
+    /**
+     * Reads a measured arrival time histogram: the offset in ns of a bin and its weight on every line, skipping blank
+     * lines and lines starting with #
+     * @param reader reads the histogram; non-null
+     * @param binWidth the width of every bin in ns; greater than zero
+     * @return the arrival distribution of the histogram
+     * @throws IOException if the histogram can not be read
+     * @throws RepresentationViolation if a line is not an offset and a weight, or the histogram is empty
+     */
+    public static ArrivalDistribution readHistogram(BufferedReader reader, long binWidth) throws IOException, RepresentationViolation{
+
+        List<Long> offsets = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null){
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")){
+                continue;
+            }
+            String[] tokens = line.split("[\\s,;]+");
+            try {
+                offsets.add(java.lang.Math.round(Double.parseDouble(tokens[0])));
+                weights.add(Double.parseDouble(tokens[1]));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e){
+                throw new RepresentationViolation("Not a histogram bin: " + line);
+            }
+        }
+        if (offsets.isEmpty()){
+            throw new RepresentationViolation("Empty arrival time histogram");
+        }
+
+        long[] binOffsets = new long[offsets.size()];
+        double[] binWeights = new double[offsets.size()];
+        for (int k = 0; k < binOffsets.length; k++){
+            binOffsets[k] = offsets.get(k);
+            binWeights[k] = weights.get(k);
+        }
+        return histogram(binOffsets, binWeights, binWidth);
+    }
+
+    /**
+     * @return P(x), the probability of an offset <= x
+     */
+    private double cumulative(long x){
+        if (x < first){
+            return 0;
+        }
+        return x >= last ? 1 : cumulative[(int) (x - first)];
+    }
+
+    /**
+     * @return S(x), the sum of P(y) for y <= x
+     */
+    private double sum(long x){
+        if (x < first){
+            return 0;
+        }
+        return x >= last ? sums[sums.length - 1] + (x - last) : sums[(int) (x - first)];
+    }
+
+    /**
+     * The expected number of values in both of two runs when the second is moved by a random offset: a value t of
+     * [a, b] is in the moved run [c + d, e + d] when t - e <= d <= t - c, so summed over t the expectation is a
+     * difference of S at the four corners
+     * @param a first time of the fixed run in ns
+     * @param b last time of the fixed run in ns; at least a
+     * @param c first time of the moved run in ns
+     * @param e last time of the moved run in ns; at least c
+     * @return the expected overlap in ns
+     */
+    double overlap(long a, long b, long c, long e){
+        return sum(b - c) - sum(a - 1 - c) - sum(b - e - 1) + sum(a - e - 2);
+    }
+
+    /**
+     * @return the probability of an offset of exactly x ns
+     */
+    public double probability(long x){
+        return cumulative(x) - cumulative(x - 1);
+    }
+
+    /**
+     * @return the earliest arrival offset in ns of the distribution
+     */
+    public long getFirst(){
+        return first;
+    }
+
+    /**
+     * @return the latest arrival offset in ns of the distribution
+     */
+    public long getLast(){
+        return last;
+    }
+
+}
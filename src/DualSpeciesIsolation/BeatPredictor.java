@@ -0,0 +1,506 @@
+package DualSpeciesIsolation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+public class BeatPredictor {
+
+    /**
+     * Largest number of lighter mass cycles in a row without a Hi value of the combination for which the beat is
+     * predicted; beats with longer gaps (near equal periods) are sampled from the Hi runs instead
+     */
+    private static final int MAX_EMPTY_CYCLES = 64;
+
+    /**
+     * The first Mass of Interest
+     */
+    private final double MOI1;
+
+    /**
+     * The second Mass of Interest
+     */
+    private final double MOI2;
+
+    /**
+     * Number of MRSCycles of the heavier mass
+     */
+    private final double MRSCycles;
+
+    /**
+     * the percentage (in decimal) the duty cycle is OFF
+     */
+    private final double prop;
+
+    /**
+     * time for 1 Cs 1333 cycle in ns
+     */
+    private final double cycleCalib;
+
+    /**
+     * The time window of the gate in nanoseconds
+     */
+    private final int timeScale;
+
+    /**
+     * The timings of the heavier and lighter mass and the number of cycles of the lighter mass
+     */
+    private final MRSTiming heavyTiming;
+    private final MRSTiming lightTiming;
+    private final double lightCycles;
+
+    /*Abstraction Function:
+    The AND combination of the MRS waveforms of two masses without a start delay, sampled every nanosecond for
+    timeScale values from 0 ns. Between the start delays and the time either waveform is switched off both are square
+    waves, the heavier one Hi for heavyHi ns every P ns and the lighter one Hi for lightHi ns every Q ns (their
+    quantised periods), so the segments of the combination in every cycle of the lighter mass only depend on where
+    that cycle starts within the period of the heavier mass: its phase, which advances by Q mod P every cycle. The
+    statistics of that part are summed over the phases as an arithmetic progression modulo P (see
+    ModularProgression); the few runs before it and the switch off after it are taken from the Hi runs of the
+    waveforms (see IntervalWave).
+     */
+
+    /*Rep Invariant:
+    heavyTiming and lightTiming are non-null, MRSCycles > 0, lightCycles > 0, timeScale > 0 and cycleCalib > 0.
+     */
+
+    /**
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 < prop < 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     */
+    public BeatPredictor(double MOI1, double MOI2, double MRSCycles, double prop, double cycleCalib){
+
+        double heavyMass = java.lang.Math.max(MOI1, MOI2);
+        this.MOI1 = MOI1;
+        this.MOI2 = MOI2;
+        this.MRSCycles = MRSCycles;
+        this.prop = prop;
+        this.cycleCalib = cycleCalib;
+        this.timeScale = PulseGenerator.getSuggestedTimeScale(heavyMass, MRSCycles, prop, cycleCalib);
+        this.heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib);
+        this.lightTiming = new MRSTiming(java.lang.Math.min(MOI1, MOI2), prop, cycleCalib);
+        this.lightCycles = heavyTiming.getTimeOn(MRSCycles)/lightTiming.getCycleCalibration();
+    }
+
+    /**
+     * @return the times in ns of the first value of every segment of the combination after the first one, ie. the
+     * times of its Rise/Fall switches
+     */
+    public long[] switchTimes(){
+        return gate(0, timeScale).switchTimes();
+    }
+
+    /**
+     * Predicts the pulseScheme statistics of the combination. The cycles of the lighter mass while both waveforms
+     * are running are not visited one by one: the segment widths are piecewise linear in the phase of the cycle, and
+     * the number of segments, their Hi time, the peaks and the smallest widths with their positions are summed over
+     * the phases in O(log P) steps per linear piece. Only the first and last few cycles are built from Hi runs.
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @return the pulseScheme list (peaks, switches, minimum and second minimum widths and their positions, ...),
+     * equal to pulseScheme(MOI1, MOI2, MRSCycles, prop, timeScale, timeScale, adjacencyBreak, cycleCalib) with the
+     * suggested time scale
+     */
+    public int[] predict(int adjacencyBreak){
+
+        SegmentFold fold = new SegmentFold(0, 1, adjacencyBreak);
+        Beat beat = beat();
+        Segments tail;
+        if (beat == null){
+            tail = gate(0, timeScale).toSegments();
+        } else {
+            //the segments that start before the first predicted cycle; the last of them ends within the beat
+            Segments head = gate(0, (int) beat.headEnd).toSegments();
+            long start = 0;
+            for (int j = 0; start < beat.start; j++){
+                fold.add(head.getValue(j), head.getLength(j));
+                start += head.getLength(j);
+            }
+            beat.fold(fold, adjacencyBreak);
+            tail = gate(beat.tailStart, (int) (timeScale - beat.tailStart)).toSegments();
+        }
+
+        for (int j = 0; j < tail.size() - 1; j++){
+            fold.add(tail.getValue(j), tail.getLength(j));
+        }
+        int[] pkSwt = fold.finish(tail.getValue(tail.size() - 1), tail.getLength(tail.size() - 1));
+        pkSwt[9] = (int)((double)pkSwt[4]*100/PulseGenerator.normFactor(java.lang.Math.max(MOI1, MOI2), MRSCycles, prop, cycleCalib));
+        return pkSwt;
+    }
+
+    /**
+     * Predicts the statistics and, if asked, checks them against the sampled engine
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @param verify if the prediction is checked by sampling the waveforms every nanosecond
+     * @return the predicted statistics
+     * @throws SpecViolation if verify is true and the sampled statistics differ from the prediction
+     */
+    public int[] predict(int adjacencyBreak, boolean verify) throws SpecViolation{
+        int[] predicted = predict(adjacencyBreak);
+        if (verify){
+            int[] sampled = PulseGenerator.pulseScheme(MOI1, MOI2, MRSCycles, prop, timeScale, timeScale, adjacencyBreak, cycleCalib);
+            if (!Arrays.equals(predicted, sampled)){
+                throw new SpecViolation("Beat prediction " + Arrays.toString(predicted) + " differs from the sampled "
+                    + Arrays.toString(sampled) + " for " + MOI1 + "  " + MOI2);
+            }
+        }
+        return predicted;
+    }
+
+    /**
+     * @return the time window of the combination in nanoseconds
+     */
+    public int getTimeScale(){
+        return timeScale;
+    }
+
+    /**
+     * @return the combination from startTime for size values
+     */
+    private IntervalWave gate(long startTime, int size){
+        return new IntervalWave(heavyTiming, MRSCycles, 0, 0, startTime, size)
+            .and(new IntervalWave(lightTiming, lightCycles, 0, 0, startTime, size));
+    }
+
+    /**
+     * @return the start of the second Hi run and its length of the waveform while it is running, read from its
+     * second and third runs, or null if it is switched off before they are repeated
+     */
+    private long[] pattern(MRSTiming timing, double cycles){
+        long period = timing.getPeriod();
+        IntervalWave wave = new IntervalWave(timing, cycles, 0, 0, 0, (int) java.lang.Math.min(timeScale, timing.getTimeDelay() + 3*period));
+        //the first run may be cut by the start of the waveform
+        if (wave.getRunCount() < 3 || wave.getRunStart(2) - wave.getRunStart(1) != period
+            || wave.getRunEnd(2) - wave.getRunStart(2) != wave.getRunEnd(1) - wave.getRunStart(1)){
+            return null;
+        }
+        return new long[]{wave.getRunStart(1), wave.getRunEnd(1) - wave.getRunStart(1) + 1};
+    }
+
+    /**
+     * @return the part of the combination whose cycles are predicted, or null if it is too short or the gaps of the
+     * beat too long to predict
+     */
+    private Beat beat(){
+
+        long[] heavy = pattern(heavyTiming, MRSCycles);
+        long[] light = pattern(lightTiming, lightCycles);
+        long P = heavyTiming.getPeriod();
+        long Q = lightTiming.getPeriod();
+        if (heavy == null || light == null || Q > P){
+            return null;
+        }
+
+        Beat beat = new Beat(P, Q, heavy[0], heavy[1], light[0], light[1]);
+        int empty = beat.longestGap();
+        if (empty < 0){
+            return null;
+        }
+        beat.lookahead = empty + 1;
+
+        //every cycle predicted, and the Hi runs of the cycles searched for the next Hi value after it, end before
+        //either waveform is switched off
+        long stable = java.lang.Math.min(java.lang.Math.min(
+            (long) java.lang.Math.floor(heavyTiming.getTimeOn(MRSCycles) + heavyTiming.getTimeDelay()),
+            (long) java.lang.Math.floor(lightTiming.getTimeOn(lightCycles) + lightTiming.getTimeDelay())), timeScale - 1);
+        long first = beat.lightStart >= beat.heavyStart ? 0 : (beat.heavyStart - beat.lightStart + Q - 1)/Q;
+        long end = stable < beat.lightStart + beat.lightHi ? 0 : (stable - beat.lightStart - beat.lightHi + 1)/Q - beat.lookahead;
+        if (end - first < 1){
+            return null;
+        }
+
+        beat.first = first;
+        beat.count = end - first;
+        beat.start = beat.lightStart + first*Q;
+        beat.headEnd = beat.start + (beat.lookahead + 1)*Q;
+        long tailCycle = beat.lightStart + end*Q;
+        beat.tailStart = tailCycle + beat.nextHi(beat.phase(tailCycle), 0);
+        return beat;
+    }
+
+    /**
+     * The cycles of the lighter mass while both waveforms are running. Times relative to a cycle are from the start
+     * of its Hi run; the phase of a cycle is the time from the start of a Hi run of the heavier mass to the start of
+     * the cycle, modulo P.
+     */
+    private static final class Beat {
+
+        /**
+         * Periods of the heavier and lighter mass, and the start and length of their first Hi runs, in ns
+         */
+        private final long P;
+        private final long Q;
+        private final long heavyStart;
+        private final long heavyHi;
+        private final long lightStart;
+        private final long lightHi;
+
+        /**
+         * Number of cycles after a cycle searched for the next Hi value
+         */
+        private int lookahead;
+
+        /**
+         * Index of the first predicted cycle, number of predicted cycles and start time of the first one
+         */
+        private long first;
+        private long count;
+        private long start;
+
+        /**
+         * End of the waveform of the segments before the first predicted cycle, and start of the first segment
+         * after the predicted cycles
+         */
+        private long headEnd;
+        private long tailStart;
+
+        private Beat(long P, long Q, long heavyStart, long heavyHi, long lightStart, long lightHi){
+            this.P = P;
+            this.Q = Q;
+            this.heavyStart = heavyStart;
+            this.heavyHi = heavyHi;
+            this.lightStart = lightStart;
+            this.lightHi = lightHi;
+        }
+
+        /**
+         * @return the phase of the cycle starting at time
+         */
+        private long phase(long time){
+            return java.lang.Math.floorMod(time - heavyStart, P);
+        }
+
+        /**
+         * A cycle has no Hi value of the combination when its phase is in [heavyHi, P - lightHi]
+         * @return the largest number of cycles in a row without a Hi value, or -1 if it is more than MAX_EMPTY_CYCLES
+         */
+        private int longestGap(){
+            long low = heavyHi;
+            long high = P - lightHi;
+            if (low > high){
+                return 0;
+            }
+            //phases from which the next j cycles are all without a Hi value
+            List<long[]> phases = new ArrayList<>();
+            phases.add(new long[]{low, high});
+            int gap = 0;
+            while (!phases.isEmpty()){
+                gap++;
+                if (gap > MAX_EMPTY_CYCLES){
+                    return -1;
+                }
+                List<long[]> previous = new ArrayList<>();
+                for (long[] range : phases){
+                    long from = java.lang.Math.floorMod(range[0] - Q, P);
+                    long to = from + range[1] - range[0];
+                    addIntersection(previous, from, java.lang.Math.min(to, P - 1), low, high);
+                    if (to >= P){
+                        addIntersection(previous, 0, to - P, low, high);
+                    }
+                }
+                phases = previous;
+            }
+            return gap - 1;
+        }
+
+        private static void addIntersection(List<long[]> ranges, long from, long to, long low, long high){
+            from = java.lang.Math.max(from, low);
+            to = java.lang.Math.min(to, high);
+            if (from <= to){
+                ranges.add(new long[]{from, to});
+            }
+        }
+
+        /**
+         * @return the Hi values {start, end} of the combination in cycle j after a cycle of phase d, in order,
+         * relative to the start of that cycle
+         */
+        private List<long[]> overlaps(long d, int j){
+            List<long[]> overlaps = new ArrayList<>();
+            long lightFrom = j*Q;
+            long lightTo = j*Q + lightHi - 1;
+            //Hi run k of the heavier mass is at k*P - d, the first one starting at or before the light Hi run
+            for (long k = java.lang.Math.floorDiv(lightFrom + d, P); k*P - d <= lightTo; k++){
+                long from = java.lang.Math.max(k*P - d, lightFrom);
+                long to = java.lang.Math.min(k*P - d + heavyHi - 1, lightTo);
+                if (from <= to){
+                    overlaps.add(new long[]{from, to});
+                }
+            }
+            return overlaps;
+        }
+
+        /**
+         * @return the start of the first Hi value in or after cycle j after a cycle of phase d, relative to the start
+         * of that cycle
+         */
+        private long nextHi(long d, int j){
+            for (int next = j; next <= j + lookahead; next++){
+                List<long[]> overlaps = overlaps(d, next);
+                if (!overlaps.isEmpty()){
+                    return overlaps.get(0)[0];
+                }
+            }
+            throw new IllegalStateException("No Hi value within " + lookahead + " cycles");
+        }
+
+        /**
+         * @return the segments {value, start, length} that start in a cycle of phase d, relative to its start; every
+         * Hi value is followed by the Lo segment up to the next Hi value, and a cycle without a Hi value has none
+         */
+        private long[][] segments(long d){
+            List<long[]> overlaps = overlaps(d, 0);
+            long[][] segments = new long[2*overlaps.size()][];
+            for (int k = 0; k < overlaps.size(); k++){
+                long[] overlap = overlaps.get(k);
+                long next = k + 1 < overlaps.size() ? overlaps.get(k + 1)[0] : nextHi(d, 1);
+                segments[2*k] = new long[]{1, overlap[0], overlap[1] - overlap[0] + 1};
+                segments[2*k + 1] = new long[]{0, overlap[1] + 1, next - overlap[1] - 1};
+            }
+            return segments;
+        }
+
+        /**
+         * Adds the segments that start in the predicted cycles to fold
+         */
+        private void fold(SegmentFold fold, long adjacencyBreak){
+
+            //the phase of predicted cycle i
+            ModularProgression phases = new ModularProgression(phase(start), Q, P, count);
+
+            //every comparison of the segments changes at a phase c - j*Q mod P for the offsets c below
+            TreeSet<Long> breaks = new TreeSet<>();
+            breaks.add(0L);
+            long[] offsets = {0, 1, -lightHi, 1 - lightHi, heavyHi - 1, heavyHi, heavyHi + 1, heavyHi - lightHi,
+                heavyHi - lightHi + 1, heavyHi - lightHi + 2};
+            for (int j = 0; j <= lookahead + 1; j++){
+                for (long offset : offsets){
+                    breaks.add(java.lang.Math.floorMod(offset - j*Q, P));
+                }
+            }
+
+            long[] counts = new long[5];
+            Long lo = breaks.first();
+            while (lo != null){
+                Long next = breaks.higher(lo);
+                addPiece(fold, phases, lo, next == null ? P - 1 : next - 1, adjacencyBreak, counts);
+                lo = next;
+            }
+            fold.addCounted(counts[0], counts[1], counts[2], counts[3], counts[4], tailStart - 1);
+        }
+
+        /**
+         * Adds the segments of the predicted cycles with a phase from lo to hi, where every segment is a linear
+         * function of the phase (a piece is split if it is not)
+         * @param counts the number of segments, peaks, indetPeaks, inclPeaks and the Hi time so far
+         */
+        private void addPiece(SegmentFold fold, ModularProgression phases, long lo, long hi, long adjacencyBreak, long[] counts){
+
+            long cycles = phases.count(lo, hi);
+            if (cycles == 0){
+                return;
+            }
+            long[][] atLo = segments(lo);
+            if (lo < hi){
+                long middle = (lo + hi) >>> 1;
+                long[][] atNext = segments(lo + 1);
+                if (!isLinear(atLo, atNext, segments(middle), middle - lo) || !isLinear(atLo, atNext, segments(hi), hi - lo)){
+                    addPiece(fold, phases, lo, middle, adjacencyBreak, counts);
+                    addPiece(fold, phases, middle + 1, hi, adjacencyBreak, counts);
+                    return;
+                }
+                for (int s = 0; s < atLo.length; s++){
+                    addSegments(fold, phases, lo, hi, atLo[s], atNext[s][1] - atLo[s][1], atNext[s][2] - atLo[s][2], adjacencyBreak, counts);
+                }
+            } else {
+                for (long[] segment : atLo){
+                    addSegments(fold, phases, lo, hi, segment, 0, 0, adjacencyBreak, counts);
+                }
+            }
+        }
+
+        /**
+         * @return true if the segments at lo + step have the values of the segments at lo and lo + 1 and the starts
+         * and lengths on the line through them
+         */
+        private static boolean isLinear(long[][] atLo, long[][] atNext, long[][] at, long step){
+            if (atLo.length != atNext.length || atLo.length != at.length){
+                return false;
+            }
+            for (int s = 0; s < atLo.length; s++){
+                if (atLo[s][0] != atNext[s][0] || atLo[s][0] != at[s][0]){
+                    return false;
+                }
+                for (int k = 1; k <= 2; k++){
+                    if (at[s][k] != atLo[s][k] + step*(atNext[s][k] - atLo[s][k])){
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Adds one segment of every predicted cycle with a phase from lo to hi
+         * @param segment the segment {value, start, length} at phase lo
+         * @param startSlope the change of its start per ns of phase
+         * @param lengthSlope the change of its length per ns of phase
+         */
+        private void addSegments(SegmentFold fold, ModularProgression phases, long lo, long hi, long[] segment,
+                                 long startSlope, long lengthSlope, long adjacencyBreak, long[] counts){
+
+            long value = segment[0];
+            long cycles = phases.count(lo, hi);
+            counts[0] += cycles;
+            counts[1] += countShorter(phases, lo, hi, segment[2], lengthSlope, adjacencyBreak);
+            //the edges of a segment that is not the first one are 2 ns (see SegmentFold.add)
+            counts[2] += countShorter(phases, lo, hi, segment[2], lengthSlope, value == 0 ? adjacencyBreak + 2 : adjacencyBreak);
+            counts[3] += countShorter(phases, lo, hi, segment[2], lengthSlope, value == 1 ? adjacencyBreak - 2 : adjacencyBreak);
+            if (value == 1){
+                counts[4] += cycles*segment[2] + lengthSlope*(phases.sum(lo, hi) - lo*cycles);
+            }
+
+            //the shortest segment and the next longer one, each at its first cycle
+            long shortest;
+            long second;
+            if (lengthSlope == 0){
+                shortest = phases.smallest(lo, hi);
+                second = -1;
+            } else if (lengthSlope > 0){
+                shortest = phases.smallest(lo, hi);
+                second = phases.smallest(shortest + 1, hi);
+            } else {
+                shortest = phases.largest(lo, hi);
+                second = phases.largest(lo, shortest - 1);
+            }
+            for (long d : new long[]{shortest, second}){
+                if (d < 0){
+                    continue;
+                }
+                //for a constant length the first cycle of the piece has the first segment
+                long i = lengthSlope == 0 ? phases.first(lo, hi) : phases.first(d, d);
+                long phase = phases.get(i);
+                long length = segment[2] + lengthSlope*(phase - lo);
+                long end = start + i*Q + segment[1] + startSlope*(phase - lo) + length - 1;
+                fold.rank(length, end);
+            }
+        }
+
+        /**
+         * @return the number of predicted cycles with a phase d from lo to hi where length + slope*(d - lo) < limit
+         */
+        private static long countShorter(ModularProgression phases, long lo, long hi, long length, long slope, long limit){
+            if (slope == 0){
+                return length < limit ? phases.count(lo, hi) : 0;
+            }
+            if (slope > 0){
+                return phases.count(lo, java.lang.Math.min(hi, lo + java.lang.Math.floorDiv(limit - length + slope - 1, slope) - 1));
+            }
+            return phases.count(java.lang.Math.max(lo, lo + java.lang.Math.floorDiv(length - limit, -slope) + 1), hi);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package DualSpeciesIsolation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ContaminationMatrix {
+
+    /**
+     * Reads a list of candidate contaminant masses: the first value of every line, skipping blank lines and lines
+     * starting with #
+     * @param reader reads the candidate list; non-null
+     * @return the candidate masses in the order of the list
+     * @throws IOException if the list can not be read
+     * @throws RepresentationViolation if a line does not start with a mass
+     */
+    public static double[] readCandidates(BufferedReader reader) throws IOException, RepresentationViolation{
+
+        List<Double> candidates = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null){
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")){
+                continue;
+            }
+            try {
+                candidates.add(Double.parseDouble(line.split("[\\s,;]+")[0]));
+            } catch (NumberFormatException e){
+                throw new RepresentationViolation("Not a candidate mass: " + line);
+            }
+        }
+
+        double[] masses = new double[candidates.size()];
+        for (int k = 0; k < masses.length; k++){
+            masses[k] = candidates.get(k);
+        }
+        return masses;
+    }
+
+    /**
+     * Writes the contamination matrix as text, one line per candidate
+     * ("IOI  IO  Np  dTmin  dTmax  dTsum  C1  Cn", see IOISweep.contaminationMatrix)
+     * @param writer writes the matrix to a specified file; non-null
+     * @param candidates the candidate masses; non-null
+     * @param matrix the rows of IOISweep.contaminationMatrix for the candidates; non-null
+     * @throws IOException if writing to file is interrupted/fails
+     * @throws SpecViolation if matrix does not have one row per candidate
+     */
+    public static void write(Writer writer, double[] candidates, int[][] matrix) throws IOException, SpecViolation{
+        checkRows(candidates, matrix);
+        writer.write("IOI  IO  Np  dTmin  dTmax  dTsum  C1  Cn\n");
+        for (int k = 0; k < candidates.length; k++){
+            StringBuilder line = new StringBuilder().append(candidates[k]);
+            for (int value : matrix[k]){
+                line.append("  ").append(value);
+            }
+            writer.write(line.append('\n').toString());
+        }
+        writer.flush();
+    }
+
+    /**
+     * @throws SpecViolation if matrix does not have one row per candidate, so its rows can not be matched to them
+     */
+    private static void checkRows(double[] candidates, int[][] matrix) throws SpecViolation{
+        if (matrix.length != candidates.length){
+            throw new SpecViolation("Matrix has " + matrix.length + " rows for " + candidates.length + " candidates");
+        }
+    }
+
+    /**
+     * ContaminationMatrix candidateFile MOI1 MOI2 MRSCycles prop cycleCalib startCycle dualAndComb outputFile -
+     * computes how every candidate leaks through the dual MRS setup; the matrix is written as a NumPy int32 array if
+     * outputFile ends with .npy and as text otherwise
+     */
+    public static void main(String[] args){
+
+        if (args.length < 9){
+            System.out.println("ContaminationMatrix candidateFile MOI1 MOI2 MRSCycles prop cycleCalib startCycle dualAndComb outputFile");
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(args[0]))){
+            double[] candidates = readCandidates(reader);
+            IOISweep sweep = new IOISweep(Double.parseDouble(args[1]), Double.parseDouble(args[2]), Double.parseDouble(args[3]),
+                Double.parseDouble(args[4]), Double.parseDouble(args[5]), Double.parseDouble(args[6]), Boolean.parseBoolean(args[7]));
+            int[][] matrix = sweep.contaminationMatrix(candidates);
+            checkRows(candidates, matrix);
+
+            if (args[8].endsWith(".npy")){
+                if (matrix.length > 0){
+                    NpyWriter.writeMatrix(Path.of(args[8]), matrix);
+                }
+            } else {
+                try (Writer writer = new BufferedWriter(new FileWriter(args[8]))){
+                    write(writer, candidates, matrix);
+                }
+            }
+        } catch (IOException | RepresentationViolation | SpecViolation | IllegalStateException e){
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package DualSpeciesIsolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CycleCalibration {
+
+    /**
+     * The measured gate
+     */
+    private final Waveform measured;
+
+    /**
+     * Prefix counts of the Hi values of the measured gate
+     */
+    private final WaveformIndex index;
+
+    /**
+     * Time in ns of the first measured value on the time axis of the simulation (0 is the start of the waveforms)
+     */
+    private final long measuredStart;
+
+    /**
+     * Number of measured Hi values
+     */
+    private final long measuredHi;
+
+    /**
+     * The Masses of Interest, the number of MRSCycles of the heavier mass and the proportion the duty cycle is OFF
+     */
+    private final double heavyMass;
+    private final double lightMass;
+    private final double MRSCycles;
+    private final double prop;
+
+    /**
+     * True if the gate is the Dual MRS species combination, false if it is the heavier mass alone
+     */
+    private final Boolean dualAndComb;
+
+    /**
+     * Number of best settings the search is refined around at every step
+     */
+    private static final int SEARCH_BEAM = 4;
+
+    /**
+     * Correlation of every (cycleCalib, baseDelay) evaluated so far
+     */
+    private final Map<List<Double>, Double> scores = new ConcurrentHashMap<>();
+
+    /*Abstraction Function:
+    The agreement of a measured gate with the simulated gate of a dual (or single) MRS setup as a function of
+    cycleCalib and of the base delay of the waveforms. The score of a setting is the correlation of the two gates as
+    +1/-1 signals at the measured sample times; scores holds every score computed so far, so the steps of a coarse to
+    fine search that meet the same setting only simulate it once.
+     */
+
+    /*Rep Invariant:
+    measured, index and dualAndComb are non-null, index is the index of measured, measuredHi is its number of Hi
+    values, MRSCycles > 0 and heavyMass >= lightMass > 0.
+     */
+
+    /**
+     * @param measured the measured gate (see ScopeTrace); non-null with at least one value
+     * @param measuredStart time in ns of the first measured value, 0 being the start of the simulated waveforms
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param dualAndComb if the measured gate is a Dual MRS species combination waveform
+     */
+    public CycleCalibration(Waveform measured, long measuredStart, double MOI1, double MOI2, double MRSCycles, double prop, Boolean dualAndComb){
+        this.measured = measured;
+        this.index = measured.index();
+        this.measuredStart = measuredStart;
+        this.measuredHi = index.onTime(measured.getStartTime(), end())/measured.getResolution();
+        this.heavyMass = java.lang.Math.max(MOI1, MOI2);
+        this.lightMass = java.lang.Math.min(MOI1, MOI2);
+        this.MRSCycles = MRSCycles;
+        this.prop = prop;
+        this.dualAndComb = dualAndComb;
+    }
+
+    /**
+     * The simulated gate is only compared at the measured sample times, so every one of its Hi runs is counted
+     * against the measured gate with two prefix count lookups
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param baseDelay delay in ns before the first MRS cycle of a Cs 133 waveform; non-negative
+     * @return the correlation, between -1 and 1, of the measured gate and the gate simulated with cycleCalib and
+     * baseDelay, 1 if they agree at every measured sample
+     */
+    public double score(double cycleCalib, double baseDelay){
+        return scores.computeIfAbsent(List.of(cycleCalib, baseDelay), key -> correlation(cycleCalib, baseDelay));
+    }
+
+    private double correlation(double cycleCalib, double baseDelay){
+
+        long Resolution = measured.getResolution();
+        long size = measured.size();
+        long offset = measuredStart - measured.getStartTime();
+        IntervalWave gate = gate(cycleCalib, baseDelay, (int) java.lang.Math.max(0, measuredStart + size*Resolution));
+
+        long simulatedHi = 0;
+        long bothHi = 0;
+        for (int k = 0; k < gate.getRunCount(); k++){
+            //the run on the time axis of the measured gate
+            long start = gate.getRunStart(k) - offset;
+            long end = gate.getRunEnd(k) - offset;
+            long first = java.lang.Math.max(0, java.lang.Math.floorDiv(start - measured.getStartTime() + Resolution - 1, Resolution));
+            long last = java.lang.Math.min(size - 1, java.lang.Math.floorDiv(end - measured.getStartTime(), Resolution));
+            if (first <= last){
+                simulatedHi += last - first + 1;
+                bothHi += index.onTime(start, end + 1)/Resolution;
+            }
+        }
+
+        long disagree = measuredHi + simulatedHi - 2*bothHi;
+        return (double) (size - 2*disagree)/size;
+    }
+
+    /**
+     * @return the simulated gate from 0 ns for size values
+     */
+    private IntervalWave gate(double cycleCalib, double baseDelay, int size){
+        MRSTiming heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib, baseDelay);
+        IntervalWave gate = new IntervalWave(heavyTiming, MRSCycles, 0, 0, 0, size);
+        if (dualAndComb){
+            MRSTiming lightTiming = new MRSTiming(lightMass, prop, cycleCalib, baseDelay);
+            gate = gate.and(new IntervalWave(lightTiming, heavyTiming.getTimeOn(MRSCycles)/lightTiming.getCycleCalibration(), 0, 0, 0, size));
+        }
+        return gate;
+    }
+
+    /**
+     * Fits cycleCalib with the base delay fixed at MRSTiming.BASE_DELAY (see fit)
+     * @param minCalib the smallest cycleCalib searched in ns; greater than zero
+     * @param maxCalib the largest cycleCalib searched in ns; at least minCalib
+     * @param points the number of settings of each step; at least 2
+     * @param levels the number of steps; greater than zero
+     * @return {cycleCalib, baseDelay, score} of the best setting found
+     * @throws IllegalStateException if the score of a setting can not be evaluated
+     */
+    public double[] fit(double minCalib, double maxCalib, int points, int levels){
+        return fit(minCalib, maxCalib, MRSTiming.BASE_DELAY, MRSTiming.BASE_DELAY, points, levels);
+    }
+
+    /**
+     * Maximises the correlation over cycleCalib and the base delay by a coarse to fine grid search: every step scores
+     * a grid of points settings per fitted parameter around each of the best settings so far, in parallel, and the
+     * next step searches the grid cells next to the SEARCH_BEAM best settings that are not next to each other (the
+     * correlation has many local maxima, so more than one is followed). The timings are quantised to 5 ns, so the
+     * correlation is mostly flat between the cycleCalib values where a timing changes. The first step is at most
+     * half the spacing of the changes of any one quantised half cycle of either mass, but the changes of different
+     * timings interleave and the switch off time is not quantised, so a plateau narrower than the step can still
+     * fall between two settings; more points or levels make that less likely but do not rule it out.
+     * @param minCalib the smallest cycleCalib searched in ns; greater than zero
+     * @param maxCalib the largest cycleCalib searched in ns; at least minCalib
+     * @param minDelay the smallest base delay searched in ns; non-negative
+     * @param maxDelay the largest base delay searched in ns; at least minDelay, equal to it to keep the base delay fixed
+     * @param points the number of settings of each fitted parameter in each step; at least 2
+     * @param levels the number of steps; greater than zero
+     * @return {cycleCalib, baseDelay, score} of the best setting found
+     * @throws IllegalStateException if the score of a setting can not be evaluated (see ParallelTasks)
+     */
+    public double[] fit(double minCalib, double maxCalib, double minDelay, double maxDelay, int points, int levels){
+
+        int delayPoints = maxDelay > minDelay ? points : 1;
+        double calibHalf = (maxCalib - minCalib)/2;
+        double delayHalf = (maxDelay - minDelay)/2;
+        List<double[]> centres = new ArrayList<>();
+        centres.add(new double[]{minCalib + calibHalf, minDelay + delayHalf, 0});
+
+        //an offTime or onTime of 5 ns more takes at least 10/sqrt(mass/CALIBRATION_MASS) ns more cycleCalib, the
+        //least for the heavier mass
+        double quantum = 5/java.lang.Math.sqrt(heavyMass/MRSTiming.CALIBRATION_MASS);
+        double[] best = centres.get(0);
+        best[2] = -2;
+        for (int level = 0; level < levels; level++){
+            int calibPoints = level == 0 ? (int) java.lang.Math.max(points, java.lang.Math.ceil(2*calibHalf/quantum) + 1) : points;
+            double calibStep = 2*calibHalf/(calibPoints - 1);
+            double delayStep = delayPoints > 1 ? 2*delayHalf/(delayPoints - 1) : 0;
+
+            List<double[]> settings = new ArrayList<>();
+            for (double[] centre : centres){
+                for (int c = 0; c < calibPoints; c++){
+                    for (int d = 0; d < delayPoints; d++){
+                        settings.add(new double[]{centre[0] - calibHalf + c*calibStep,
+                            java.lang.Math.max(0, centre[1] - delayHalf + d*delayStep), 0});
+                    }
+                }
+            }
+            List<Double> results = ParallelTasks.evaluate(settings.size(), k -> score(settings.get(k)[0], settings.get(k)[1]));
+            for (int k = 0; k < settings.size(); k++){
+                settings.get(k)[2] = results.get(k);
+            }
+
+            settings.sort((x, y) -> Double.compare(y[2], x[2]));
+            if (settings.get(0)[2] > best[2]){
+                best = settings.get(0);
+            }
+            centres = new ArrayList<>();
+            for (double[] setting : settings){
+                if (centres.size() == SEARCH_BEAM){
+                    break;
+                }
+                //a setting next to one already followed is searched by the step around that one
+                if (centres.stream().noneMatch(centre -> java.lang.Math.abs(centre[0] - setting[0]) <= calibStep
+                    && java.lang.Math.abs(centre[1] - setting[1]) <= delayStep)){
+                    centres.add(setting);
+                }
+            }
+            calibHalf = calibStep;
+            delayHalf = delayStep;
+        }
+        return best;
+    }
+
+    /**
+     * @return the time in ns just after the last measured value
+     */
+    private long end(){
+        return measured.getStartTime() + (long) measured.size()*measured.getResolution();
+    }
+
+}
@@ -0,0 +1,106 @@
+package DualSpeciesIsolation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DeltaTPairs {
+
+    /**
+     * MRS cycle (times 5, see SingleMRSdeltaTPairs) and delta t in ns of each pair, one after the other
+     */
+    private final int[] pairs;
+
+    /**
+     * Number of pairs
+     */
+    private final int count;
+
+    /*Abstraction Function:
+    The MRS cycle and delta t pairs of SingleMRSdeltaTPairs: pair k has MRS cycle pairs[2k] and delta t pairs[2k+1],
+    for k < count, in the order the segments of the waveform are paired.
+     */
+
+    /*Rep Invariant:
+    pairs is non-null and holds at least 2*count entries, count is non-negative and the MRS cycles are non-decreasing.
+     */
+
+    private DeltaTPairs(int[] pairs, int count){
+        this.pairs = pairs;
+        this.count = count;
+    }
+
+    /**
+     * Pairs the segments of a waveform two at a time and gives each pair the MRS cycle of the first MRS end at or
+     * after the end of the pair, in one merge pass over the switch times and the MRS ends. A trailing segment without
+     * a partner is ignored.
+     * @param switches the times in ns of the first value of every segment of the waveform after the first one,
+     * increasing; non-null
+     * @param startTime the time in ns of the first value of the waveform
+     * @param pairStart the time in ns the pairs are counted from
+     * @param MRSEnds falling edges of the MRS waveform of the heavier mass, one per half MRS cycle, increasing; non-null
+     * @return the MRS cycle and delta t pairs of the waveform
+     */
+    static DeltaTPairs of(long[] switches, long startTime, long pairStart, long[] MRSEnds){
+
+        int[] pairs = new int[switches.length & ~1];
+        int count = 0;
+        int index = 0;
+        for (int i = 1; i < switches.length; i += 2){
+            //the pair is segments i-1 and i, which ends at the start of segment i+1
+            long time = pairStart + switches[i] - startTime;
+            while (index < MRSEnds.length && time > MRSEnds[index]){
+                index++;
+            }
+            if (index == MRSEnds.length){
+                break;
+            }
+            pairs[2*count] = (index+1)*10/2;
+            pairs[2*count + 1] = (int) (switches[i] - switches[i-1]);
+            count++;
+        }
+        return new DeltaTPairs(pairs, count);
+    }
+
+    /**
+     * @return the number of pairs
+     */
+    public int size(){
+        return count;
+    }
+
+    /**
+     * @param k index of a pair; 0 <= k < size()
+     * @return the MRS cycle of pair k, times 5 (see SingleMRSdeltaTPairs)
+     */
+    public int getCycle(int k){
+        return pairs[2*k];
+    }
+
+    /**
+     * @param k index of a pair; 0 <= k < size()
+     * @return the delta t of pair k in ns
+     */
+    public int getDeltaT(int k){
+        return pairs[2*k + 1];
+    }
+
+    /**
+     * @return the pairs one after the other, MRS cycle then delta t
+     */
+    public int[] toArray(){
+        return Arrays.copyOf(pairs, 2*count);
+    }
+
+    /**
+     * @return the pairs as the list of SingleMRSdeltaTPairs
+     */
+    public ArrayList<List<Integer>> toList(){
+        ArrayList<List<Integer>> MRSdeltaTPairs = new ArrayList<>(count);
+        for (int k = 0; k < count; k++){
+            MRSdeltaTPairs.add(List.of(getCycle(k), getDeltaT(k)));
+        }
+        return MRSdeltaTPairs;
+    }
+
+}
@@ -5,9 +5,18 @@ import javax.swing.JProgressBar;
 import javax.swing.JTextField;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class DualMRSWaveformStatistics {
 
@@ -29,6 +38,55 @@ public class DualMRSWaveformStatistics {
      * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
      */
     public static void DualMRSMassScanner(int window, int lowerBound, int inputMax, double MRSCycles, double proportional, int adjacencyBreak, boolean normOnly, FileWriter writer1, JTextField field, JProgressBar progBar, double cycleCalib) {
+        DualMRSMassScanner(window, lowerBound, inputMax, MRSCycles, proportional, adjacencyBreak, normOnly, writer1, field, progBar, cycleCalib, true);
+    }
+
+
+    /**
+     * Writes data on MRS wave merging for different masses to a specified file. The overall range of the scan
+     * is a trapezoidal shape with the initial height set at window size and starting at the lowerBound mass
+     * @param MRSCycles the number of MRSCycles; 0 < MRSCycles <= 850
+     * @param proportional the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable same bit sequence, ie. minimal length of bits in a Hi or Lo section.
+     *                       Must be grater than 1.
+     * @param window window size of masses to be scanned; non-null and window >= 0 and window < inputMax-lowerBound
+     * @param lowerBound smallest mass MRS waveform to start scan at; greater than 0
+     * @param inputMax the Max mass MRS waveform, where the scan finishes; greater or equal to lowerBound
+     * @param normOnly if Normalized On Times is the only wanted data
+     * @param writer1 file writer that is non-null and writes to a specified file
+     * @param field a textfield for displaying progress
+     * @param progBar a progress bar for displaying the end of task
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param tickAligned if each pair is sampled once per tick (the coarsest resolution keeping every edge) rather than
+     *                    once per nanosecond; the written statistics are the same
+     */
+    public static void DualMRSMassScanner(int window, int lowerBound, int inputMax, double MRSCycles, double proportional, int adjacencyBreak, boolean normOnly, FileWriter writer1, JTextField field, JProgressBar progBar, double cycleCalib, boolean tickAligned) {
+        DualMRSMassScanner(window, lowerBound, inputMax, MRSCycles, proportional, adjacencyBreak, normOnly, writer1, field, progBar, cycleCalib, tickAligned, null);
+    }
+
+
+    /**
+     * Writes data on MRS wave merging for different masses to a specified file. The overall range of the scan
+     * is a trapezoidal shape with the initial height set at window size and starting at the lowerBound mass
+     * @param MRSCycles the number of MRSCycles; 0 < MRSCycles <= 850
+     * @param proportional the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable same bit sequence, ie. minimal length of bits in a Hi or Lo section.
+     *                       Must be grater than 1.
+     * @param window window size of masses to be scanned; non-null and window >= 0 and window < inputMax-lowerBound
+     * @param lowerBound smallest mass MRS waveform to start scan at; greater than 0
+     * @param inputMax the Max mass MRS waveform, where the scan finishes; greater or equal to lowerBound
+     * @param normOnly if Normalized On Times is the only wanted data
+     * @param writer1 file writer that is non-null and writes to a specified file
+     * @param field a textfield for displaying progress
+     * @param progBar a progress bar for displaying the end of task
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param tickAligned if each pair is sampled once per tick (the coarsest resolution keeping every edge) rather than
+     *                    once per nanosecond; the written statistics are the same
+     * @param histogramWriter file writer for the segment histogram of every pair (see SegmentHistogram), which lets
+     *                        HistogramQuery recompute the peaks for any adjacency break without a new scan; the scan
+     *                        waits for every pair and then closes it; null if no histograms are wanted
+     */
+    public static void DualMRSMassScanner(int window, int lowerBound, int inputMax, double MRSCycles, double proportional, int adjacencyBreak, boolean normOnly, FileWriter writer1, JTextField field, JProgressBar progBar, double cycleCalib, boolean tickAligned, FileWriter histogramWriter) {
 
         int corecount = Runtime.getRuntime().availableProcessors();
         ExecutorService service = Executors.newFixedThreadPool(corecount);
@@ -46,10 +104,13 @@ public class DualMRSWaveformStatistics {
             else {
                 writer1.write("M1   M2  Mi  Br  Ma  OT  Sw  Mc Ss %C\n");
             }
+            if (histogramWriter != null){
+                histogramWriter.write("M1   M2  End  (n  length count ...) for Br, Ma and Mi in ns\n");
+            }
             for (int i = lowerBound; i <= upperBound; i++) {
                 for (int j = i; j <= upperBound; j++) {
                     if ((i <= max-5 && j <= max-5)||(i > (max-5) && j > (max-5))){
-                        service.execute(new Grapher(i, j, MRSCycles, proportional, PulseGenerator.getSuggestedTimeScale(j, MRSCycles, proportional, cycleCalib), PulseGenerator.getSuggestedTimeScale(j, MRSCycles, proportional, cycleCalib), adjacencyBreak, writer1, max, normOnly, field, progBar, cycleCalib));
+                        service.execute(new Grapher(i, j, MRSCycles, proportional, PulseGenerator.getSuggestedTimeScale(j, MRSCycles, proportional, cycleCalib), PulseGenerator.getSuggestedTimeScale(j, MRSCycles, proportional, cycleCalib), adjacencyBreak, writer1, max, normOnly, field, progBar, cycleCalib, tickAligned, histogramWriter));
                         System.out.println(i + "   " + j);
                         counter++;
                         System.out.println(counter);
@@ -59,10 +120,325 @@ public class DualMRSWaveformStatistics {
                     upperBound++;
                 }
             }
+            service.shutdown();
+            //the histogram file is only closed once every pair has been written to it
+            if (histogramWriter != null){
+                service.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+                histogramWriter.close();
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Fractional mass version of DualMRSMassScanner: scans every mass pair from lowerBound to inputMax in steps of
+     * massStep (eg. 0.01 u) whose masses differ by at most window (see DualMRSMassScanner(double[], ...))
+     * @param lowerBound smallest mass of the scan; greater than 0
+     * @param inputMax largest mass of the scan; greater or equal to lowerBound
+     * @param massStep the difference between consecutive masses; greater than zero
+     * @param window largest difference between the masses of a pair; non-negative
+     * @param MRSCycles the number of MRSCycles; 0 < MRSCycles <= 850
+     * @param proportional the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @param normOnly if Normalized On Times is the only wanted data
+     * @param writer writes the results to a specified file; non-null
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     */
+    public static void DualMRSMassScanner(double lowerBound, double inputMax, double massStep, double window, double MRSCycles, double proportional, int adjacencyBreak, boolean normOnly, Writer writer, double cycleCalib) {
+        double[] masses = ParameterSweep.range(lowerBound, inputMax, massStep);
+        for (int m = 0; m < masses.length; m++) {
+            //drop the rounding error of the steps so the masses are written as given
+            masses[m] = java.lang.Math.round(masses[m]*1e9)/1e9;
+        }
+        DualMRSMassScanner(masses, window, MRSCycles, proportional, adjacencyBreak, normOnly, writer, cycleCalib);
+    }
+
+
+    /**
+     * Writes data on MRS wave merging for every pair of an explicit list of (fractional) masses whose masses differ
+     * by at most window, in the columns of DualMRSMassScanner. The waveforms are sampled every nanosecond and
+     * combined from their Hi runs (see IntervalWave). The MRS timing of every mass is computed once, and the pairs are
+     * evaluated in parallel, one task per heavier mass, so the time window and the waveform of the heavier mass are
+     * built once for all of its lighter partners. Lines are written in order of the heavier mass, then the lighter mass.
+     * @param masses the masses to scan; non-null, each greater than 0
+     * @param window largest difference between the masses of a pair; non-negative
+     * @param MRSCycles the number of MRSCycles; 0 < MRSCycles <= 850
+     * @param proportional the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @param normOnly if Normalized On Times is the only wanted data
+     * @param writer writes the results to a specified file; non-null
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     */
+    public static void DualMRSMassScanner(double[] masses, double window, double MRSCycles, double proportional, int adjacencyBreak, boolean normOnly, Writer writer, double cycleCalib) {
+
+        double[] sorted = masses.clone();
+        java.util.Arrays.sort(sorted);
+
+        MRSTiming[] timings = new MRSTiming[sorted.length];
+        for (int m = 0; m < sorted.length; m++) {
+            timings[m] = new MRSTiming(sorted[m], proportional, cycleCalib);
+        }
+
+        int corecount = Runtime.getRuntime().availableProcessors();
+        ExecutorService service = Executors.newFixedThreadPool(corecount);
+        List<Future<int[][]>> tasks = new ArrayList<>();
+        int[] firstLight = new int[sorted.length];
+
+        for (int j = 0; j < sorted.length; j++) {
+            int heavy = j;
+            int first = j;
+            while (first > 0 && sorted[j] - sorted[first - 1] <= window) {
+                first--;
+            }
+            firstLight[j] = first;
+
+            tasks.add(service.submit(() -> {
+                MRSTiming heavyTiming = timings[heavy];
+                int timeScale = PulseGenerator.getSuggestedTimeScale(sorted[heavy], MRSCycles, proportional, cycleCalib);
+                double totalTime = heavyTiming.getTimeOn(MRSCycles);
+                IntervalWave heavyWave = new IntervalWave(heavyTiming, MRSCycles, 0, 0, 0, timeScale);
+
+                int[][] results = new int[heavy - firstLight[heavy] + 1][];
+                for (int i = firstLight[heavy]; i <= heavy; i++) {
+                    IntervalWave lightWave = new IntervalWave(timings[i], totalTime/timings[i].getCycleCalibration(), 0, 0, 0, timeScale);
+                    results[i - firstLight[heavy]] = PulseGenerator.pulseScheme(heavyWave.and(lightWave).toSegments(),
+                        sorted[heavy], MRSCycles, proportional, adjacencyBreak, cycleCalib);
+                }
+                return results;
+            }));
+        }
+        service.shutdown();
+
+        try {
+            if(normOnly){
+                writer.write("M1 M2 %C\n");
+            }
+            else {
+                writer.write("M1   M2  Mi  Br  Ma  OT  Sw  Mc Ss %C\n");
+            }
+            for (int j = 0; j < sorted.length; j++) {
+                int[][] results = tasks.get(j).get();
+                for (int i = firstLight[j]; i <= j; i++) {
+                    int[] temp = results[i - firstLight[j]];
+                    if (normOnly) {
+                        writer.write(sorted[i] + "  " + sorted[j] + "   " + temp[9] + "\n");
+                    }
+                    else {
+                        writer.write(sorted[i] + "  " + sorted[j] + "   " + temp[2] + "   " + temp[0] + "    " + temp[3] +
+                            "    " + temp[4] + "  " + temp[1] + "    " + temp[5] + "    " +
+                            temp[6] + "  " + temp[9] + "\n");
+                    }
+                }
+                writer.flush();
+            }
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * File names of the pulseScheme statistics written by DualMRSMassMatrix, in the order of the pulseScheme list
+     */
+    private static final String[] MATRIX_NAMES = {"peaks", "switches", "indetPeaks", "inclPeaks", "onTime",
+        "minWidth", "secondMinWidth", "minTime", "secondMinTime", "normOnTime"};
+
+
+    /**
+     * Computes the pulseScheme statistics of every mass pair from lowerBound to upperBound (tick-aligned sampling) and
+     * writes each statistic as a NumPy .npy int32 matrix to directory (peaks.npy, switches.npy, indetPeaks.npy,
+     * inclPeaks.npy, onTime.npy, minWidth.npy, secondMinWidth.npy, minTime.npy, secondMinTime.npy, normOnTime.npy).
+     * Element [a][b] of each matrix holds the statistic of masses lowerBound + a and lowerBound + b.
+     * @param lowerBound smallest mass of the scan; greater than 0
+     * @param upperBound largest mass of the scan; greater or equal to lowerBound
+     * @param MRSCycles the number of MRSCycles of the heavier mass; 0 < MRSCycles <= 850
+     * @param proportional the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param directory existing directory to write the matrices to; non-null
+     * @throws IllegalStateException if the statistics of a mass row can not be computed; no matrix is written then
+     */
+    public static void DualMRSMassMatrix(int lowerBound, int upperBound, double MRSCycles, double proportional, int adjacencyBreak, double cycleCalib, Path directory) {
+
+        int masses = upperBound - lowerBound + 1;
+        int[][][] matrices = new int[MATRIX_NAMES.length][masses][masses];
+
+        //every row is computed before any matrix is written, so a failed row never leaves zeros in the files
+        ParallelTasks.evaluate(masses, a -> {
+            for (int b = a; b < masses; b++) {
+                int j = b + lowerBound;
+                int[] temp = PulseGenerator.pulseScheme(a + lowerBound, j, MRSCycles, proportional,
+                    PulseGenerator.getSuggestedTimeScale(j, MRSCycles, proportional, cycleCalib), adjacencyBreak, cycleCalib);
+                for (int k = 0; k < MATRIX_NAMES.length; k++) {
+                    matrices[k][a][b] = temp[k];
+                    matrices[k][b][a] = temp[k];
+                }
+            }
+            return null;
+        });
+
+        try {
+            for (int k = 0; k < MATRIX_NAMES.length; k++) {
+                NpyWriter.writeMatrix(directory.resolve(MATRIX_NAMES[k] + ".npy"), matrices[k]);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-}
 
 
+    /**
+     * Preview mode of DualMRSMassScanner. The trapezoid is first scanned at a coarse mass stride (pairs lowerBound +
+     * k*massStride and k*massStride above it) with the waveforms sampled every coarseResolution nanoseconds. Each coarse
+     * pair stands for the cell of massStride by massStride pairs above and to the right of it; a cell is refined,
+     * every pair in it being scanned at full (tick-aligned) resolution, when the normalized On Time of its corners
+     * differs by more than normChange or its corners lie on both sides of normThreshold or peakThreshold.
+     * The coarse results are written as they are computed, marked "C", followed by the refined results, marked "R",
+     * in the columns of DualMRSMassScanner. The coarse lines are flushed after every row of the lighter mass and the
+     * refined ones after every cell, so a map can be drawn before the scan ends.
+     * @param window window size of masses to be scanned; window >= 0 and window < inputMax-lowerBound
+     * @param lowerBound smallest mass MRS waveform to start scan at; greater than 0
+     * @param inputMax the Max mass MRS waveform, where the scan finishes; greater or equal to lowerBound
+     * @param MRSCycles the number of MRSCycles; 0 < MRSCycles <= 850
+     * @param proportional the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than coarseResolution
+     * @param massStride the mass step of the coarse scan; greater than zero
+     * @param coarseResolution the time between samples of the coarse scan in nanoseconds; greater than zero
+     * @param normThreshold normalized On Time (%) whose crossing refines a cell, or -1 for none
+     * @param peakThreshold number of peaks (Br) whose crossing refines a cell, or -1 for none
+     * @param normChange largest normalized On Time (%) difference between the corners of a cell that is not refined
+     * @param writer writes the results to a specified file; non-null
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     */
+    public static void DualMRSMassScanPreview(int window, int lowerBound, int inputMax, double MRSCycles, double proportional, int adjacencyBreak, int massStride, int coarseResolution, int normThreshold, int peakThreshold, int normChange, Writer writer, double cycleCalib) {
+
+        int corecount = Runtime.getRuntime().availableProcessors();
+        ExecutorService service = Executors.newFixedThreadPool(corecount);
+
+        //coarse pairs whose cell holds at least one pair of the trapezoid
+        List<int[]> coarsePairs = new ArrayList<>();
+        List<Future<int[]>> coarseTasks = new ArrayList<>();
+        for (int i = lowerBound; i <= inputMax; i += massStride) {
+            for (int j = i; j <= inputMax && j - (i + massStride - 1) <= window; j += massStride) {
+                int mass1 = i;
+                int mass2 = j;
+                coarsePairs.add(new int[]{i, j});
+                coarseTasks.add(service.submit(() -> {
+                    int timeScale = PulseGenerator.getSuggestedTimeScale(mass2, MRSCycles, proportional, cycleCalib);
+                    return PulseGenerator.pulseScheme(mass1, mass2, MRSCycles, proportional, timeScale,
+                        java.lang.Math.max(1, timeScale/coarseResolution), adjacencyBreak, cycleCalib);
+                }));
+            }
+        }
+
+        MRSTiming[] timings = new MRSTiming[inputMax + 1];
+        for (int m = lowerBound; m <= inputMax; m++) {
+            timings[m] = new MRSTiming(m, proportional, cycleCalib);
+        }
+
+        try {
+            writer.write("Pa  M1   M2  Mi  Br  Ma  OT  Sw  Mc Ss %C\n");
+
+            Map<Long, int[]> coarse = new HashMap<>();
+            for (int k = 0; k < coarsePairs.size(); k++) {
+                int[] pair = coarsePairs.get(k);
+                int[] temp = coarseTasks.get(k).get();
+                coarse.put(pairKey(pair[0], pair[1]), temp);
+                writeScanLine(writer, "C", pair[0], pair[1], temp);
+                if (k + 1 == coarsePairs.size() || coarsePairs.get(k + 1)[0] != pair[0]) {
+                    writer.flush();
+                }
+            }
+
+            boolean[][] refined = new boolean[inputMax + 1][inputMax + 1];
+            List<List<int[]>> cellPairs = new ArrayList<>();
+            List<Future<List<int[]>>> refineTasks = new ArrayList<>();
+            for (int[] pair : coarsePairs) {
+                if (!refineCell(coarse, pair[0], pair[1], massStride, normThreshold, peakThreshold, normChange)) {
+                    continue;
+                }
+                List<int[]> pairs = new ArrayList<>();
+                for (int i = pair[0]; i < pair[0] + massStride && i <= inputMax; i++) {
+                    for (int j = java.lang.Math.max(i, pair[1]); j < pair[1] + massStride && j <= inputMax && j - i <= window; j++) {
+                        if (!refined[i][j]) {
+                            refined[i][j] = true;
+                            pairs.add(new int[]{i, j});
+                        }
+                    }
+                }
+                cellPairs.add(pairs);
+                refineTasks.add(service.submit(() -> {
+                    List<int[]> results = new ArrayList<>();
+                    for (int[] cellPair : pairs) {
+                        int timeScale = PulseGenerator.getSuggestedTimeScale(cellPair[1], MRSCycles, proportional, cycleCalib);
+                        results.add(PulseGenerator.pulseScheme(PulseGenerator.pulseSegments(timings[cellPair[1]], timings[cellPair[0]], MRSCycles, timeScale),
+                            cellPair[1], MRSCycles, proportional, adjacencyBreak, cycleCalib));
+                    }
+                    return results;
+                }));
+            }
+
+            for (int k = 0; k < refineTasks.size(); k++) {
+                List<int[]> results = refineTasks.get(k).get();
+                for (int p = 0; p < results.size(); p++) {
+                    writeScanLine(writer, "R", cellPairs.get(k).get(p)[0], cellPairs.get(k).get(p)[1], results.get(p));
+                }
+                writer.flush();
+            }
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        } finally {
+            //every task has been collected unless a result or a write failed; then the rest are cancelled
+            service.shutdownNow();
+        }
+    }
+
+
+    /**
+     * @return true if the statistics of the coarse pairs at the corners of the cell of (i, j) change sharply or cross
+     * a threshold (see DualMRSMassScanPreview)
+     */
+    private static boolean refineCell(Map<Long, int[]> coarse, int i, int j, int massStride, int normThreshold, int peakThreshold, int normChange) {
+
+        int[][] corners = {coarse.get(pairKey(i, j)), coarse.get(pairKey(i + massStride, j)),
+            coarse.get(pairKey(i, j + massStride)), coarse.get(pairKey(i + massStride, j + massStride))};
+
+        int minNorm = Integer.MAX_VALUE;
+        int maxNorm = Integer.MIN_VALUE;
+        int minPeaks = Integer.MAX_VALUE;
+        int maxPeaks = Integer.MIN_VALUE;
+        for (int[] corner : corners) {
+            if (corner == null) {
+                continue;
+            }
+            minNorm = java.lang.Math.min(minNorm, corner[9]);
+            maxNorm = java.lang.Math.max(maxNorm, corner[9]);
+            minPeaks = java.lang.Math.min(minPeaks, corner[0]);
+            maxPeaks = java.lang.Math.max(maxPeaks, corner[0]);
+        }
+
+        return maxNorm - minNorm > normChange
+            || (normThreshold >= 0 && minNorm < normThreshold && maxNorm >= normThreshold)
+            || (peakThreshold >= 0 && minPeaks <= peakThreshold && maxPeaks > peakThreshold);
+    }
+
+
+    /**
+     * @return a key identifying the mass pair (i, j)
+     */
+    private static long pairKey(int i, int j) {
+        return ((long) i << 32) | j;
+    }
+
+
+    /**
+     * Writes one line of DualMRSMassScanPreview, in the columns of DualMRSMassScanner after the pass marker
+     */
+    private static void writeScanLine(Writer writer, String pass, int mass1, int mass2, int[] temp) throws IOException {
+        writer.write(pass + "  " + mass1 + "  " + mass2 + "   " + temp[2] + "   " + temp[0] + "    " + temp[3] +
+            "    " + temp[4] + "  " + temp[1] + "    " + temp[5] + "    " +
+            temp[6] + "  " + temp[9] + "\n");
+    }
+}
@@ -0,0 +1,101 @@
+package DualSpeciesIsolation;
+
+class FFT {
+
+    /**
+     * Number of points of the transform
+     */
+    private final int points;
+
+    /**
+     * cos and -sin of 2*pi*k/points for k < points/2
+     */
+    private final double[] cos;
+    private final double[] sin;
+
+    /**
+     * Bit reversed index of every point
+     */
+    private final int[] reversed;
+
+    /*Abstraction Function:
+    An iterative radix-2 decimation in time discrete Fourier transform of points complex values, with its twiddle
+    factors and bit reversal permutation computed once so every transform of the same size reuses them.
+     */
+
+    /*Rep Invariant:
+    points is a power of two, at least 2; cos and sin hold points/2 entries and reversed holds points entries.
+     */
+
+    /**
+     * @param points the number of points of every transform; a power of two, at least 2
+     * @throws SpecViolation if points is not a power of two of at least 2, for which the bit reversal would be wrong
+     */
+    FFT(int points) throws SpecViolation{
+
+        if (points < 2 || Integer.bitCount(points) != 1){
+            throw new SpecViolation("Number of points must be a power of two, at least 2: " + points);
+        }
+        this.points = points;
+        this.cos = new double[points/2];
+        this.sin = new double[points/2];
+        this.reversed = new int[points];
+
+        for (int k = 0; k < points/2; k++){
+            double angle = 2*java.lang.Math.PI*k/points;
+            cos[k] = java.lang.Math.cos(angle);
+            sin[k] = -java.lang.Math.sin(angle);
+        }
+        int bits = Integer.numberOfTrailingZeros(points);
+        for (int i = 0; i < points; i++){
+            reversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    /**
+     * Replaces re and im by their discrete Fourier transform, X[k] = sum of x[n]*exp(-2*pi*i*k*n/points)
+     * @param re the real parts; points values, non-null
+     * @param im the imaginary parts; points values, non-null
+     */
+    void transform(double[] re, double[] im){
+
+        for (int i = 0; i < points; i++){
+            int j = reversed[i];
+            if (j > i){
+                double swap = re[i];
+                re[i] = re[j];
+                re[j] = swap;
+                swap = im[i];
+                im[i] = im[j];
+                im[j] = swap;
+            }
+        }
+
+        for (int length = 2; length <= points; length <<= 1){
+            int half = length >>> 1;
+            int stride = points/length;
+            for (int start = 0; start < points; start += length){
+                for (int k = 0; k < half; k++){
+                    double wr = cos[k*stride];
+                    double wi = sin[k*stride];
+                    int a = start + k;
+                    int b = a + half;
+                    double tr = re[b]*wr - im[b]*wi;
+                    double ti = re[b]*wi + im[b]*wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of points of the transform
+     */
+    int getPoints(){
+        return points;
+    }
+
+}
@@ -71,6 +71,16 @@ class Grapher  implements Runnable{
      */
     private final double cycleCalib;
 
+    /**
+     * True if the waveforms are sampled once per tick instead of once per step
+     */
+    private final boolean tickAligned;
+
+    /**
+     * file to write the segment histogram to; null if not wanted
+     */
+    private final FileWriter histogramWriter;
+
     /**
      * @param i The first Mass of Interest that is non-null and greater than 0
      * @param j The second Mass of Interest that is non-null and greater than 0
@@ -85,8 +95,10 @@ class Grapher  implements Runnable{
      * @param normOnly if normalized on times are the only data requested
      * @param field text field to display progress
      * @param progBar a progress bar to display end of task
+     * @param tickAligned if the waveforms are sampled once per tick (see PulseGenerator.getTickResolution); steps must equal timeScale
+     * @param histogramWriter writes the segment histogram of the mass pair to a specified file; null if not wanted
      */
-     public Grapher(int i, int j, double MRSCycles, double proportional, int timeScale, int steps, int adjacencyBreak, FileWriter writerA, int max, boolean normOnly, JTextField field, JProgressBar progBar, double cycleCalib){
+     public Grapher(int i, int j, double MRSCycles, double proportional, int timeScale, int steps, int adjacencyBreak, FileWriter writerA, int max, boolean normOnly, JTextField field, JProgressBar progBar, double cycleCalib, boolean tickAligned, FileWriter histogramWriter){
          this.i = i;
          this.j = j;
          this.MRSCycles = MRSCycles;
@@ -100,6 +112,8 @@ class Grapher  implements Runnable{
          this.field = field;
          this.progBar = progBar;
          this.cycleCalib = cycleCalib;
+         this.tickAligned = tickAligned;
+         this.histogramWriter = histogramWriter;
      }
 
      @Override
@@ -108,12 +122,22 @@ class Grapher  implements Runnable{
       */
      public void run() {
 
-         int[] temp = PulseGenerator
-             .pulseScheme( i, j, MRSCycles, proportional, timeScale, steps, adjacencyBreak, cycleCalib);
+         Segments segments;
+         if (tickAligned) {
+             segments = PulseGenerator
+                 .pulseSegments(i, j, MRSCycles, proportional, timeScale, cycleCalib);
+         } else {
+             segments = PulseGenerator
+                 .pulseSegments(i, j, MRSCycles, proportional, timeScale, steps, cycleCalib);
+         }
+         int[] temp = PulseGenerator.pulseScheme(segments, java.lang.Math.max(i, j), MRSCycles, proportional, adjacencyBreak, cycleCalib);
 
 
          synchronized(this){
              WriteFile.writeToFile(writerA,i,j,temp[2],temp[0],temp[3], max, temp[1], temp[4], temp[5], temp[6], temp[9], normOnly, field, progBar);
+             if (histogramWriter != null){
+                 WriteFile.writeHistogram(histogramWriter, i, j, max, new SegmentHistogram(segments));
+             }
          }
      }
  }
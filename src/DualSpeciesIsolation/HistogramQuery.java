@@ -0,0 +1,57 @@
+package DualSpeciesIsolation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+public class HistogramQuery {
+
+    /**
+     * Recomputes the peak counts of every mass pair of a histogram file written by DualMRSMassScanner for a new
+     * adjacency break, in the column order of the scan file (M1 M2 Mi Br Ma)
+     * @param reader reads the histogram file; non-null
+     * @param writer writes one line per mass pair; non-null
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds, as given to the scan; greater than zero
+     * @throws IOException if the file can not be read or written
+     * @throws RepresentationViolation if a line of the file is not a mass pair histogram
+     */
+    public static void query(BufferedReader reader, Writer writer, long adjacencyBreak) throws IOException, RepresentationViolation{
+
+        writer.write("M1   M2  Mi  Br  Ma\n");
+
+        String line;
+        while ((line = reader.readLine()) != null){
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens.length < 3 || tokens[0].equals("M1")){
+                continue;
+            }
+            SegmentHistogram histogram = SegmentHistogram.parse(tokens, 2);
+            writer.write(tokens[0] + "  " + tokens[1] + "   " + histogram.getIndetPeaks(adjacencyBreak) + "   "
+                + histogram.getPeaks(adjacencyBreak) + "    " + histogram.getInclPeaks(adjacencyBreak) + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * HistogramQuery histogramFile adjacencyBreak(ns) [outputFile]
+     */
+    public static void main(String[] args){
+
+        if (args.length < 2){
+            System.out.println("HistogramQuery histogramFile adjacencyBreak(ns) [outputFile]");
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(args[0]));
+             Writer writer = args.length > 2 ? new BufferedWriter(new FileWriter(args[2])) : new BufferedWriter(new OutputStreamWriter(System.out))){
+            query(reader, writer, Long.parseLong(args[1]));
+        } catch (IOException | RepresentationViolation e){
+            e.printStackTrace();
+        }
+    }
+
+}
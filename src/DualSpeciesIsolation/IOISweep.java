@@ -0,0 +1,290 @@
+package DualSpeciesIsolation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IOISweep {
+
+    /**
+     * Hi runs of the dual (or single) MRS gate the Ions of Interest are compared with
+     */
+    private final IntervalWave gate;
+
+    /**
+     * Time in ns the heavier Mass of Interest is switched on for
+     */
+    private final double totalTime;
+
+    /**
+     * Time in ns of the first value of the waveforms
+     */
+    private final long startTime;
+
+    /**
+     * The time window of the waveforms in nanoseconds
+     */
+    private final int timeScale;
+
+    /**
+     * the percentage (in decimal) the duty cycle is OFF
+     */
+    private final double prop;
+
+    /**
+     * time for 1 Cs 1333 cycle in ns
+     */
+    private final double cycleCalib;
+
+    /**
+     * timings in ns of the falling edges of the MRS waveform of the heavier mass, one per half MRS cycle
+     */
+    private final long[] MRSEnds;
+
+    /**
+     * time in ns the delta t pairs of SingleMRSdeltaTPairs are counted from
+     */
+    private final long pairStart;
+
+    /**
+     * Number of values in each row of contaminationMatrix
+     */
+    public static final int COLUMNS = 7;
+
+    /*Abstraction Function:
+    The MRS gate of a fixed dual (or single) species setup, sampled every nanosecond from startTime for timeScale
+    values, against which the leakage of any Ion of Interest is evaluated: the IOI waveform switched on for totalTime
+    from startTime is removed from gate (the specialised XOR combination of IOIWaveformOnTime).
+     */
+
+    /*Rep Invariant:
+    gate is non-null, with startTime as its start time and timeScale values; totalTime > 0, 0 <= prop <= 1,
+    cycleCalib > 0 and MRSEnds is non-null and increasing.
+     */
+
+    /**
+     * Builds the gate with the time window used by SingleMRSdeltaTPairs: the suggested time scale, or the shifted one
+     * if startCycle is not 0
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     */
+    public IOISweep(double MOI1, double MOI2, double MRSCycles, double prop, double cycleCalib, double startCycle, Boolean dualAndComb){
+        this(MOI1, MOI2, MRSCycles, prop, startCycle != 0
+                ? PulseGenerator.getSuggestedTimeScaleShifted(java.lang.Math.max(MOI1, MOI2), MRSCycles, prop, cycleCalib)
+                : PulseGenerator.getSuggestedTimeScale(java.lang.Math.max(MOI1, MOI2), MRSCycles, prop, cycleCalib),
+            cycleCalib, startCycle, dualAndComb);
+    }
+
+    /**
+     * Builds the gate once; every evaluation then equals the sampled IOIWaveformOnTime and adjacentIOILengths with
+     * steps equal to timeScale
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     */
+    public IOISweep(double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, double cycleCalib, double startCycle, Boolean dualAndComb){
+
+        MRSTiming heavyTiming = new MRSTiming(java.lang.Math.max(MOI1, MOI2), prop, cycleCalib);
+        MRSTiming lightTiming = new MRSTiming(java.lang.Math.min(MOI1, MOI2), prop, cycleCalib);
+
+        this.totalTime = heavyTiming.getTimeOn(MRSCycles);
+        this.startTime = startCycle != 0 ? heavyTiming.getStartDelay(startCycle) : 0;
+        this.timeScale = timeScale;
+        this.prop = prop;
+        this.cycleCalib = cycleCalib;
+
+        IntervalWave mainWave = new IntervalWave(heavyTiming, MRSCycles, startCycle, 0, startTime, timeScale);
+        if (dualAndComb){
+            mainWave = mainWave.and(new IntervalWave(lightTiming, totalTime/lightTiming.getCycleCalibration(), 0, startTime, startTime, timeScale));
+        }
+        this.gate = mainWave;
+
+        this.MRSEnds = PulseGenerator.getSingleMRSEnds(heavyTiming, MRSCycles, startCycle);
+        this.pairStart = startCycle != 0 ? heavyTiming.getTimeDelay() + PulseGenerator.halfCycles(startCycle)*heavyTiming.getPeriod() : 0;
+    }
+
+    /**
+     * @param gate the gate the Ions of Interest are compared with; non-null
+     * @param totalTime time in ns the heavier Mass of Interest is switched on for; greater than zero
+     * @param startTime time in ns of the first value of the waveforms
+     * @param timeScale the time window of the waveforms in nanoseconds
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param MRSEnds falling edges of the MRS waveform of the heavier mass, one per half MRS cycle; non-null
+     * @param pairStart time in ns the delta t pairs are counted from
+     */
+    IOISweep(IntervalWave gate, double totalTime, long startTime, int timeScale, double prop, double cycleCalib, long[] MRSEnds, long pairStart){
+        this.gate = gate;
+        this.totalTime = totalTime;
+        this.startTime = startTime;
+        this.timeScale = timeScale;
+        this.prop = prop;
+        this.cycleCalib = cycleCalib;
+        this.MRSEnds = MRSEnds;
+        this.pairStart = pairStart;
+    }
+
+    /**
+     * @param IOI Ion of Interest; greater than zero
+     * @return the waveform where the gate is Hi and the IOI waveform is Lo
+     */
+    private IntervalWave leakage(double IOI){
+        return gate.andNot(IOIWave(IOI));
+    }
+
+    /**
+     * @param IOI Ion of Interest; greater than zero
+     * @return the MRS waveform of the Ion of Interest, switched on for totalTime from startTime
+     * @throws IllegalArgumentException if IOI is not greater than zero, which would give NaN timings rather than an error
+     */
+    IntervalWave IOIWave(double IOI){
+        if (!(IOI > 0)){
+            throw new IllegalArgumentException("Ion of Interest must be greater than zero: " + IOI);
+        }
+        MRSTiming IOITiming = new MRSTiming(IOI, prop, cycleCalib);
+        return new IntervalWave(IOITiming, totalTime/IOITiming.getCycleCalibration(), 0, startTime, startTime, timeScale);
+    }
+
+    /**
+     * @param IOI Ion of Interest; greater than zero
+     * @return the total on time of the IOI waveform XOR-like combination in nanoseconds (see IOIWaveformOnTime)
+     */
+    public int onTime(double IOI){
+        return (int) leakage(IOI).onTime();
+    }
+
+    /**
+     * @param IOI Ion of Interest; greater than zero
+     * @return list of all segment lengths in ns of the specialised XOR combination of the gate and the IOI waveform,
+     * without the last segment (see adjacentIOILengths)
+     */
+    public ArrayList<Integer> adjacentLengths(double IOI){
+        return adjacentLengths(leakage(IOI));
+    }
+
+    /**
+     * @param leakage the XOR-like combination of the gate and an IOI waveform; non-null
+     * @return the segment lengths of leakage in ns without the last segment
+     */
+    private static ArrayList<Integer> adjacentLengths(IntervalWave leakage){
+        Segments segments = leakage.toSegments();
+        ArrayList<Integer> adjCounts = new ArrayList<>();
+        for (int j = 0; j < segments.size() - 1; j++){
+            adjCounts.add((int) segments.getLength(j));
+        }
+        return adjCounts;
+    }
+
+    /**
+     * @param IOI Ion of Interest; greater than zero
+     * @return a list of MRS cycles of the MRS waveform and its corresponding delta t values (see SingleMRSdeltaTPairs);
+     * a trailing segment without a partner is ignored
+     */
+    public ArrayList<List<Integer>> deltaTPairs(double IOI){
+        return compactDeltaTPairs(IOI).toList();
+    }
+
+    /**
+     * @param IOI Ion of Interest; greater than zero
+     * @return the MRS cycle and delta t pairs of deltaTPairs without boxing, for evaluating many Ions of Interest
+     * or start delays
+     */
+    public DeltaTPairs compactDeltaTPairs(double IOI){
+        return deltaTPairs(leakage(IOI));
+    }
+
+    /**
+     * @param leakage the XOR-like combination of the gate and an IOI waveform; non-null
+     * @return the MRS cycle and delta t pairs of the segments of leakage
+     */
+    private DeltaTPairs deltaTPairs(IntervalWave leakage){
+        return DeltaTPairs.of(leakage.switchTimes(), startTime, pairStart, MRSEnds);
+    }
+
+    /**
+     * Leakage of every Ion of Interest through the gate, evaluated in parallel. Each row holds the on time
+     * (onTime), then the statistics of the delta t pairs (deltaTPairs): their number, the smallest, largest and total
+     * delta t in ns, and the MRS cycle of the first and last pair (all 0 if there are no pairs).
+     * @param IOIs Ions of Interest; non-null, each greater than zero
+     * @return one row of COLUMNS values per Ion of Interest, in the order of IOIs
+     * @throws IllegalStateException if the row of an Ion of Interest can not be evaluated (see ParallelTasks)
+     */
+    public int[][] contaminationMatrix(double[] IOIs){
+        List<int[]> rows = ParallelTasks.evaluate(IOIs.length, k -> {
+            IntervalWave leakage = leakage(IOIs[k]);
+            DeltaTPairs pairs = deltaTPairs(leakage);
+
+            int[] row = new int[COLUMNS];
+            row[0] = (int) leakage.onTime();
+            row[1] = pairs.size();
+            if (pairs.size() > 0){
+                row[2] = Integer.MAX_VALUE;
+                for (int p = 0; p < pairs.size(); p++){
+                    row[2] = java.lang.Math.min(row[2], pairs.getDeltaT(p));
+                    row[3] = java.lang.Math.max(row[3], pairs.getDeltaT(p));
+                    row[4] += pairs.getDeltaT(p);
+                }
+                row[5] = pairs.getCycle(0);
+                row[6] = pairs.getCycle(pairs.size() - 1);
+            }
+            return row;
+        });
+        return rows.toArray(new int[0][]);
+    }
+
+    /**
+     * Evaluates onTime for every Ion of Interest in parallel (a range can be made with ParameterSweep.range)
+     * @param IOIs Ions of Interest; non-null, each greater than zero
+     * @return the on time of each Ion of Interest, in the order of IOIs
+     * @throws IllegalStateException if the on time of an Ion of Interest can not be evaluated
+     */
+    public int[] onTimes(double[] IOIs){
+        List<Integer> results = ParallelTasks.evaluate(IOIs.length, k -> onTime(IOIs[k]));
+        int[] onTimes = new int[IOIs.length];
+        for (int k = 0; k < IOIs.length; k++){
+            onTimes[k] = results.get(k);
+        }
+        return onTimes;
+    }
+
+    /**
+     * Evaluates adjacentLengths for every Ion of Interest in parallel
+     * @param IOIs Ions of Interest; non-null, each greater than zero
+     * @return the segment lengths of each Ion of Interest, in the order of IOIs
+     * @throws IllegalStateException if the segments of an Ion of Interest can not be evaluated
+     */
+    public List<ArrayList<Integer>> adjacentLengths(double[] IOIs){
+        return ParallelTasks.evaluate(IOIs.length, k -> adjacentLengths(IOIs[k]));
+    }
+
+    /**
+     * @return the gate the Ions of Interest are compared with
+     */
+    public IntervalWave getGate(){
+        return gate;
+    }
+
+    /**
+     * @return the time in ns of the first value of the waveforms
+     */
+    public long getStartTime(){
+        return startTime;
+    }
+
+    /**
+     * @return the time window of the waveforms in nanoseconds
+     */
+    public int getTimeScale(){
+        return timeScale;
+    }
+
+}
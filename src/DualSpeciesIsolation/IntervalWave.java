@@ -0,0 +1,392 @@
+package DualSpeciesIsolation;
+
+import java.util.Arrays;
+
+public class IntervalWave {
+
+    /**
+     * First Hi time in ns of each Hi run
+     */
+    private final long[] starts;
+
+    /**
+     * Last Hi time in ns of each Hi run
+     */
+    private final long[] ends;
+
+    /**
+     * Number of Hi runs
+     */
+    private final int count;
+
+    /**
+     * Time in nanoseconds of the first value of the waveform
+     */
+    private final long startTime;
+
+    /**
+     * Number of values in the waveform (one per nanosecond)
+     */
+    private final int size;
+
+    /*Abstraction Function:
+    A waveform sampled every nanosecond from startTime for size values, given by its Hi runs: the value at time t
+    is Hi exactly when starts[k] <= t <= ends[k] for some k < count. It holds the same values as a Waveform with a
+    Resolution of 1 ns, but its size in memory and the time to combine it grow with the number of edges only.
+     */
+
+    /*Rep Invariant:
+    starts and ends are non-null and hold at least count entries, startTime <= starts[k] <= ends[k] < startTime + size
+    for every k < count, and ends[k] + 1 < starts[k+1] (runs are sorted and never touch).
+     */
+
+    /**
+     * Constructs the Hi runs of an MRS waveform sampled every nanosecond; the values are those of
+     * Waveform(timing, MRSCycles, MRSStartCycle, MRSStartTime, startTime, 1, size)
+     * @param timing the quantised timings of the MRS waveform for the Mass of Interest; non-null
+     * @param MRSCycles Number of MRS Cycles/duty cycles for the wave; non-zero and non-negative, <= 850
+     * @param MRSStartCycle the number of MRS cycles used to delay the start of the MRS waveform; can not be negative
+     * @param MRSStartTime the start time of the MRS waveform in nanoseconds, used when MRSStartCycle is 0; can not be negative
+     * @param startTime the time in nanoseconds of the first value; not after the start of the MRS waveform
+     * @param size the number of values; non-negative
+     */
+    public IntervalWave(MRSTiming timing, double MRSCycles, double MRSStartCycle, long MRSStartTime, long startTime, int size){
+
+        long anchor;
+        long startB;
+        if (MRSStartCycle != 0){
+            anchor = timing.getStartDelay(MRSStartCycle);
+            startB = anchor;
+        }
+        else if (MRSStartTime != 0){
+            anchor = timing.getTimeDelay();
+            startB = MRSStartTime;
+        } else {
+            anchor = timing.getTimeDelay();
+            startB = anchor;
+        }
+
+        double timeOn = timing.getTimeOn(MRSCycles);
+        double cut = timeOn + startB;
+        double extended = timeOn + startB + timing.getOnTime();
+        long cutFloor = (long) java.lang.Math.floor(cut);
+        long extendedLast = (long) java.lang.Math.ceil(extended) - 1;
+        long period = timing.getPeriod();
+        long offTime = timing.getOffTime();
+        long last = startTime + size - 1;
+
+        long first = java.lang.Math.max(java.lang.Math.max(startB, anchor) + 1, startTime);
+        long limit = java.lang.Math.min(cutFloor, last);
+        int cycles = period == 0 || limit < first ? 0 : (int) ((limit - anchor)/period - (first - anchor)/period + 2);
+        long[] runStarts = new long[cycles + 1];
+        long[] runEnds = new long[cycles + 1];
+        int runs = 0;
+
+        //Hi runs of the pattern are anchor + k*period + offTime + 1 up to anchor + (k+1)*period - 1
+        if (period != 0 && limit >= first){
+            for (long k = (first - anchor)/period; anchor + k*period + offTime + 1 <= limit; k++){
+                long runStart = java.lang.Math.max(anchor + k*period + offTime + 1, first);
+                long runEnd = java.lang.Math.min(anchor + (k + 1)*period - 1, limit);
+                if (runStart <= runEnd){
+                    runStarts[runs] = runStart;
+                    runEnds[runs] = runEnd;
+                    runs++;
+                }
+            }
+        }
+
+        //If the pattern is Hi when the MRS is switched off, the Hi half continues to its end (at most one Hi half)
+        long next = cutFloor + 1;
+        if (cut > startB && timing.isHi(cut, anchor) && timing.isHi(next, anchor) && next > startB){
+            long runEnd = java.lang.Math.min(java.lang.Math.min(anchor + ((next - anchor)/period + 1)*period - 1, extendedLast), last);
+            long runStart = java.lang.Math.max(next, startTime);
+            if (runStart <= runEnd){
+                if (runs > 0 && runEnds[runs - 1] + 1 >= runStart){
+                    runEnds[runs - 1] = runEnd;
+                } else {
+                    runStarts[runs] = runStart;
+                    runEnds[runs] = runEnd;
+                    runs++;
+                }
+            }
+        }
+
+        this.starts = runStarts;
+        this.ends = runEnds;
+        this.count = runs;
+        this.startTime = startTime;
+        this.size = size;
+    }
+
+    /**
+     * @param starts first Hi time in ns of each Hi run
+     * @param ends last Hi time in ns of each Hi run
+     * @param count number of Hi runs
+     * @param startTime time in ns of the first value
+     * @param size number of values
+     */
+    private IntervalWave(long[] starts, long[] ends, int count, long startTime, int size){
+        this.starts = starts;
+        this.ends = ends;
+        this.count = count;
+        this.startTime = startTime;
+        this.size = size;
+    }
+
+    /**
+     * @param that a waveform with the same start time and size; non-null
+     * @return the AND combination of this waveform and that, as new Waveform(this, that, false)
+     */
+    public IntervalWave and(IntervalWave that){
+
+        long[] runStarts = new long[count + that.count];
+        long[] runEnds = new long[count + that.count];
+        int runs = 0;
+
+        int a = 0;
+        int b = 0;
+        while (a < count && b < that.count){
+            long runStart = java.lang.Math.max(starts[a], that.starts[b]);
+            long runEnd = java.lang.Math.min(ends[a], that.ends[b]);
+            if (runStart <= runEnd){
+                runStarts[runs] = runStart;
+                runEnds[runs] = runEnd;
+                runs++;
+            }
+            if (ends[a] < that.ends[b]){
+                a++;
+            } else {
+                b++;
+            }
+        }
+
+        return new IntervalWave(runStarts, runEnds, runs, startTime, size);
+    }
+
+    /**
+     * @param that a waveform with the same start time; non-null
+     * @return the specialised XOR combination of this waveform and that (Hi where this is Hi and that is Lo),
+     * as new Waveform(this, that, true)
+     */
+    public IntervalWave andNot(IntervalWave that){
+
+        long[] runStarts = new long[count + that.count];
+        long[] runEnds = new long[count + that.count];
+        int runs = 0;
+
+        int b = 0;
+        for (int a = 0; a < count; a++){
+            long runStart = starts[a];
+            while (b < that.count && that.ends[b] < runStart){
+                b++;
+            }
+            int c = b;
+            while (c < that.count && that.starts[c] <= ends[a]){
+                if (that.starts[c] > runStart){
+                    if (runs == runStarts.length){
+                        runStarts = Arrays.copyOf(runStarts, runs*2 + 1);
+                        runEnds = Arrays.copyOf(runEnds, runs*2 + 1);
+                    }
+                    runStarts[runs] = runStart;
+                    runEnds[runs] = that.starts[c] - 1;
+                    runs++;
+                }
+                runStart = that.ends[c] + 1;
+                c++;
+            }
+            if (runStart <= ends[a]){
+                if (runs == runStarts.length){
+                    runStarts = Arrays.copyOf(runStarts, runs*2 + 1);
+                    runEnds = Arrays.copyOf(runEnds, runs*2 + 1);
+                }
+                runStarts[runs] = runStart;
+                runEnds[runs] = ends[a];
+                runs++;
+            }
+        }
+
+        return new IntervalWave(runStarts, runEnds, runs, startTime, java.lang.Math.max(size, that.size));
+    }
+
+    /**
+     * Combines any number of waveforms in one pass over their edges: the result is Hi where every gate is Hi and no
+     * exclusion is Hi, as gates[0].and(gates[1])...andNot(exclusions[0])... would give without the intermediate waveforms
+     * @param gates the waveforms that must all be Hi; non-null, at least one, with the same start time
+     * @param exclusions the waveforms that must all be Lo; non-null, with the same start time as the gates
+     * @return the combination of the waveforms, with the size of the largest of them
+     */
+    public static IntervalWave combine(IntervalWave[] gates, IntervalWave[] exclusions){
+
+        IntervalWave[] waves = new IntervalWave[gates.length + exclusions.length];
+        System.arraycopy(gates, 0, waves, 0, gates.length);
+        System.arraycopy(exclusions, 0, waves, gates.length, exclusions.length);
+
+        //every run of the result starts at the start of a gate run or just after the end of an exclusion run
+        int size = 0;
+        int capacity = 1;
+        for (IntervalWave wave : waves){
+            size = java.lang.Math.max(size, wave.size);
+            capacity += wave.count;
+        }
+        long[] runStarts = new long[capacity];
+        long[] runEnds = new long[capacity];
+        int runs = 0;
+
+        //index of the next run of each waveform, and whether the waveform is inside that run
+        int[] index = new int[waves.length];
+        boolean[] hi = new boolean[waves.length];
+        int hiGates = 0;
+        int hiExclusions = 0;
+        boolean on = false;
+
+        while (true){
+            //the next edge of any waveform: the start of its next run or the value after the end of its current run
+            long time = Long.MAX_VALUE;
+            for (int w = 0; w < waves.length; w++){
+                if (index[w] < waves[w].count){
+                    time = java.lang.Math.min(time, hi[w] ? waves[w].ends[index[w]] + 1 : waves[w].starts[index[w]]);
+                }
+            }
+            if (time == Long.MAX_VALUE){
+                break;
+            }
+
+            for (int w = 0; w < waves.length; w++){
+                if (index[w] < waves[w].count && time == (hi[w] ? waves[w].ends[index[w]] + 1 : waves[w].starts[index[w]])){
+                    int change = hi[w] ? -1 : 1;
+                    if (hi[w]){
+                        index[w]++;
+                    }
+                    hi[w] = !hi[w];
+                    if (w < gates.length){
+                        hiGates += change;
+                    } else {
+                        hiExclusions += change;
+                    }
+                }
+            }
+
+            boolean next = hiGates == gates.length && hiExclusions == 0;
+            if (next && !on){
+                runStarts[runs] = time;
+            }
+            else if (!next && on){
+                runEnds[runs] = time - 1;
+                runs++;
+            }
+            on = next;
+        }
+
+        return new IntervalWave(runStarts, runEnds, runs, gates[0].startTime, size);
+    }
+
+    /**
+     * @param offset the time in ns to move the waveform by
+     * @return this waveform moved later in time by offset, with the same size
+     */
+    public IntervalWave shift(long offset){
+        long[] runStarts = new long[count];
+        long[] runEnds = new long[count];
+        for (int k = 0; k < count; k++){
+            runStarts[k] = starts[k] + offset;
+            runEnds[k] = ends[k] + offset;
+        }
+        return new IntervalWave(runStarts, runEnds, count, startTime + offset, size);
+    }
+
+    /**
+     * @return the number of Hi values, ie. the on time in ns
+     */
+    public long onTime(){
+        long onTime = 0;
+        for (int k = 0; k < count; k++){
+            onTime += ends[k] - starts[k] + 1;
+        }
+        return onTime;
+    }
+
+    /**
+     * @return the Hi/Lo segments of the waveform with a resolution of 1 ns
+     */
+    public Segments toSegments(){
+
+        int[] values = new int[2*count + 1];
+        long[] lengths = new long[2*count + 1];
+        int runs = 0;
+        long time = startTime;
+        for (int k = 0; k < count; k++){
+            if (starts[k] > time){
+                values[runs] = 0;
+                lengths[runs] = starts[k] - time;
+                runs++;
+            }
+            values[runs] = 1;
+            lengths[runs] = ends[k] - starts[k] + 1;
+            runs++;
+            time = ends[k] + 1;
+        }
+        if (time < startTime + size){
+            values[runs] = 0;
+            lengths[runs] = startTime + size - time;
+            runs++;
+        }
+
+        return new Segments(values, lengths, runs, startTime, 1);
+    }
+
+    /**
+     * @return the times in ns of the first value of every segment after the first one, ie. the times of the
+     * Rise/Fall switches, increasing
+     */
+    public long[] switchTimes(){
+        long[] switches = new long[2*count];
+        int switchCount = 0;
+        for (int k = 0; k < count; k++){
+            if (starts[k] > startTime){
+                switches[switchCount++] = starts[k];
+            }
+            if (ends[k] + 1 < startTime + size){
+                switches[switchCount++] = ends[k] + 1;
+            }
+        }
+        return Arrays.copyOf(switches, switchCount);
+    }
+
+    /**
+     * @return the number of Hi runs
+     */
+    public int getRunCount(){
+        return count;
+    }
+
+    /**
+     * @param k index of a Hi run; 0 <= k < getRunCount()
+     * @return the first Hi time in ns of run k
+     */
+    public long getRunStart(int k){
+        return starts[k];
+    }
+
+    /**
+     * @param k index of a Hi run; 0 <= k < getRunCount()
+     * @return the last Hi time in ns of run k
+     */
+    public long getRunEnd(int k){
+        return ends[k];
+    }
+
+    /**
+     * @return the number of values
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return the time in nanoseconds of the first value
+     */
+    public long getStartTime(){
+        return startTime;
+    }
+
+}
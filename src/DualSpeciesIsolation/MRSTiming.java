@@ -0,0 +1,209 @@
+package DualSpeciesIsolation;
+
+public class MRSTiming {
+
+    /**
+     * Base delay in ns before the first MRS cycle of a Cs 133 waveform
+     */
+    public static final double BASE_DELAY = 32800;
+
+    /**
+     * Mass used to calibrate the MRS cycle time (Cs 133)
+     */
+    public static final double CALIBRATION_MASS = 132.905;
+
+    /**
+     * Mass of Interest
+     */
+    private final double MOI;
+
+    /**
+     * The percentage (in decimal) the duty cycle is OFF
+     */
+    private final double prop;
+
+    /**
+     * time for 1 Cs 1333 cycle in ns
+     */
+    private final double cycleCalib;
+
+    /**
+     * delay in ns before the first MRS cycle of a Cs 133 waveform
+     */
+    private final double baseDelay;
+
+    /**
+     * time of one MRS cycle of the Mass of Interest in ns
+     */
+    private final double cycleCalibration;
+
+    /**
+     * Lo (passing) half of an MRS cycle in ns, quantised to 5 ns
+     */
+    private final long offTime;
+
+    /**
+     * Hi (blocking) half of an MRS cycle in ns, quantised to 5 ns
+     */
+    private final long onTime;
+
+    /**
+     * delay in ns before the first MRS cycle, quantised to 5 ns
+     */
+    private final long timeDelay;
+
+    /*Abstraction Function:
+    The quantised timings of an MRS waveform for a single mass. Every cycle starts with a Lo section of offTime
+    nanoseconds followed by a Hi section of onTime nanoseconds. The first cycle starts timeDelay nanoseconds after
+    the start of the waveform, or at a start delay given in MRS cycles.
+     */
+
+    /*Rep Invariant:
+    offTime, onTime and timeDelay are non-negative multiples of 5.
+     */
+
+    /**
+     * Computes the quantised timings of an MRS waveform
+     * @param MOI Mass of Interest that is non zero and non negative
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     */
+    public MRSTiming(double MOI, double prop, double cycleCalib){
+        this(MOI, prop, cycleCalib, BASE_DELAY);
+    }
+
+    /**
+     * Computes the quantised timings of an MRS waveform with a base delay other than BASE_DELAY, eg. one fitted to a
+     * measured waveform (see CycleCalibration)
+     * @param MOI Mass of Interest that is non zero and non negative
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param baseDelay delay in ns before the first MRS cycle of a Cs 133 waveform; non-negative
+     */
+    public MRSTiming(double MOI, double prop, double cycleCalib, double baseDelay){
+        double massRatio = java.lang.Math.sqrt((MOI/CALIBRATION_MASS));
+
+        this.MOI = MOI;
+        this.prop = prop;
+        this.cycleCalib = cycleCalib;
+        this.baseDelay = baseDelay;
+        this.cycleCalibration = cycleCalib*massRatio;
+        this.offTime = 5*(int)((prop*cycleCalibration/2)/5);
+        this.onTime = 5*(int)(((1-prop)*cycleCalibration/2)/5);
+        this.timeDelay = 5*(int)(((baseDelay*massRatio) - (offTime/2))/5);
+    }
+
+    /**
+     * @param startCycle the number of MRS cycles used to delay the start of the MRS waveform; can not be negative
+     * @return the time in ns of the first MRS cycle when it is delayed by startCycle cycles, quantised to 5 ns
+     */
+    public long getStartDelay(double startCycle){
+        double massRatio = java.lang.Math.sqrt((MOI/CALIBRATION_MASS));
+        return 5*(int)(((baseDelay*massRatio) - (offTime/2) + (startCycle*cycleCalibration))/5);
+    }
+
+    /**
+     * @param MRSCycles the number of MRS cycles; greater than zero
+     * @return the time the MRS is ON in ns (not quantised)
+     */
+    public double getTimeOn(double MRSCycles){
+        return cycleCalibration*MRSCycles;
+    }
+
+    /**
+     * Determines the value of the MRS cycle pattern at a time; the pattern is Lo up to and including the end of
+     * every Lo half and Hi strictly between the end of a Lo half and the end of the following Hi half
+     * @param time the time in ns
+     * @param anchor the time in ns where the first Lo half starts
+     * @return true if the pattern is Hi at time
+     */
+    public boolean isHi(long time, long anchor){
+        long period = offTime + onTime;
+        if (time <= anchor || period == 0){
+            return false;
+        }
+        return (time - anchor) % period > offTime;
+    }
+
+    /**
+     * Determines the value of the MRS cycle pattern at a time that is not necessarily a whole number of nanoseconds
+     * @param time the time in ns
+     * @param anchor the time in ns where the first Lo half starts
+     * @return true if the pattern is Hi at time
+     */
+    public boolean isHi(double time, long anchor){
+        long floor = (long) java.lang.Math.floor(time);
+        long period = offTime + onTime;
+        if (floor == time){
+            return isHi(floor, anchor);
+        }
+        if (floor < anchor || period == 0){
+            return false;
+        }
+        return (floor - anchor) % period >= offTime;
+    }
+
+    /**
+     * @return the Mass of Interest
+     */
+    public double getMass(){
+        return MOI;
+    }
+
+    /**
+     * @return the percentage (in decimal) the duty cycle is OFF
+     */
+    public double getProp(){
+        return prop;
+    }
+
+    /**
+     * @return time for 1 Cs 1333 cycle in ns
+     */
+    public double getCycleCalib(){
+        return cycleCalib;
+    }
+
+    /**
+     * @return delay in ns before the first MRS cycle of a Cs 133 waveform
+     */
+    public double getBaseDelay(){
+        return baseDelay;
+    }
+
+    /**
+     * @return time of one MRS cycle of the Mass of Interest in ns
+     */
+    public double getCycleCalibration(){
+        return cycleCalibration;
+    }
+
+    /**
+     * @return Lo half of an MRS cycle in ns
+     */
+    public long getOffTime(){
+        return offTime;
+    }
+
+    /**
+     * @return Hi half of an MRS cycle in ns
+     */
+    public long getOnTime(){
+        return onTime;
+    }
+
+    /**
+     * @return quantised period of an MRS cycle in ns
+     */
+    public long getPeriod(){
+        return offTime + onTime;
+    }
+
+    /**
+     * @return delay in ns before the first MRS cycle
+     */
+    public long getTimeDelay(){
+        return timeDelay;
+    }
+
+}
@@ -0,0 +1,207 @@
+package DualSpeciesIsolation;
+
+class ModularProgression {
+
+    /**
+     * First value, step and modulus of the progression
+     */
+    private final long start;
+    private final long step;
+    private final long modulus;
+
+    /**
+     * Number of values
+     */
+    private final long count;
+
+    /*Abstraction Function:
+    The values x_i = (start + i*step) mod modulus for 0 <= i < count. Counts, sums and extremes of the values within
+    a range are computed with floor sums and Euclid-like recursions, in O(log modulus) rather than O(count) steps.
+     */
+
+    /*Rep Invariant:
+    modulus > 0, 0 <= start < modulus, 0 <= step < modulus and count >= 0.
+     */
+
+    /**
+     * @param start the first value; any integer, taken modulo modulus
+     * @param step the difference between consecutive values; any integer, taken modulo modulus
+     * @param modulus the modulus; greater than zero
+     * @param count the number of values; non-negative
+     */
+    ModularProgression(long start, long step, long modulus, long count){
+        this.start = java.lang.Math.floorMod(start, modulus);
+        this.step = java.lang.Math.floorMod(step, modulus);
+        this.modulus = modulus;
+        this.count = count;
+    }
+
+    /**
+     * @return the value with index i; 0 <= i < count
+     */
+    long get(long i){
+        return (start + i % modulus*step) % modulus;
+    }
+
+    /**
+     * @return the number of values x with lo <= x <= hi
+     */
+    long count(long lo, long hi){
+        lo = java.lang.Math.max(lo, 0);
+        hi = java.lang.Math.min(hi, modulus - 1);
+        return lo > hi ? 0 : countFrom(lo) - countFrom(hi + 1);
+    }
+
+    /**
+     * @return the sum of the values x with lo <= x <= hi
+     */
+    long sum(long lo, long hi){
+        lo = java.lang.Math.max(lo, 0);
+        hi = java.lang.Math.min(hi, modulus - 1);
+        return lo > hi ? 0 : sumFrom(lo) - sumFrom(hi + 1);
+    }
+
+    /**
+     * @return the smallest index i with lo <= x_i <= hi, or -1 if there is none
+     */
+    long first(long lo, long hi){
+        lo = java.lang.Math.max(lo, 0);
+        hi = java.lang.Math.min(hi, modulus - 1);
+        if (lo > hi || count == 0){
+            return -1;
+        }
+        //x_i is in the range when i*step mod modulus is in the range moved by -start, which may wrap around 0
+        long from = lo - start;
+        long to = hi - start;
+        long i;
+        if (from >= 0){
+            i = firstMultiple(step, modulus, from, to);
+        } else if (to < 0){
+            i = firstMultiple(step, modulus, from + modulus, to + modulus);
+        } else {
+            i = 0;
+        }
+        return i >= 0 && i < count ? i : -1;
+    }
+
+    /**
+     * @return the smallest value x with lo <= x <= hi, or -1 if there is none
+     */
+    long smallest(long lo, long hi){
+        if (first(lo, hi) < 0){
+            return -1;
+        }
+        //the first index within lo to v is a value within the progression once v reaches the smallest value
+        long low = java.lang.Math.max(lo, 0);
+        long high = java.lang.Math.min(hi, modulus - 1);
+        while (low < high){
+            long middle = (low + high) >>> 1;
+            if (first(lo, middle) >= 0){
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the largest value x with lo <= x <= hi, or -1 if there is none
+     */
+    long largest(long lo, long hi){
+        if (first(lo, hi) < 0){
+            return -1;
+        }
+        long low = java.lang.Math.max(lo, 0);
+        long high = java.lang.Math.min(hi, modulus - 1);
+        while (low < high){
+            long middle = (low + high + 1) >>> 1;
+            if (first(middle, hi) >= 0){
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the number of values x >= t; 0 <= t <= modulus
+     */
+    private long countFrom(long t){
+        //x_i >= t exactly when floor((start + i*step + modulus - t)/modulus) is one more than floor((start + i*step)/modulus)
+        return floorSums(start + modulus - t)[0] - floorSums(start)[0];
+    }
+
+    /**
+     * @return the sum of the values x >= t; 0 <= t <= modulus
+     */
+    private long sumFrom(long t){
+        //with F = floor((start + i*step)/modulus), G = floor((start + i*step + modulus - t)/modulus) and [x_i >= t] = G - F:
+        //x_i*[x_i >= t] = (start + i*step)*(G - F) - modulus*F*(G - F), and F*(G - F) = (G^2 - F^2 - (G - F))/2
+        long[] F = floorSums(start);
+        long[] G = floorSums(start + modulus - t);
+        long indicator = G[0] - F[0];
+        long linear = start*indicator + step*(G[1] - F[1]);
+        return linear - modulus*((G[2] - F[2] - indicator)/2);
+    }
+
+    /**
+     * @return {sum f_i, sum i*f_i, sum f_i^2} over 0 <= i < count of f_i = floor((offset + i*step)/modulus)
+     */
+    private long[] floorSums(long offset){
+        return count == 0 ? new long[3] : floorSums(count - 1, step, offset, modulus);
+    }
+
+    /**
+     * Sums of f_i = floor((a*i + b)/c) over 0 <= i <= n by the Euclid-like reduction of the floor sum
+     * @return {sum f_i, sum i*f_i, sum f_i^2}
+     */
+    private static long[] floorSums(long n, long a, long b, long c){
+
+        if (n < 0){
+            return new long[3];
+        }
+        long s1 = n*(n + 1)/2;
+        long s2 = n*(n + 1)*(2*n + 1)/6;
+        if (a == 0){
+            long t = b/c;
+            return new long[]{(n + 1)*t, t*s1, (n + 1)*t*t};
+        }
+        if (a >= c || b >= c){
+            long ta = a/c;
+            long tb = b/c;
+            long[] r = floorSums(n, a % c, b % c, c);
+            return new long[]{r[0] + ta*s1 + tb*(n + 1),
+                r[1] + ta*s2 + tb*s1,
+                r[2] + ta*ta*s2 + tb*tb*(n + 1) + 2*ta*tb*s1 + 2*tb*r[0] + 2*ta*r[1]};
+        }
+        long m = (a*n + b)/c;
+        if (m == 0){
+            return new long[3];
+        }
+        long[] r = floorSums(m - 1, c, c - b - 1, a);
+        long f = n*m - r[0];
+        return new long[]{f, (m*n*(n + 1) - r[2] - r[0])/2, n*m*(m + 1) - 2*r[1] - 2*r[0] - f};
+    }
+
+    /**
+     * @return the smallest x >= 0 with lo <= a*x mod m <= hi, or -1 if there is none; 0 <= a < m, 0 <= lo <= hi < m
+     */
+    private static long firstMultiple(long a, long m, long lo, long hi){
+        if (lo == 0){
+            return 0;
+        }
+        if (a == 0){
+            return -1;
+        }
+        long x = (lo + a - 1)/a;
+        if (x*a <= hi){
+            return x;
+        }
+        //a*x wraps around m y times: the smallest y with a*x - m*y in the range is found modulo a
+        long y = firstMultiple(m % a, a, (a - hi % a) % a, (a - lo % a) % a);
+        return y < 0 ? -1 : (lo + m*y + a - 1)/a;
+    }
+
+}
@@ -0,0 +1,112 @@
+package DualSpeciesIsolation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class NpyWriter {
+
+    /**
+     * Size in bytes of the direct buffer between the arrays and the file
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Writes waveforms as a NumPy .npy array of packed uint8 bits with one row per waveform. Bits are packed most
+     * significant bit first, as numpy.packbits does, so numpy.unpackbits(a, axis=1, count=size) gives the values
+     * (the last byte of a row is padded with Lo values).
+     * @param file the file to write; non-null, replaced if it exists
+     * @param waves the waveforms; non-null, at least one, with the same size
+     * @throws IOException if writing to file is interrupted/fails
+     */
+    public static void writeBits(Path file, Waveform... waves) throws IOException{
+
+        int size = waves[0].size();
+        int rowBytes = (size + 7)/8;
+
+        try (FileChannel channel = open(file)){
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            putHeader(channel, buffer, "|u1", "(" + waves.length + ", " + rowBytes + ")");
+
+            for (Waveform wave : waves){
+                long[] bits = wave.getBits();
+                for (int k = 0; k < rowBytes; k++){
+                    //byte k holds bits 8k to 8k+7 of the waveform, which are bits 8(k%8) onwards of word k/8
+                    int packed = (int) (bits[k/8] >>> (8*(k%8))) & 0xFF;
+                    if (!buffer.hasRemaining()){
+                        drain(channel, buffer);
+                    }
+                    buffer.put((byte) (Integer.reverse(packed) >>> 24));
+                }
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes a matrix as a NumPy .npy array of little endian int32 in row-major order
+     * @param file the file to write; non-null, replaced if it exists
+     * @param matrix the matrix; non-null, at least one row, with rows of equal length
+     * @throws IOException if writing to file is interrupted/fails
+     */
+    public static void writeMatrix(Path file, int[][] matrix) throws IOException{
+
+        try (FileChannel channel = open(file)){
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(channel, buffer, "<i4", "(" + matrix.length + ", " + matrix[0].length + ")");
+
+            for (int[] row : matrix){
+                for (int value : row){
+                    if (buffer.remaining() < Integer.BYTES){
+                        drain(channel, buffer);
+                    }
+                    buffer.putInt(value);
+                }
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Puts the magic string, version 1.0 and the header dictionary, padded so the data starts on a 64 byte boundary
+     */
+    private static void putHeader(FileChannel channel, ByteBuffer buffer, String descr, String shape) throws IOException{
+        StringBuilder header = new StringBuilder("{'descr': '" + descr + "', 'fortran_order': False, 'shape': " + shape + ", }");
+        while ((10 + header.length() + 1) % 64 != 0){
+            header.append(' ');
+        }
+        header.append('\n');
+
+        buffer.put((byte) 0x93);
+        buffer.put("NUMPY".getBytes(StandardCharsets.US_ASCII));
+        buffer.put((byte) 1);
+        buffer.put((byte) 0);
+        buffer.put((byte) (header.length() & 0xFF));
+        buffer.put((byte) (header.length() >>> 8));
+        buffer.put(header.toString().getBytes(StandardCharsets.US_ASCII));
+        drain(channel, buffer);
+    }
+
+    /**
+     * @return a channel writing to a new or emptied file
+     */
+    private static FileChannel open(Path file) throws IOException{
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Writes the buffered bytes to the channel and empties the buffer
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException{
+        buffer.flip();
+        while (buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,57 @@
+package DualSpeciesIsolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+final class ParallelTasks {
+
+    /*Abstraction Function:
+    Runs independent tasks, numbered 0 to count - 1, on a fixed thread pool with one thread per processor and
+    collects their results in the order of the numbers.
+     */
+
+    private ParallelTasks(){
+    }
+
+    /**
+     * Evaluates task for every index from 0 to count - 1 on a fixed thread pool. If a task fails the remaining tasks
+     * are cancelled and no results are returned, so the results always line up with the indices.
+     * @param count the number of tasks; non-negative
+     * @param task the task of each index; non-null
+     * @return the result of each index, in order
+     * @throws IllegalStateException if a task throws, with its exception as the cause, or if the calling thread is
+     * interrupted while waiting
+     */
+    static <T> List<T> evaluate(int count, IntFunction<T> task){
+
+        int corecount = Runtime.getRuntime().availableProcessors();
+        ExecutorService service = Executors.newFixedThreadPool(corecount);
+        List<Future<T>> tasks = new ArrayList<>();
+        for (int k = 0; k < count; k++){
+            int index = k;
+            tasks.add(service.submit(() -> task.apply(index)));
+        }
+        service.shutdown();
+
+        List<T> results = new ArrayList<>();
+        for (int k = 0; k < count; k++){
+            try {
+                results.add(tasks.get(k).get());
+            } catch (ExecutionException e){
+                service.shutdownNow();
+                throw new IllegalStateException("Task " + k + " of " + count + " failed: " + e.getCause(), e.getCause());
+            } catch (InterruptedException e){
+                service.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for task " + k + " of " + count, e);
+            }
+        }
+        return results;
+    }
+
+}
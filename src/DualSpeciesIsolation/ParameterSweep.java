@@ -0,0 +1,135 @@
+package DualSpeciesIsolation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParameterSweep {
+
+    /**
+     * Number of values in each row of the sweep results: the IOI on time followed by the pulseScheme statistics
+     */
+    public static final int COLUMNS = 11;
+
+    /**
+     * Evaluates IOIWaveformOnTime and pulseScheme of a fixed mass pair and Ion of Interest for every combination of
+     * prop, cycleCalib, MRSCycles and startCycle, at nanosecond resolution with the suggested time windows. The grid
+     * is evaluated in parallel, one task per (prop, cycleCalib) so the MRS timings of the three masses are computed once
+     * per task, and the waveforms are combined from their Hi runs (see IntervalWave) rather than their samples.
+     * Rows are in grid order: prop varies slowest, then cycleCalib, MRSCycles and startCycle. The pulseScheme
+     * statistics do not depend on startCycle. The rows can be written as a .npy matrix with NpyWriter.writeMatrix.
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param IOI Ion of Interest; greater than zero
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     * @param props the percentages (in decimal) the duty cycle is OFF, each 0 < prop < 1; non-null and non-empty
+     * @param cycleCalibs times for 1 Cs 1333 cycle in ns, each greater than zero; non-null and non-empty
+     * @param MRSCycles numbers of MRSCycles, each 0 < MRSCycles <= 850; non-null and non-empty
+     * @param startCycles MRS start delays in MRS cycles, each non-negative; non-null and non-empty
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @param writer writes one line per grid point, in grid order, as soon as its task is done; null if not wanted
+     * @return one row per grid point: the IOI on time (IOIWaveformOnTime) followed by the pulseScheme list
+     * @throws SpecViolation if a grid point can not be evaluated, eg. a parameter out of its range; the tasks still
+     * running are cancelled and no partial matrix is returned
+     */
+    public static int[][] sweep(double MOI1, double MOI2, double IOI, Boolean dualAndComb, double[] props, double[] cycleCalibs, double[] MRSCycles, double[] startCycles, int adjacencyBreak, Writer writer) throws SpecViolation{
+
+        double heavyMass = java.lang.Math.max(MOI1, MOI2);
+        double lightMass = java.lang.Math.min(MOI1, MOI2);
+        int block = MRSCycles.length*startCycles.length;
+        int[][] results = new int[props.length*cycleCalibs.length*block][];
+
+        int corecount = Runtime.getRuntime().availableProcessors();
+        ExecutorService service = Executors.newFixedThreadPool(corecount);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int p = 0; p < props.length; p++) {
+            for (int c = 0; c < cycleCalibs.length; c++) {
+                double prop = props[p];
+                double cycleCalib = cycleCalibs[c];
+                int first = (p*cycleCalibs.length + c)*block;
+
+                tasks.add(service.submit(() -> {
+                    MRSTiming heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib);
+                    MRSTiming lightTiming = new MRSTiming(lightMass, prop, cycleCalib);
+                    MRSTiming IOITiming = new MRSTiming(IOI, prop, cycleCalib);
+
+                    for (int m = 0; m < MRSCycles.length; m++) {
+                        int timeScale = PulseGenerator.getSuggestedTimeScale(heavyMass, MRSCycles[m], prop, cycleCalib);
+                        int shiftedTimeScale = PulseGenerator.getSuggestedTimeScaleShifted(heavyMass, MRSCycles[m], prop, cycleCalib);
+                        int[] pkSwt = PulseGenerator.pulseScheme(PulseGenerator.pulseSegments(heavyTiming, lightTiming, MRSCycles[m], timeScale),
+                            heavyMass, MRSCycles[m], prop, adjacencyBreak, cycleCalib);
+
+                        for (int s = 0; s < startCycles.length; s++) {
+                            int[] row = new int[COLUMNS];
+                            row[0] = PulseGenerator.IOIWaveformOnTime(heavyTiming, lightTiming, IOITiming, MRSCycles[m],
+                                startCycles[s] != 0 ? shiftedTimeScale : timeScale, startCycles[s], dualAndComb);
+                            System.arraycopy(pkSwt, 0, row, 1, pkSwt.length);
+                            results[first + m*startCycles.length + s] = row;
+                        }
+                    }
+                }));
+            }
+        }
+        service.shutdown();
+
+        try {
+            if (writer != null) {
+                writer.write("Pr   CC   MC  SC  IO  Br  Sw  Mi  Ma  OT  Mc  Ss  %C\n");
+            }
+            for (int t = 0; t < tasks.size(); t++) {
+                tasks.get(t).get();
+                if (writer == null) {
+                    continue;
+                }
+                double prop = props[t/cycleCalibs.length];
+                double cycleCalib = cycleCalibs[t%cycleCalibs.length];
+                for (int m = 0; m < MRSCycles.length; m++) {
+                    for (int s = 0; s < startCycles.length; s++) {
+                        int[] row = results[t*block + m*startCycles.length + s];
+                        writer.write(prop + "  " + cycleCalib + "  " + MRSCycles[m] + "  " + startCycles[s] + "  " + row[0]
+                            + "  " + row[1] + "  " + row[2] + "  " + row[3] + "  " + row[4] + "  " + row[5]
+                            + "  " + row[6] + "  " + row[7] + "  " + row[10] + "\n");
+                    }
+                }
+            }
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ExecutionException e) {
+            service.shutdownNow();
+            SpecViolation failure = new SpecViolation("Sweep grid point failed: " + e.getCause());
+            failure.initCause(e.getCause());
+            throw failure;
+        } catch (InterruptedException e) {
+            service.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new SpecViolation("Sweep interrupted");
+        }
+
+        return results;
+    }
+
+    /**
+     * @param first the first value of the range
+     * @param last the last value of the range; not smaller than first
+     * @param step the difference between consecutive values; greater than zero
+     * @return first, first + step, ... up to and including last (within a millionth of a step)
+     */
+    public static double[] range(double first, double last, double step){
+        int count = (int) java.lang.Math.floor((last - first)/step + 1e-6) + 1;
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = first + i*step;
+        }
+        return values;
+    }
+
+}
@@ -1,7 +1,10 @@
 package DualSpeciesIsolation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 public class PulseGenerator{
@@ -76,33 +79,75 @@ public class PulseGenerator{
      * @param timeScale The time window for the wave in nanoseconds
      * @param steps The number of steps plus 1 sets the number of data points
      *              and therefore sets the resolution; steps must be greater than zero
-     * @param adjacencyBreak the minimal acceptable same bit sequence, ie. minimal length of bits in a Hi or Lo section.
-     *                       Must be grater than 1.
+     * @param adjacencyBreak the minimal acceptable same bit sequence in nanoseconds, ie. minimal length of a Hi or Lo section.
+     *                       Must be grater than the resolution.
      * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
      * @return List with: the total number of same bit segments that are smaller than or equal to the adjacency break,
      * the number of switches, the maximum and minimum of the peaks ( max/min of first value), the On Time of Waveform,
      * the minimum peak width, the second minimum peak width,  the first occurrence of minimum and second minimum peak widths,
-     * and the percentage normalization of OnTime.
+     * and the percentage normalization of OnTime. Times and widths are in nanoseconds at any resolution (see segmentScheme).
      */
     public static int[] pulseScheme( double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, int steps, int adjacencyBreak, double cycleCalib){
+        return pulseScheme(pulseSegments(MOI1, MOI2, MRSCycles, prop, timeScale, steps, cycleCalib),
+            java.lang.Math.max(MOI1, MOI2), MRSCycles, prop, adjacencyBreak, cycleCalib);
+    }
+
+
+    /**
+     * Tick-aligned sampling mode of pulseScheme. The waveforms are sampled once per tick (the coarsest resolution that
+     * keeps every edge of both MRS waveforms on a sample boundary) instead of once per nanosecond, and the statistics
+     * are reported in nanoseconds, identical to pulseScheme(MOI1, MOI2, MRSCycles, prop, timeScale, timeScale, adjacencyBreak, cycleCalib).
+     * Falls back to nanosecond sampling when no tick longer than 1 ns exists or the window ends before the waveforms do.
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param adjacencyBreak the minimal acceptable same bit sequence in nanoseconds. Must be grater than 1.
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @return the same list as pulseScheme sampled every nanosecond
+     */
+    public static int[] pulseScheme( double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, int adjacencyBreak, double cycleCalib){
+        return pulseScheme(pulseSegments(MOI1, MOI2, MRSCycles, prop, timeScale, cycleCalib),
+            java.lang.Math.max(MOI1, MOI2), MRSCycles, prop, adjacencyBreak, cycleCalib);
+    }
+
+
+    /**
+     * @param segments the segments of the AND combination of two MRS waveforms; non-null
+     * @param heavyMass the heavier Mass of Interest of the combination; greater than 0
+     * @param MRSCycles The number of MRSCycles of the heavier mass; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable same bit sequence in nanoseconds; greater than the resolution of segments
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @return the pulseScheme statistics of the segments, or all zeros if there are no segments
+     */
+    public static int[] pulseScheme(Segments segments, double heavyMass, double MRSCycles, double prop, int adjacencyBreak, double cycleCalib){
+        if (segments.size() == 0){
+            return new int[10];
+        }
+        int[] pkSwt = segmentScheme(segments, adjacencyBreak);
+        pkSwt[9] = (int)((double)pkSwt[4]*100/normFactor(heavyMass,MRSCycles, prop, cycleCalib));
+        return pkSwt;
+    }
+
+
+    /**
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param steps The number of steps plus 1 sets the number of data points
+     *              and therefore sets the resolution; steps must be greater than zero
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @return the Hi/Lo segments of the AND combination of the two MRS waveforms, empty if they can not be combined
+     */
+    public static Segments pulseSegments( double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, int steps, double cycleCalib){
 
         double heavyMass;
         double lightMass;
-        int counter;
-        int indetCounter;
-        int inclCounter;
-        int value;
-        int peaks = 0;
-        int indetPeaks = 0;
-        int onTime = 0;
-        int inclPeaks = 0;
-        int switches = 0;
-        int minAdj = -1;
-        int secondSmallest = -1;
         double totalTime;
-        int minTime = -1;
-        int secondMinTime = -1;
-        int[] pkSwt = new int[10];
 
 
         if (MOI1 > MOI2){
@@ -119,111 +164,169 @@ public class PulseGenerator{
         Waveform waveA = new Waveform(heavyMass, MRSCycles, timeScale, steps, prop, cycleCalib,0);
         Waveform waveB = new Waveform(lightMass, timeScale, steps, prop, totalTime, cycleCalib,0);
         try {
-            Waveform mainWave = new Waveform(waveA, waveB, false);
-            ArrayList<Integer> bitList = mainWave.getWave();
+            return new Segments(new Waveform(waveA, waveB, false));
+        } catch (SpecViolation e){
+            e.printStackTrace();
+            return new Segments(new int[0], new long[0], 0, 0, 1);
+        }
+    }
 
 
+    /**
+     * Tick-aligned sampling mode of pulseSegments; the segment lengths are those of the waveform sampled every
+     * nanosecond (see pulseScheme(MOI1, MOI2, MRSCycles, prop, timeScale, adjacencyBreak, cycleCalib))
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @return the Hi/Lo segments of the AND combination of the two MRS waveforms sampled every nanosecond, empty if
+     * they can not be combined
+     */
+    public static Segments pulseSegments( double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, double cycleCalib){
+
+        double heavyMass;
+        double lightMass;
 
-        if (bitList.get(bitList.size()-1) != bitList.get(bitList.size()-2)){
-            peaks++;
-            indetPeaks++;
-            inclPeaks++;
-            switches++;
+        if (MOI1 > MOI2){
+            heavyMass = MOI1;
+            lightMass = MOI2;
+        }
+        else{
+            heavyMass = MOI2;
+            lightMass = MOI1;
         }
 
-        counter = 1;
-        inclCounter = 1;
-        indetCounter = 1;
-        value = bitList.get(0);
-        if (value == 1){
-            onTime++;
+        double totalTime = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905))*MRSCycles;
+        double lightCycles = totalTime/(cycleCalib*java.lang.Math.sqrt((lightMass/132.905)));
+        MRSTiming heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib);
+        MRSTiming lightTiming = new MRSTiming(lightMass, prop, cycleCalib);
+        long tick = getTickResolution(heavyTiming, lightTiming);
+
+        if (tick < 2 || timeScale - 2 <= getLastOnTime(heavyTiming, MRSCycles) || timeScale - 2 <= getLastOnTime(lightTiming, lightCycles)){
+            return pulseSegments(MOI1, MOI2, MRSCycles, prop, timeScale, timeScale, cycleCalib);
         }
-        for(int i = 0; i < bitList.size()-1; i++){
 
-            if (bitList.get(i+1) == value){
-                counter++;
-                inclCounter++;
-                indetCounter++;
-                if(value == 1){
-                    onTime++;
-                }
+        //One value per tick, taken 1 ns into the tick: every Hi segment (open at both edges) holds one value per tick
+        //and every Lo segment (closed at both edges) holds one value per tick, so no segment is lost
+        int size = (int) ((timeScale - 1 + tick - 1)/tick);
+        Waveform waveA = new Waveform(heavyTiming, MRSCycles, 0, 0, 1, tick, size);
+        Waveform waveB = new Waveform(lightTiming, lightCycles, 0, 0, 1, tick, size);
+
+        try {
+            Segments ticks = new Segments(new Waveform(waveA, waveB, false));
+
+            //a Hi segment of c ticks holds c*tick - 1 nanosecond values and a Lo segment c*tick + 1
+            int runs = ticks.size();
+            int[] values = new int[runs];
+            long[] lengths = new long[runs];
+            for (int j = 0; j < runs; j++){
+                values[j] = ticks.getValue(j);
+                lengths[j] = values[j] == 1 ? ticks.getLength(j) - 1 : ticks.getLength(j) + 1;
             }
-            else{
-                switches++;
-                if (value == 1){
-                    inclCounter++;
-                }
-                if (value == 0){
-                    indetCounter--;
-                }
-                if(minAdj < 0 || counter < minAdj){
-                    if (minAdj > 0){
-                        secondSmallest = minAdj;
-                        secondMinTime = minTime;
-                    }
-                    minAdj = counter;
-                    minTime = i;
+            return new Segments(values, lengths, runs, 0, 1);
 
-                }
+        } catch (SpecViolation e){
+            e.printStackTrace();
+            return new Segments(new int[0], new long[0], 0, 0, 1);
+        }
+    }
 
-                if(minAdj > 0 && counter > minAdj && (secondSmallest > counter || secondSmallest < 0)){
-                    secondSmallest = counter;
-                    secondMinTime = i;
-                }
 
-                if(counter < adjacencyBreak){
-                    peaks++;
-                }
-                if (inclCounter < adjacencyBreak){
-                    inclPeaks++;
-                }
-                if (indetCounter < adjacencyBreak){
-                    indetPeaks++;
-                }
+    /**
+     * Computes the pulseScheme statistics of a sampled waveform in nanoseconds. Every value stands for Resolution
+     * nanoseconds and every edge is uncertain by one value, so the results do not depend on the sampling resolution
+     * and can be compared across scans.
+     * @param wave the sampled waveform; non-null with at least two values
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than the resolution of wave
+     * @return the pulseScheme statistics in nanoseconds without the normalized On Time (index 9)
+     */
+    public static int[] segmentScheme(Waveform wave, long adjacencyBreak){
+        return segmentScheme(new Segments(wave), adjacencyBreak);
+    }
 
-                if(value == 0){
-                    inclCounter = 2;
-                    counter = 1;
-                    indetCounter = 1;
-                    onTime++;
-                }
-                else {
-                    counter = 1;
-                    inclCounter = 1;
-                    indetCounter = 0;
-                }
-                value = bitList.get(i+1);
 
-            }
-        }
+    /**
+     * Computes the pulseScheme statistics of a waveform given by its edges
+     * @param edges the times in ns where the waveform changes value, in increasing order and strictly between start and end; non-null
+     * @param firstValue the value (0 or 1) of the waveform at start
+     * @param start the time in ns of the start of the waveform
+     * @param end the time in ns of the end of the waveform; greater than start
+     * @param resolution the uncertainty in ns of every edge; greater than zero
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than resolution
+     * @return the pulseScheme statistics in nanoseconds without the normalized On Time (index 9)
+     */
+    public static int[] segmentScheme(long[] edges, int firstValue, long start, long end, long resolution, long adjacencyBreak){
+        return segmentScheme(new Segments(edges, firstValue, start, end, resolution), adjacencyBreak);
+    }
+
+
+    /**
+     * Computes the pulseScheme statistics from the Hi and Lo segments of a waveform. A segment counts as longer when
+     * its edges are included and shorter when they are indeterminate (see Segments.getInclLength and
+     * Segments.getIndetLength). The last segment is only used for the On Time, unless it is a single resolution long,
+     * in which case it also counts as a peak.
+     * @param segments the segments of the waveform; non-null with at least one segment
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than the resolution of segments
+     * @return List with: the number of segments shorter than the adjacency break, the number of switches, the number of
+     * segments shorter than the adjacency break when edges are indeterminate and when edges are included, the On Time
+     * in ns, the minimum and second minimum segment widths in ns, the times in ns of the last sample of the minimum
+     * and second minimum segments (-1 if there is none) and 0 in place of the normalized On Time.
+     */
+    public static int[] segmentScheme(Segments segments, long adjacencyBreak){
 
-        if (secondSmallest < 0 || minAdj < 0){
-            minAdj = 0;
-            secondSmallest = 0;
+        int runs = segments.size();
+        SegmentFold fold = new SegmentFold(segments.getStartTime(), segments.getResolution(), adjacencyBreak);
+        for (int j = 0; j < runs - 1; j++){
+            fold.add(segments.getValue(j), segments.getLength(j));
         }
+        return fold.finish(segments.getValue(runs - 1), segments.getLength(runs - 1));
+    }
 
 
-        pkSwt[0] = peaks;
-        pkSwt[1] = switches;
-        pkSwt[2] = indetPeaks;
-        pkSwt[3] = inclPeaks;
-        pkSwt[4] = onTime;
-        pkSwt[5] = minAdj;
-        pkSwt[6] = secondSmallest;
-        pkSwt[7] = minTime;
-        pkSwt[8] = secondMinTime;
-        pkSwt[9] = (int)((double)onTime*100/normFactor(heavyMass,MRSCycles, prop, cycleCalib));
+    /**
+     * @param timings the quantised timings of MRS waveforms that start at 0 ns without a start delay; non-null
+     *                and each with a Lo half greater than zero
+     * @return the coarsest resolution in ns that places every edge of the waveforms on a multiple of the resolution,
+     * or 1 if a waveform has no Lo half
+     */
+    public static long getTickResolution(MRSTiming... timings){
 
+        long tick = 0;
+        for (MRSTiming timing : timings){
+            if (timing.getOffTime() == 0){
+                return 1;
+            }
+            tick = gcd(tick, timing.getOffTime());
+            tick = gcd(tick, timing.getOnTime());
+            tick = gcd(tick, timing.getTimeDelay());
+        }
 
+        return java.lang.Math.max(tick, 1);
+    }
 
-        } catch (SpecViolation e){
-            e.printStackTrace();
-        } finally {
 
-            return pkSwt;
+    /**
+     * @param timing the quantised timings of an MRS waveform without a start delay; non-null
+     * @param MRSCycles the number of MRS cycles; greater than 0
+     * @return the latest time in ns the MRS waveform can be Hi (including the extended last cycle)
+     */
+    private static double getLastOnTime(MRSTiming timing, double MRSCycles){
+        return timing.getTimeOn(MRSCycles) + timing.getTimeDelay() + timing.getOnTime();
+    }
 
-        }
 
+    /**
+     * @return the greatest common divisor of a and b (non-negative)
+     */
+    private static long gcd(long a, long b){
+        while (b != 0){
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
     }
 
 
@@ -265,21 +368,20 @@ public class PulseGenerator{
         Waveform waveB = new Waveform(lightMass, timeScale, steps, prop, totalTime,cycleCalib,0);
         try{
             Waveform mainWave = new Waveform(waveA, waveB, false);
-            ArrayList<Integer> bitList = mainWave.getWave();
 
 
         counter = 1;
-        value = bitList.get(0);
-        for(int i = 0; i < bitList.size()-1; i++){
+        value = mainWave.getValue(0);
+        for(int i = 0; i < mainWave.size()-1; i++){
 
-            if (bitList.get(i+1) == value){
+            if (mainWave.getValue(i+1) == value){
                 counter++;
             }
             else{
 
                 adjCounts.add(counter);
                 counter = 1;
-                value = bitList.get(i+1);
+                value = mainWave.getValue(i+1);
 
             }
         }
@@ -314,8 +416,7 @@ public class PulseGenerator{
         double heavyMass;
         double lightMass;
         double totalTime;
-        double startTime = 0;
-        double delayOverwrite = 0;
+        long startTime = 0;
 
         if (MOI1 > MOI2){
             heavyMass = MOI1;
@@ -327,11 +428,10 @@ public class PulseGenerator{
         }
 
 
-        double cycleCalibration = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905));
-        totalTime = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905))*MRSCycles;
+        MRSTiming heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib);
+        totalTime = heavyTiming.getTimeOn(MRSCycles);
         if (startCycle != 0){
-        startTime = 5 * (int) ((((32800) * java.lang.Math.sqrt((heavyMass / 132.905))) - (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2)
-            + (startCycle*(cycleCalibration))) / 5);
+            startTime = heavyTiming.getStartDelay(startCycle);
         }
 
 
@@ -347,10 +447,9 @@ public class PulseGenerator{
                 mainWave = new Waveform(waveA);
             }
             Waveform finalWave = new Waveform(mainWave, waveIOI, true);
-            ArrayList<Integer> bitList = finalWave.getWave();
 
-            for (int i = 0; i < bitList.size(); i++){
-                if (bitList.get(i) == 1){
+            for (int i = 0; i < finalWave.size(); i++){
+                if (finalWave.getValue(i) == 1){
                     OnTime++;
                 }
             }
@@ -366,6 +465,57 @@ public class PulseGenerator{
     }
 
 
+    /**
+     * Nanosecond resolution IOIWaveformOnTime computed from the Hi runs of the waveforms (see IntervalWave) instead of
+     * their samples, for timings that are shared between calls; equal to
+     * IOIWaveformOnTime(MOI1, MOI2, IOI, MRSCycles, prop, timeScale, timeScale, cycleCalib, startCycle, dualAndComb)
+     * @param heavyTiming the timings of the heavier Mass of Interest; non-null
+     * @param lightTiming the timings of the lighter Mass of Interest, with the same prop and cycleCalib; non-null
+     * @param IOITiming the timings of the Ion of Interest, with the same prop and cycleCalib; non-null
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     * @return the total on time of the IOI waveform XOR-like combination in nanoseconds
+     */
+    public static int IOIWaveformOnTime(MRSTiming heavyTiming, MRSTiming lightTiming, MRSTiming IOITiming, double MRSCycles, int timeScale, double startCycle, Boolean dualAndComb){
+
+        double totalTime = heavyTiming.getTimeOn(MRSCycles);
+        long startTime = 0;
+        if (startCycle != 0){
+            startTime = heavyTiming.getStartDelay(startCycle);
+        }
+
+        IntervalWave mainWave = new IntervalWave(heavyTiming, MRSCycles, startCycle, 0, startTime, timeScale);
+        if (dualAndComb){
+            mainWave = mainWave.and(new IntervalWave(lightTiming, totalTime/lightTiming.getCycleCalibration(), 0, startTime, startTime, timeScale));
+        }
+        IntervalWave waveIOI = new IntervalWave(IOITiming, totalTime/IOITiming.getCycleCalibration(), 0, startTime, startTime, timeScale);
+
+        return (int) mainWave.andNot(waveIOI).onTime();
+    }
+
+
+    /**
+     * Nanosecond resolution pulseSegments computed from the Hi runs of the waveforms (see IntervalWave) instead of
+     * their samples, for timings that are shared between calls; equal to
+     * pulseSegments(MOI1, MOI2, MRSCycles, prop, timeScale, timeScale, cycleCalib)
+     * @param heavyTiming the timings of the heavier Mass of Interest; non-null
+     * @param lightTiming the timings of the lighter Mass of Interest, with the same prop and cycleCalib; non-null
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param timeScale The time window for the wave in nanoseconds
+     * @return the Hi/Lo segments of the AND combination of the two MRS waveforms
+     */
+    public static Segments pulseSegments(MRSTiming heavyTiming, MRSTiming lightTiming, double MRSCycles, int timeScale){
+
+        double totalTime = heavyTiming.getTimeOn(MRSCycles);
+        IntervalWave waveA = new IntervalWave(heavyTiming, MRSCycles, 0, 0, 0, timeScale);
+        IntervalWave waveB = new IntervalWave(lightTiming, totalTime/lightTiming.getCycleCalibration(), 0, 0, 0, timeScale);
+
+        return waveA.and(waveB).toSegments();
+    }
+
+
     /**
      * @param MOI1 The first Mass of Interest that is non-null and greater than 0
      * @param MOI2 The second Mass of Interest that is non-null and greater than 0
@@ -388,8 +538,7 @@ public class PulseGenerator{
         int counter;
         int value;
         double totalTime;
-        double startTime = 0;
-        double delayOverwrite = 0;
+        long startTime = 0;
 
 
         ArrayList<Integer> adjCounts = new ArrayList<>();
@@ -404,21 +553,12 @@ public class PulseGenerator{
             lightMass = MOI1;
         }
 
-        totalTime = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905))*MRSCycles;
-        double cycleCalibration = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905));
+        MRSTiming heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib);
+        totalTime = heavyTiming.getTimeOn(MRSCycles);
         if (startCycle != 0) {
-            startTime = 5 * (int) ((((32800) * java.lang.Math.sqrt((heavyMass / 132.905))) -
-                (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2)
-                + (startCycle * (cycleCalib * java.lang.Math.sqrt((heavyMass / 132.905))))) / 5);
+            startTime = heavyTiming.getStartDelay(startCycle);
         }
 
-
-
-//        if (startCycle != 0){
-//            delayOverwrite = 5 * (int) ((((32800) * java.lang.Math.sqrt((heavyMass / 132.905))) -
-//                (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2)) / 5);
-//        }
-
         Waveform waveA = new Waveform(heavyMass, MRSCycles, timeScale, steps, prop, cycleCalib, startCycle);
         Waveform waveB = new Waveform(lightMass, timeScale, steps, prop, totalTime,cycleCalib, startTime);
         Waveform waveIOI = new Waveform(IOI, timeScale, steps, prop, totalTime, cycleCalib, startTime);
@@ -431,21 +571,20 @@ public class PulseGenerator{
                 mainWave = new Waveform(waveA);
             }
             Waveform finalWave = new Waveform(mainWave, waveIOI, true);
-            ArrayList<Integer> bitList = finalWave.getWave();
 
 
             counter = 1;
-            value = bitList.get(0);
-            for(int i = 0; i < bitList.size()-1; i++){
+            value = finalWave.getValue(0);
+            for(int i = 0; i < finalWave.size()-1; i++){
 
-                if (bitList.get(i+1) == value){
+                if (finalWave.getValue(i+1) == value){
                     counter++;
                 }
                 else{
 
                     adjCounts.add(counter);
                     counter = 1;
-                    value = bitList.get(i+1);
+                    value = finalWave.getValue(i+1);
 
                 }
             }
@@ -472,128 +611,375 @@ public class PulseGenerator{
      * @return a list of MRS cycles of the MRS waveform and its corresponding delta t values
      */
     public static ArrayList<List<Integer>> SingleMRSdeltaTPairs(double Mass1, double Mass2, double IOI, double MRSCycles, double Proportion, double cycleCalib, double startCycle, Boolean dualAndComb){
+        return compactDeltaTPairs(Mass1, Mass2, IOI, MRSCycles, Proportion, cycleCalib, startCycle, dualAndComb).toList();
+    }
 
-        ArrayList<List<Integer>> MRSdeltaTPairs = new ArrayList<>();
-        int deltaT;
-        double time = 0;
-        int index = 0;
-        int timeScale = 0;
-        double lightMass;
-        double heavyMass;
 
+    /**
+     * SingleMRSdeltaTPairs without boxing: the segments of the IOI waveform XOR-like combination are built from Hi runs
+     * (see IOISweep) and paired with the MRS ends in one merge pass; a trailing segment without a partner is ignored
+     * @param Mass1 The first Mass of Interest that is non-null and greater than 0
+     * @param Mass2 The second Mass of Interest that is non-null and greater than 0
+     * @param IOI Ion of Interest; greater than zero
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param Proportion the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     * @return the MRS cycles of the MRS waveform and their corresponding delta t values
+     */
+    public static DeltaTPairs compactDeltaTPairs(double Mass1, double Mass2, double IOI, double MRSCycles, double Proportion, double cycleCalib, double startCycle, Boolean dualAndComb){
+        return new IOISweep(Mass1, Mass2, MRSCycles, Proportion, cycleCalib, startCycle, dualAndComb).compactDeltaTPairs(IOI);
+    }
 
-        if (Mass1 > Mass2){
-            heavyMass = Mass1;
-            lightMass = Mass2;
-        }
-        else{
-            heavyMass = Mass2;
-            lightMass = Mass1;
-        }
 
-        double cycleCalibration = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905));
-        ArrayList<Double> MRSEnds = new ArrayList<>(getSingleMRSEnds(heavyMass,MRSCycles,Proportion, cycleCalib, startCycle));
-        if (startCycle != 0) {
-            timeScale += getSuggestedTimeScaleShifted(heavyMass, MRSCycles,
-                Proportion, cycleCalib);
-            time +=  5 * (int) ((((32800) * java.lang.Math.sqrt((heavyMass / 132.905))) -
-                (5 * (int) ((Proportion * cycleCalibration / 2) / 5) / 2)) / 5);
-
-            for (double j = 0.5; j <= startCycle; j += 0.5){
-                time += 5*(int)((Proportion*cycleCalibration/2)/5);
-                time += 5*(int)(((1-Proportion)*cycleCalibration/2)/5);
-            }
+    /**
+     * @param timing the quantised timings of the heavier mass of interest; non-null
+     * @param MRSCycles the number of MRS cycles; must be greater than zero
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @return the timings in nanoseconds of the falling edges of the MRS waveform of timing, one per half MRS cycle
+     */
+    static long[] getSingleMRSEnds(MRSTiming timing, double MRSCycles, double startCycle){
 
-        } else{
-            timeScale += getSuggestedTimeScale(heavyMass, MRSCycles,
-                Proportion, cycleCalib);
-        }
+        long[] MRSEnds = new long[halfCycles(MRSCycles)];
+        long time;
 
-        ArrayList<Integer> adjLengths = new ArrayList<>();
-        if (dualAndComb) {
-            adjLengths = new ArrayList<>(
-                adjacentIOILengths(heavyMass, lightMass, IOI, MRSCycles, Proportion, timeScale
-                    , timeScale, cycleCalib, startCycle, true));
+        if(startCycle != 0){
+            time = timing.getStartDelay(startCycle);
+        } else {
+            time = timing.getTimeDelay();
         }
-        else{
-            adjLengths = new ArrayList<>(
-                adjacentIOILengths(heavyMass, lightMass, IOI, MRSCycles, Proportion, timeScale
-                    , timeScale, cycleCalib, startCycle, false));
 
+        for(int i = 0; i < MRSEnds.length; i++){
+            time += timing.getPeriod();
+            MRSEnds[i] = time;
         }
 
+        return MRSEnds;
+
+    }
+
+
+    /**
+     * @param cycles a number of MRS cycles; non-negative
+     * @return the number of whole half cycles in cycles
+     */
+    static int halfCycles(double cycles){
+        return (int) java.lang.Math.floor(cycles*2);
+    }
 
-        for (int i = 0; i < adjLengths.size(); i += 2){
-            time += adjLengths.get(i);
-            time += adjLengths.get(i+1);
-            deltaT = adjLengths.get(i+1);
-            ArrayList<Integer> temp = new ArrayList<>();
 
-            while (index < MRSEnds.size() && time > MRSEnds.get(index)){
-                index++;
+    /**
+     * N species generalisation of IOIWaveformOnTime: the AND combination of the MRS waveforms of any number of species
+     * with the waveforms of any number of Ions of Interest excluded, built from their Hi runs in one pass
+     * (see IntervalWave.combine) and sampled every nanosecond. The heaviest species runs for MRSCycles and every
+     * other waveform for the same time, as the lighter mass of a dual combination does.
+     * @param masses the Masses of Interest; non-null, at least one, each greater than 0
+     * @param IOIs the Ions of Interest to exclude; non-null, each greater than 0
+     * @param MRSCycles The number of MRSCycles of the heaviest mass; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @return the combined waveform; with two masses and no IOI the waveform of pulseSegments, with two masses and one
+     * IOI the waveform whose on time is IOIWaveformOnTime
+     */
+    public static IntervalWave speciesCombination(double[] masses, double[] IOIs, double MRSCycles, double prop, int timeScale, double cycleCalib, double startCycle){
+
+        int heaviest = 0;
+        for (int k = 1; k < masses.length; k++){
+            if (masses[k] > masses[heaviest]){
+                heaviest = k;
             }
-            if (index < MRSEnds.size() && time <= MRSEnds.get(index)){
-                temp.add((index+1)*10/2);
-                temp.add(deltaT);
-                MRSdeltaTPairs.add(temp);
+        }
+
+        MRSTiming heavyTiming = new MRSTiming(masses[heaviest], prop, cycleCalib);
+        double totalTime = heavyTiming.getTimeOn(MRSCycles);
+        long startTime = startCycle != 0 ? heavyTiming.getStartDelay(startCycle) : 0;
+
+        IntervalWave[] gates = new IntervalWave[masses.length];
+        for (int k = 0; k < masses.length; k++){
+            if (k == heaviest){
+                gates[k] = new IntervalWave(heavyTiming, MRSCycles, startCycle, 0, startTime, timeScale);
+            } else {
+                MRSTiming timing = new MRSTiming(masses[k], prop, cycleCalib);
+                gates[k] = new IntervalWave(timing, totalTime/timing.getCycleCalibration(), 0, startTime, startTime, timeScale);
             }
+        }
+        IntervalWave[] exclusions = new IntervalWave[IOIs.length];
+        for (int k = 0; k < IOIs.length; k++){
+            MRSTiming timing = new MRSTiming(IOIs[k], prop, cycleCalib);
+            exclusions[k] = new IntervalWave(timing, totalTime/timing.getCycleCalibration(), 0, startTime, startTime, timeScale);
+        }
 
+        return IntervalWave.combine(gates, exclusions);
+    }
+
+
+    /**
+     * pulseScheme statistics of speciesCombination with the suggested time window of the heaviest mass (shifted if
+     * startCycle is not 0)
+     * @param masses the Masses of Interest; non-null, at least one, each greater than 0
+     * @param IOIs the Ions of Interest to exclude; non-null, each greater than 0
+     * @param MRSCycles The number of MRSCycles of the heaviest mass; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @return the pulseScheme list of the combined waveform, normalized by the heaviest mass
+     */
+    public static int[] pulseScheme(double[] masses, double[] IOIs, double MRSCycles, double prop, int adjacencyBreak, double cycleCalib, double startCycle){
 
+        double heavyMass = masses[0];
+        for (double mass : masses){
+            heavyMass = java.lang.Math.max(heavyMass, mass);
         }
+        int timeScale = startCycle != 0 ? getSuggestedTimeScaleShifted(heavyMass, MRSCycles, prop, cycleCalib)
+            : getSuggestedTimeScale(heavyMass, MRSCycles, prop, cycleCalib);
 
-        return new ArrayList<>(MRSdeltaTPairs);
+        return pulseScheme(speciesCombination(masses, IOIs, MRSCycles, prop, timeScale, cycleCalib, startCycle).toSegments(),
+            heavyMass, MRSCycles, prop, adjacencyBreak, cycleCalib);
     }
 
 
     /**
-     * @param Mass1 the heaver mass of interest; must be greater than zero
-     * @param MRSCycles the number of MRS cycles; must be greater than zero
-     * @param Proportion the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * Incremental pulseScheme for a sweep of MRSCycles: equal to pulseScheme(MOI1, MOI2, MRSCycles[k], prop, timeScale,
+     * adjacencyBreak, cycleCalib) with the suggested time scale of each number of cycles. The combined waveform for
+     * more cycles keeps every value of the waveform for fewer cycles up to the time the first of the two waveforms is
+     * switched off, so the segments before that time are added to the statistics once and kept; only the remaining
+     * tail of each waveform (about one MRS cycle) is built, from its Hi runs. A sweep of 1 to 850 cycles therefore
+     * costs about as much as one waveform of 850 cycles.
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles the numbers of MRSCycles, in any order, each 0 < MRSCycles <= 850; non-null
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
      * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
-     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
-     * @return an arraylist of the timings in nanoseconds of the falling edges of the Mass1 MRS waveform
+     * @return the pulseScheme list of each number of MRSCycles, in the order of MRSCycles
      */
-    private static ArrayList<Double> getSingleMRSEnds(double Mass1, double MRSCycles, double Proportion, double cycleCalib, double startCycle){
+    public static int[][] pulseSchemeCycles(double MOI1, double MOI2, double[] MRSCycles, double prop, int adjacencyBreak, double cycleCalib){
 
-        ArrayList<Double> MRSEnds = new ArrayList<>();
-        double time = 0;
-        double cycleCalibration = cycleCalib*java.lang.Math.sqrt((Mass1/132.905));
-        double timeDelay = 5*(int)((((32800)*java.lang.Math.sqrt((Mass1/132.905))) - (5*(int)((Proportion*cycleCalibration/2)/5)/2))/5);
+        double heavyMass = java.lang.Math.max(MOI1, MOI2);
+        MRSTiming heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib);
+        MRSTiming lightTiming = new MRSTiming(java.lang.Math.min(MOI1, MOI2), prop, cycleCalib);
+        int[][] results = new int[MRSCycles.length][];
 
-        if(startCycle != 0){
-            time += 5 * (int) ((((32800) * java.lang.Math.sqrt((Mass1 / 132.905))) -
-                (5 * (int) ((Proportion * cycleCalibration / 2) / 5) / 2)
-                + (startCycle * (cycleCalib * java.lang.Math.sqrt((Mass1 / 132.905))))) / 5);
+        //statistics of the segments that are the same for every later number of cycles, and the start of the next one
+        SegmentFold prefix = new SegmentFold(0, 1, adjacencyBreak);
+        long next = 0;
 
-        } else {
-            time += timeDelay;
+        //the prefix only holds for more cycles, so the numbers of cycles are evaluated in increasing order
+        Integer[] order = new Integer[MRSCycles.length];
+        for (int k = 0; k < order.length; k++){
+            order[k] = k;
         }
+        Arrays.sort(order, (a, b) -> Double.compare(MRSCycles[a], MRSCycles[b]));
+
+        for (int k : order){
+            double totalTime = heavyTiming.getTimeOn(MRSCycles[k]);
+            double lightCycles = totalTime/lightTiming.getCycleCalibration();
+            int timeScale = getSuggestedTimeScale(heavyMass, MRSCycles[k], prop, cycleCalib);
+
+            //the values up to the last time before either waveform is switched off do not change with more cycles
+            long stable = java.lang.Math.min(java.lang.Math.min(
+                (long) java.lang.Math.floor(totalTime + heavyTiming.getTimeDelay()),
+                (long) java.lang.Math.floor(lightTiming.getTimeOn(lightCycles) + lightTiming.getTimeDelay())), timeScale - 1);
+            if (stable > next){
+                Segments segments = new IntervalWave(heavyTiming, MRSCycles[k], 0, 0, next, (int) (stable - next + 1))
+                    .and(new IntervalWave(lightTiming, lightCycles, 0, 0, next, (int) (stable - next + 1))).toSegments();
+                //the last segment may continue after stable
+                for (int j = 0; j < segments.size() - 1; j++){
+                    prefix.add(segments.getValue(j), segments.getLength(j));
+                }
+                next = prefix.getEnd() + 1;
+            }
 
-        for(double i = 0.5; i <= MRSCycles; i += 0.5){
+            Segments tail = new IntervalWave(heavyTiming, MRSCycles[k], 0, 0, next, (int) (timeScale - next))
+                .and(new IntervalWave(lightTiming, lightCycles, 0, 0, next, (int) (timeScale - next))).toSegments();
+            SegmentFold fold = prefix.copy();
+            for (int j = 0; j < tail.size() - 1; j++){
+                fold.add(tail.getValue(j), tail.getLength(j));
+            }
+            results[k] = fold.finish(tail.getValue(tail.size() - 1), tail.getLength(tail.size() - 1));
+            results[k][9] = (int)((double)results[k][4]*100/normFactor(heavyMass, MRSCycles[k], prop, cycleCalib));
+        }
 
-            time += 5*(int)((Proportion*cycleCalibration/2)/5);
-            time += 5*(int)(((1-Proportion)*cycleCalibration/2)/5);
-            MRSEnds.add(time);
+        return results;
+    }
 
-        }
 
+    /**
+     * Number of best settings kept and refined at each step of optimiseSettings
+     */
+    private static final int OPTIMISER_CANDIDATES = 4;
 
+    /**
+     * Number of grid steps between coarse settings along each axis when optimiseSettings starts
+     */
+    private static final int OPTIMISER_COARSE_POINTS = 16;
 
-        return new ArrayList<>(MRSEnds);
 
-    }
+    /**
+     * Searches the MRSCycles/prop settings of a mass pair for the one with the highest normalized On Time (pkSwt[9])
+     * of the AND combination, among the settings that keep the number of peaks and the Ion of Interest leakage
+     * (IOIWaveformOnTime) within bounds. The grid is first evaluated at a coarse stride; the best settings are then
+     * refined by halving the stride around them until the grid step is reached, so only a small part of the grid is
+     * evaluated (the result is the best setting found, not necessarily the best of the whole grid). The leakage is
+     * only computed for settings whose On Time could still enter the best settings. Evaluated at nanosecond resolution
+     * with the suggested time windows and no start delay.
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param IOI Ion of Interest; greater than zero, or 0 if the leakage is not bounded
+     * @param minCycles the smallest number of MRSCycles; 0 < minCycles <= maxCycles
+     * @param maxCycles the largest number of MRSCycles; <= 850
+     * @param cycleStep the grid step of MRSCycles; greater than zero
+     * @param minProp the smallest prop; 0 < minProp <= maxProp
+     * @param maxProp the largest prop; < 1
+     * @param propStep the grid step of prop; greater than zero
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @param maxPeaks the largest acceptable number of segments shorter than adjacencyBreak (pkSwt[0]), or -1 for no bound
+     * @param maxLeakage the largest acceptable IOIWaveformOnTime of the dual combination in ns, or -1 for no bound
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @return List with: the MRSCycles, the prop, the normalized On Time, the number of peaks and the leakage in ns
+     * (-1 if not computed) of the best setting, or all values -1 if no setting within the bounds was found
+     */
+    public static double[] optimiseSettings(double MOI1, double MOI2, double IOI, double minCycles, double maxCycles, double cycleStep, double minProp, double maxProp, double propStep, int adjacencyBreak, int maxPeaks, int maxLeakage, double cycleCalib){
+
+        double heavyMass = java.lang.Math.max(MOI1, MOI2);
+        double lightMass = java.lang.Math.min(MOI1, MOI2);
+        int cycleCount = (int) java.lang.Math.floor((maxCycles - minCycles)/cycleStep + 1e-6) + 1;
+        int propCount = (int) java.lang.Math.floor((maxProp - minProp)/propStep + 1e-6) + 1;
+        boolean boundLeakage = maxLeakage >= 0 && IOI > 0;
+
+        MRSTiming[][] timings = new MRSTiming[propCount][];
+        Map<Long, double[]> evaluated = new HashMap<>();
+        List<double[]> best = new ArrayList<>();
+        //settings closest to each bound, by how many peaks too many and by how far the leakage is over maxLeakage
+        List<double[]> nearestPeaks = new ArrayList<>();
+        List<double[]> nearestLeakage = new ArrayList<>();
+
+        int stride = 1;
+        while (stride*OPTIMISER_COARSE_POINTS < java.lang.Math.max(cycleCount, propCount)){
+            stride *= 2;
+        }
 
+        List<int[]> points = new ArrayList<>();
+        for (int i = 0; i < cycleCount; i += stride){
+            for (int j = 0; j < propCount; j += stride){
+                points.add(new int[]{i, j});
+            }
+        }
 
+        while (true){
+            for (int[] point : points){
+                int i = point[0];
+                int j = point[1];
+                if (i < 0 || j < 0 || i >= cycleCount || j >= propCount || evaluated.containsKey((long) i*propCount + j)){
+                    continue;
+                }
 
-}
+                double MRSCycles = minCycles + i*cycleStep;
+                double prop = minProp + j*propStep;
+                if (timings[j] == null){
+                    timings[j] = new MRSTiming[]{new MRSTiming(heavyMass, prop, cycleCalib), new MRSTiming(lightMass, prop, cycleCalib),
+                        boundLeakage ? new MRSTiming(IOI, prop, cycleCalib) : null};
+                }
 
+                int timeScale = getSuggestedTimeScale(heavyMass, MRSCycles, prop, cycleCalib);
+                int[] pkSwt = pulseScheme(pulseSegments(timings[j][0], timings[j][1], MRSCycles, timeScale),
+                    heavyMass, MRSCycles, prop, adjacencyBreak, cycleCalib);
+                double[] setting = {MRSCycles, prop, pkSwt[9], pkSwt[0], -1, i, j, 0, 0};
+
+                boolean competitive = best.size() < OPTIMISER_CANDIDATES || pkSwt[9] > best.get(best.size() - 1)[2];
+                //setting[7] is the number of peaks over maxPeaks and setting[8] the leakage over maxLeakage in ns
+                setting[7] = maxPeaks < 0 ? 0 : java.lang.Math.max(0, pkSwt[0] - maxPeaks);
+                if (setting[7] == 0 && competitive && boundLeakage){
+                    setting[4] = IOIWaveformOnTime(timings[j][0], timings[j][1], timings[j][2], MRSCycles, timeScale, 0, true);
+                    setting[8] = java.lang.Math.max(0, setting[4] - maxLeakage);
+                }
+                evaluated.put((long) i*propCount + j, setting);
 
+                //settings closest to the bounds are refined too, so a small feasible region is not missed
+                if (setting[7] > 0){
+                    insertSetting(nearestPeaks, setting, 7, true);
+                }
+                else if (setting[8] > 0){
+                    insertSetting(nearestLeakage, setting, 8, true);
+                }
+                else if (competitive){
+                    insertSetting(best, setting, 2, false);
+                }
+            }
 
+            if (stride == 1){
+                break;
+            }
 
+            //refine around the best settings at half the stride
+            stride /= 2;
+            points = new ArrayList<>();
+            List<double[]> refined = new ArrayList<>(best);
+            refined.addAll(nearestPeaks);
+            refined.addAll(nearestLeakage);
+            for (double[] setting : refined){
+                for (int di = -stride; di <= stride; di += stride){
+                    for (int dj = -stride; dj <= stride; dj += stride){
+                        points.add(new int[]{(int) setting[5] + di, (int) setting[6] + dj});
+                    }
+                }
+            }
+        }
 
+        if (best.isEmpty()){
+            return new double[]{-1, -1, -1, -1, -1};
+        }
+        return Arrays.copyOf(best.get(0), 5);
+    }
 
 
+    /**
+     * Inserts a setting into a list of at most OPTIMISER_CANDIDATES settings ordered by one of their values
+     * @param settings the ordered settings; non-null
+     * @param setting the setting to insert; non-null
+     * @param index the index of the value the settings are ordered by
+     * @param ascending true if smaller values come first, false if larger values come first
+     */
+    private static void insertSetting(List<double[]> settings, double[] setting, int index, boolean ascending){
+        int position = 0;
+        while (position < settings.size() && (ascending ? settings.get(position)[index] <= setting[index] : settings.get(position)[index] >= setting[index])){
+            position++;
+        }
+        if (position < OPTIMISER_CANDIDATES){
+            settings.add(position, setting);
+            if (settings.size() > OPTIMISER_CANDIDATES){
+                settings.remove(settings.size() - 1);
+            }
+        }
+    }
 
 
+    /**
+     * Runs optimiseSettings for several mass pairs in parallel
+     * @param pairs each row holds MOI1, MOI2 and the Ion of Interest (0 if the leakage is not bounded); non-null
+     * @param minCycles the smallest number of MRSCycles; 0 < minCycles <= maxCycles
+     * @param maxCycles the largest number of MRSCycles; <= 850
+     * @param cycleStep the grid step of MRSCycles; greater than zero
+     * @param minProp the smallest prop; 0 < minProp <= maxProp
+     * @param maxProp the largest prop; < 1
+     * @param propStep the grid step of prop; greater than zero
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than 1
+     * @param maxPeaks the largest acceptable number of segments shorter than adjacencyBreak (pkSwt[0]), or -1 for no bound
+     * @param maxLeakage the largest acceptable IOIWaveformOnTime of the dual combination in ns, or -1 for no bound
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @return the result of optimiseSettings for each pair, in the order of pairs
+     * @throws IllegalStateException if the optimisation of a pair fails (see ParallelTasks)
+     */
+    public static double[][] optimiseSettings(double[][] pairs, double minCycles, double maxCycles, double cycleStep, double minProp, double maxProp, double propStep, int adjacencyBreak, int maxPeaks, int maxLeakage, double cycleCalib){
 
+        List<double[]> results = ParallelTasks.evaluate(pairs.length, pair -> optimiseSettings(pairs[pair][0], pairs[pair][1],
+            pairs[pair].length > 2 ? pairs[pair][2] : 0, minCycles, maxCycles, cycleStep, minProp, maxProp, propStep,
+            adjacencyBreak, maxPeaks, maxLeakage, cycleCalib));
+        return results.toArray(new double[0][]);
+    }
 
+}
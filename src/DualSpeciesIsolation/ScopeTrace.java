@@ -0,0 +1,385 @@
+package DualSpeciesIsolation;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ScopeTrace {
+
+    /**
+     * Largest part of a trace file mapped into memory at once, in bytes
+     */
+    private static final int CHUNK_SIZE = 1 << 28;
+
+    /**
+     * Largest part of a text trace mapped and copied into an array at once, in bytes
+     */
+    private static final int TEXT_CHUNK_SIZE = 1 << 24;
+
+    /**
+     * Largest mantissa a number is read into before further digits only move the decimal point
+     */
+    private static final long MANTISSA_LIMIT = 100000000000000000L;
+
+    /**
+     * Powers of ten that are exact doubles, 1e0 to 1e22
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int k = 1; k < POWERS_OF_TEN.length; k++){
+            POWERS_OF_TEN[k] = POWERS_OF_TEN[k - 1]*10;
+        }
+    }
+
+    /**
+     * The thresholded trace, from 0 ns at the first sample
+     */
+    private final Waveform wave;
+
+    /**
+     * Time in ns of the first sample on the time axis of the oscilloscope
+     */
+    private final double firstTime;
+
+    /**
+     * Number of samples read from the trace
+     */
+    private final long samples;
+
+    /*Abstraction Function:
+    A gate signal measured with an oscilloscope and turned into digital values: value i of wave is the thresholded
+    level of the last sample at or before i*Resolution ns after the first sample, which the oscilloscope took at
+    firstTime ns.
+     */
+
+    /*Rep Invariant:
+    wave is non-null with a start time of 0 and samples >= 0.
+     */
+
+    private ScopeTrace(Waveform wave, double firstTime, long samples){
+        this.wave = wave;
+        this.firstTime = firstTime;
+        this.samples = samples;
+    }
+
+    /**
+     * Reads a text trace (CSV or whitespace separated columns) through a memory map of the file. Lines whose columns
+     * are not numbers, like headers, are skipped.
+     * @param file the trace file; non-null
+     * @param timeColumn column of the sample times (from 0), or -1 if the samples are evenly spaced without one
+     * @param valueColumn column of the sample levels (from 0); non-negative
+     * @param nsPerUnit nanoseconds per unit of the time column (1e9 for seconds), or the time between samples in ns
+     * if there is no time column; greater than zero
+     * @param threshold the level between Lo and Hi
+     * @param hysteresis the width of the band around threshold a level must cross to switch; non-negative
+     * @param Resolution the time between values of the waveform in ns; greater than zero
+     * @return the thresholded trace
+     * @throws IOException if the file can not be read
+     * @throws RepresentationViolation if a line is longer than the largest mapped part of the file, or if the
+     * trace has more than Integer.MAX_VALUE - 64 values at Resolution
+     */
+    public static ScopeTrace readCSV(Path file, int timeColumn, int valueColumn, double nsPerUnit, double threshold,
+                                     double hysteresis, long Resolution) throws IOException, RepresentationViolation{
+
+        Thresholder thresholder = new Thresholder(threshold, hysteresis, Resolution, 1 << 16);
+        int lastColumn = java.lang.Math.max(timeColumn, valueColumn);
+        double[] columns = new double[lastColumn + 1];
+        long index = 0;
+
+        byte[] text = new byte[TEXT_CHUNK_SIZE];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long position = 0;
+            long length = channel.size();
+            while (position < length){
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, java.lang.Math.min(TEXT_CHUNK_SIZE, length - position));
+                int end = buffer.limit();
+                buffer.get(text, 0, end);
+                //only whole lines are read from a part that does not end the file
+                if (position + end < length){
+                    while (end > 0 && text[end - 1] != '\n'){
+                        end--;
+                    }
+                    if (end == 0){
+                        throw new RepresentationViolation("Line longer than " + TEXT_CHUNK_SIZE + " bytes in " + file);
+                    }
+                }
+
+                int i = 0;
+                while (i < end){
+                    int lineEnd = i;
+                    while (lineEnd < end && text[lineEnd] != '\n'){
+                        lineEnd++;
+                    }
+                    if (readColumns(text, i, lineEnd, columns)){
+                        double time = timeColumn >= 0 ? columns[timeColumn]*nsPerUnit : index*nsPerUnit;
+                        thresholder.add(time, columns[valueColumn]);
+                        index++;
+                    }
+                    i = lineEnd + 1;
+                }
+                position += end;
+            }
+        }
+        return thresholder.finish();
+    }
+
+    /**
+     * Reads a binary trace of evenly spaced little endian samples through a memory map of the file
+     * @param file the trace file; non-null
+     * @param dtype the type of every sample as a NumPy type string: "|i1", "<i2", "<i4", "<f4" or "<f8"
+     * @param offset the number of bytes before the first sample, eg. a file header; non-negative
+     * @param sampleInterval the time between samples in ns; greater than zero
+     * @param threshold the level between Lo and Hi
+     * @param hysteresis the width of the band around threshold a level must cross to switch; non-negative
+     * @param Resolution the time between values of the waveform in ns; greater than zero
+     * @return the thresholded trace
+     * @throws IOException if the file can not be read
+     * @throws RepresentationViolation if dtype is not one of the supported types, or if the trace has more than
+     * Integer.MAX_VALUE - 64 values at Resolution
+     */
+    public static ScopeTrace readBinary(Path file, String dtype, long offset, double sampleInterval, double threshold,
+                                        double hysteresis, long Resolution) throws IOException, RepresentationViolation{
+
+        int itemSize;
+        switch (dtype){
+            case "|i1": itemSize = 1; break;
+            case "<i2": itemSize = 2; break;
+            case "<i4": case "<f4": itemSize = 4; break;
+            case "<f8": itemSize = 8; break;
+            default: throw new RepresentationViolation("Unsupported sample type " + dtype);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long count = (channel.size() - offset)/itemSize;
+            long values = (long) ((count - 1)*sampleInterval/Resolution) + 1;
+            if (values > Thresholder.MAX_VALUES){
+                throw new RepresentationViolation("Trace of " + values + " values at resolution " + Resolution
+                    + " ns is longer than " + Thresholder.MAX_VALUES + " values");
+            }
+            Thresholder thresholder = new Thresholder(threshold, hysteresis, Resolution, java.lang.Math.max(values, 1));
+
+            boolean floating = dtype.charAt(1) == 'f';
+            long index = 0;
+            int chunkItems = CHUNK_SIZE/itemSize;
+            while (index < count){
+                int items = (int) java.lang.Math.min(chunkItems, count - index);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset + index*itemSize, (long) items*itemSize);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                for (int k = 0; k < items; k++){
+                    double level;
+                    switch (itemSize){
+                        case 1: level = buffer.get(k); break;
+                        case 2: level = buffer.getShort(2*k); break;
+                        case 4: level = floating ? buffer.getFloat(4*k) : buffer.getInt(4*k); break;
+                        default: level = buffer.getDouble(8*k);
+                    }
+                    thresholder.add((index + k)*sampleInterval, level);
+                }
+                index += items;
+            }
+            return thresholder.finish();
+        }
+    }
+
+    /**
+     * Reads the numbers of a line separated by whitespace, commas or semicolons into columns
+     * @return true if the line has a number in every one of the columns
+     */
+    private static boolean readColumns(byte[] text, int from, int to, double[] columns){
+        int column = 0;
+        int i = from;
+        while (column < columns.length){
+            while (i < to && isSeparator(text[i])){
+                i++;
+            }
+            if (i >= to){
+                return false;
+            }
+            int start = i;
+            while (i < to && !isSeparator(text[i])){
+                i++;
+            }
+            columns[column] = parseNumber(text, start, i);
+            if (Double.isNaN(columns[column])){
+                return false;
+            }
+            column++;
+        }
+        return true;
+    }
+
+    private static boolean isSeparator(byte c){
+        return c == ',' || c == ';' || c == ' ' || c == '\t' || c == '\r';
+    }
+
+    /**
+     * Reads a decimal number with an optional sign, fraction and exponent without creating a String
+     * @return the number between from and to, or NaN if it is not a number
+     */
+    private static double parseNumber(byte[] text, int from, int to){
+
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text[i] == '-' || text[i] == '+')){
+            negative = text[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        for (; i < to && text[i] >= '0' && text[i] <= '9'; i++, digits++){
+            if (mantissa < MANTISSA_LIMIT){
+                mantissa = mantissa*10 + text[i] - '0';
+            } else {
+                exponent++;
+            }
+        }
+        if (i < to && text[i] == '.'){
+            for (i++; i < to && text[i] >= '0' && text[i] <= '9'; i++, digits++){
+                if (mantissa < MANTISSA_LIMIT){
+                    mantissa = mantissa*10 + text[i] - '0';
+                    exponent--;
+                }
+            }
+        }
+        if (digits == 0){
+            return Double.NaN;
+        }
+
+        if (i < to && (text[i] == 'e' || text[i] == 'E')){
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (text[i] == '-' || text[i] == '+')){
+                negativeExponent = text[i] == '-';
+                i++;
+            }
+            int power = 0;
+            int powerDigits = 0;
+            for (; i < to && text[i] >= '0' && text[i] <= '9'; i++, powerDigits++){
+                power = java.lang.Math.min(power*10 + text[i] - '0', 1000);
+            }
+            if (powerDigits == 0){
+                return Double.NaN;
+            }
+            exponent += negativeExponent ? -power : power;
+        }
+        if (i != to){
+            return Double.NaN;
+        }
+
+        double value = exponent >= 0 ? mantissa*powerOfTen(exponent) : mantissa/powerOfTen(-exponent);
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return 10 to the power of a non-negative exponent
+     */
+    private static double powerOfTen(int exponent){
+        return exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[exponent] : java.lang.Math.pow(10, exponent);
+    }
+
+    /**
+     * @return the thresholded trace, from 0 ns at the first sample
+     */
+    public Waveform getWave(){
+        return wave;
+    }
+
+    /**
+     * @return the time in ns of the first sample on the time axis of the oscilloscope
+     */
+    public double getFirstTime(){
+        return firstTime;
+    }
+
+    /**
+     * @return the number of samples read from the trace
+     */
+    public long getSamples(){
+        return samples;
+    }
+
+    /**
+     * Turns samples, in order of time, into the values of a waveform: a Schmitt trigger switches Hi above
+     * threshold + hysteresis/2 and Lo below threshold - hysteresis/2, and every value holds the level of the last
+     * sample at or before its time (sample times are rounded to the ns, so rounding errors of the trace times do not
+     * move an edge by a value)
+     */
+    private static final class Thresholder {
+
+        /**
+         * Largest number of values of a thresholded trace
+         */
+        private static final int MAX_VALUES = Integer.MAX_VALUE - 64;
+
+        private final double high;
+        private final double low;
+        private final double threshold;
+        private final long Resolution;
+
+        private long[] bits;
+        private int size;
+        private int state;
+        private double firstTime;
+        private long lastTime;
+        private long samples;
+
+        private Thresholder(double threshold, double hysteresis, long Resolution, long expectedValues){
+            this.threshold = threshold;
+            this.high = threshold + hysteresis/2;
+            this.low = threshold - hysteresis/2;
+            this.Resolution = Resolution;
+            this.bits = new long[(int) ((java.lang.Math.min(expectedValues, MAX_VALUES) + 63)/64 + 1)];
+        }
+
+        private void add(double time, double level) throws RepresentationViolation{
+            long relative = java.lang.Math.round(time - firstTime);
+            if (samples == 0){
+                firstTime = time;
+                relative = 0;
+                state = level >= threshold ? 1 : 0;
+            } else {
+                fill(relative, false);
+                if (level > high){
+                    state = 1;
+                } else if (level < low){
+                    state = 0;
+                }
+            }
+            lastTime = relative;
+            samples++;
+        }
+
+        /**
+         * Adds the values before the time in ns after the first sample (or up to it if inclusive) with the current state
+         * @throws RepresentationViolation if the values do not fit in a waveform
+         */
+        private void fill(long time, boolean inclusive) throws RepresentationViolation{
+            while ((long) size*Resolution < time || (inclusive && (long) size*Resolution == time)){
+                if (size == MAX_VALUES){
+                    throw new RepresentationViolation("Trace longer than " + size + " values at resolution " + Resolution + " ns");
+                }
+                if (size >>> 6 >= bits.length){
+                    bits = java.util.Arrays.copyOf(bits, bits.length*2);
+                }
+                if (state == 1){
+                    Waveform.setBit(bits, size);
+                }
+                size++;
+            }
+        }
+
+        private ScopeTrace finish() throws RepresentationViolation{
+            if (samples > 0){
+                fill(lastTime, true);
+            }
+            return new ScopeTrace(new Waveform(java.util.Arrays.copyOf(bits, (size + 63)/64), size, Resolution, 0), firstTime, samples);
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package DualSpeciesIsolation;
+
+class SegmentFold {
+
+    /**
+     * Minimal acceptable Hi or Lo segment in nanoseconds
+     */
+    private final long adjacencyBreak;
+
+    /**
+     * Uncertainty of every edge in nanoseconds
+     */
+    private final long resolution;
+
+    /**
+     * Number of segments added
+     */
+    private int count;
+
+    /**
+     * Number of segments shorter than the adjacency break, also when edges are indeterminate and included
+     */
+    private int peaks;
+    private int indetPeaks;
+    private int inclPeaks;
+
+    /**
+     * Total Hi time in ns and number of switches
+     */
+    private long onTime;
+    private int switches;
+
+    /**
+     * Minimum and second minimum segment widths in ns and the times of their last samples
+     */
+    private long minAdj;
+    private long secondSmallest;
+    private long minTime;
+    private long secondMinTime;
+
+    /**
+     * Time in ns of the last sample of the last segment added
+     */
+    private long end;
+
+    /*Abstraction Function:
+    The pulseScheme statistics (see PulseGenerator.segmentScheme) of the first count segments of a waveform, every
+    one of them followed by another segment; end is the time of the last sample added. The statistics of the whole
+    waveform are those of finish with its last segment, so the statistics of waveforms that share their first
+    segments are computed from a copy of the fold of those segments.
+     */
+
+    /*Rep Invariant:
+    adjacencyBreak > resolution > 0, count >= 0; minAdj, secondSmallest, minTime and secondMinTime are -1 until set.
+     */
+
+    /**
+     * @param startTime the time in ns of the start of the first segment
+     * @param resolution the uncertainty in ns of every edge; greater than zero
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in nanoseconds; greater than resolution
+     */
+    SegmentFold(long startTime, long resolution, long adjacencyBreak){
+        this.adjacencyBreak = adjacencyBreak;
+        this.resolution = resolution;
+        this.minAdj = -1;
+        this.secondSmallest = -1;
+        this.minTime = -1;
+        this.secondMinTime = -1;
+        this.end = startTime - resolution;
+    }
+
+    /**
+     * @return a fold with the same segments that can be extended independently of this one
+     */
+    SegmentFold copy(){
+        SegmentFold copy = new SegmentFold(0, resolution, adjacencyBreak);
+        copy.count = count;
+        copy.peaks = peaks;
+        copy.indetPeaks = indetPeaks;
+        copy.inclPeaks = inclPeaks;
+        copy.onTime = onTime;
+        copy.switches = switches;
+        copy.minAdj = minAdj;
+        copy.secondSmallest = secondSmallest;
+        copy.minTime = minTime;
+        copy.secondMinTime = secondMinTime;
+        copy.end = end;
+        return copy;
+    }
+
+    /**
+     * Adds a segment that is followed by another segment
+     * @param value the value (0 or 1) of the segment
+     * @param length the length of the segment in ns; a positive multiple of the resolution
+     */
+    void add(int value, long length){
+
+        end += length;
+        if (value == 1){
+            onTime += length;
+        }
+
+        switches++;
+        rank(length, end);
+
+        //the first segment only has one edge (see Segments.getInclLength and Segments.getIndetLength)
+        long edges = count == 0 ? resolution : 2*resolution;
+        if(length < adjacencyBreak){
+            peaks++;
+        }
+        if ((value == 1 ? length + edges : length) < adjacencyBreak){
+            inclPeaks++;
+        }
+        if ((value == 0 ? length - edges : length) < adjacencyBreak){
+            indetPeaks++;
+        }
+        count++;
+    }
+
+    /**
+     * Takes the width of a segment into the minimum and second minimum widths; of segments of equal width the one
+     * that ends first is kept, so widths can be ranked in any order of time
+     * @param length the length of the segment in ns; greater than zero
+     * @param time the time in ns of the last sample of the segment
+     */
+    void rank(long length, long time){
+        if (minAdj < 0 || length < minAdj){
+            if (minAdj > 0){
+                secondSmallest = minAdj;
+                secondMinTime = minTime;
+            }
+            minAdj = length;
+            minTime = time;
+        } else if (length == minAdj){
+            minTime = java.lang.Math.min(minTime, time);
+        } else if (secondSmallest < 0 || length < secondSmallest){
+            secondSmallest = length;
+            secondMinTime = time;
+        } else if (length == secondSmallest){
+            secondMinTime = java.lang.Math.min(secondMinTime, time);
+        }
+    }
+
+    /**
+     * Adds segments that were counted together rather than added one by one (see BeatPredictor); none of them is
+     * the first segment and each is followed by another. Their widths are not ranked: at least the smallest two
+     * widths of the segments, with their times, must be passed to rank.
+     * @param segments the number of segments
+     * @param peaks the number of them shorter than the adjacency break
+     * @param indetPeaks the number of them shorter than the adjacency break with indeterminate edges
+     * @param inclPeaks the number of them shorter than the adjacency break with included edges
+     * @param onTime their total Hi time in ns
+     * @param end the time in ns of the last sample of the last of them
+     */
+    void addCounted(long segments, long peaks, long indetPeaks, long inclPeaks, long onTime, long end){
+        this.count += (int) segments;
+        this.switches += (int) segments;
+        this.peaks += (int) peaks;
+        this.indetPeaks += (int) indetPeaks;
+        this.inclPeaks += (int) inclPeaks;
+        this.onTime += onTime;
+        this.end = end;
+    }
+
+    /**
+     * @return the time in ns of the last sample of the last segment added
+     */
+    long getEnd(){
+        return end;
+    }
+
+    /**
+     * @param value the value (0 or 1) of the last segment of the waveform
+     * @param length the length of the last segment in ns; a positive multiple of the resolution
+     * @return the pulseScheme statistics of the waveform ending with the last segment, with 0 in place of the
+     * normalized On Time (see PulseGenerator.segmentScheme)
+     */
+    int[] finish(int value, long length){
+
+        int[] pkSwt = new int[10];
+        int endPeak = count > 0 && length <= resolution ? 1 : 0;
+        long first = minAdj;
+        long second = secondSmallest;
+        if (second < 0 || first < 0){
+            first = 0;
+            second = 0;
+        }
+
+        pkSwt[0] = peaks + endPeak;
+        pkSwt[1] = switches + endPeak;
+        pkSwt[2] = indetPeaks + endPeak;
+        pkSwt[3] = inclPeaks + endPeak;
+        pkSwt[4] = (int) (onTime + (value == 1 ? length : 0));
+        pkSwt[5] = (int) first;
+        pkSwt[6] = (int) second;
+        pkSwt[7] = (int) minTime;
+        pkSwt[8] = (int) secondMinTime;
+
+        return pkSwt;
+    }
+
+}
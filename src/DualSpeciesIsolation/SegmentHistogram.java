@@ -0,0 +1,193 @@
+package DualSpeciesIsolation;
+
+import java.util.Arrays;
+
+public class SegmentHistogram {
+
+    /**
+     * Index of the segment lengths (edges counted as Lo)
+     */
+    public static final int PEAKS = 0;
+
+    /**
+     * Index of the segment lengths when edges are included (counted as Hi)
+     */
+    public static final int INCL_PEAKS = 1;
+
+    /**
+     * Index of the segment lengths when edges are indeterminate (not counted)
+     */
+    public static final int INDET_PEAKS = 2;
+
+    /**
+     * For each variant, the distinct segment lengths in ns in increasing order
+     */
+    private final long[][] lengths;
+
+    /**
+     * For each variant, cumulative[v][k] is the number of segments shorter than or equal to lengths[v][k]
+     */
+    private final int[][] cumulative;
+
+    /**
+     * 1 if the last segment is a single value long and counts as a peak for every adjacency break, 0 otherwise
+     */
+    private final int endPeak;
+
+    /*Abstraction Function:
+    The lengths of the Hi/Lo segments of a waveform that are compared with the adjacency break by
+    PulseGenerator.segmentScheme, in the three ways the edges can be counted. The number of peaks for any adjacency
+    break is the number of lengths shorter than the break plus endPeak.
+     */
+
+    /*Rep Invariant:
+    lengths and cumulative hold three arrays each, lengths[v] is strictly increasing, cumulative[v] has the same
+    length as lengths[v] and is strictly increasing from a value greater than zero, and endPeak is 0 or 1.
+     */
+
+    /**
+     * Summarises the segments of a waveform
+     * @param segments the segments of the waveform; non-null
+     */
+    public SegmentHistogram(Segments segments){
+
+        int compared = java.lang.Math.max(segments.size() - 1, 0);
+        long[][] all = new long[3][compared];
+        for (int j = 0; j < compared; j++){
+            all[PEAKS][j] = segments.getLength(j);
+            all[INCL_PEAKS][j] = segments.getInclLength(j);
+            all[INDET_PEAKS][j] = segments.getIndetLength(j);
+        }
+
+        this.lengths = new long[3][];
+        this.cumulative = new int[3][];
+        for (int v = 0; v < 3; v++){
+            Arrays.sort(all[v]);
+            int distinct = 0;
+            long[] values = new long[compared];
+            int[] counts = new int[compared];
+            for (int k = 0; k < compared; k++){
+                if (distinct == 0 || values[distinct - 1] != all[v][k]){
+                    values[distinct] = all[v][k];
+                    distinct++;
+                }
+                counts[distinct - 1] = k + 1;
+            }
+            lengths[v] = Arrays.copyOf(values, distinct);
+            cumulative[v] = Arrays.copyOf(counts, distinct);
+        }
+
+        this.endPeak = segments.endsWithPeak() ? 1 : 0;
+    }
+
+    /**
+     * @param lengths for each variant, the distinct segment lengths in ns in increasing order
+     * @param cumulative for each variant, the number of segments shorter than or equal to each length
+     * @param endPeak 1 if the last segment counts as a peak, 0 otherwise
+     */
+    private SegmentHistogram(long[][] lengths, int[][] cumulative, int endPeak){
+        this.lengths = lengths;
+        this.cumulative = cumulative;
+        this.endPeak = endPeak;
+    }
+
+    /**
+     * Reads a histogram in the format of toString
+     * @param tokens whitespace separated tokens; non-null
+     * @param offset index of the first token of the histogram
+     * @return the histogram
+     * @throws RepresentationViolation if the tokens are not a histogram
+     */
+    public static SegmentHistogram parse(String[] tokens, int offset) throws RepresentationViolation{
+
+        try {
+            int index = offset;
+            int endPeak = Integer.parseInt(tokens[index++]);
+            long[][] lengths = new long[3][];
+            int[][] cumulative = new int[3][];
+            for (int v = 0; v < 3; v++){
+                int distinct = Integer.parseInt(tokens[index++]);
+                lengths[v] = new long[distinct];
+                cumulative[v] = new int[distinct];
+                int total = 0;
+                for (int k = 0; k < distinct; k++){
+                    lengths[v][k] = Long.parseLong(tokens[index++]);
+                    total += Integer.parseInt(tokens[index++]);
+                    cumulative[v][k] = total;
+                }
+            }
+            return new SegmentHistogram(lengths, cumulative, endPeak);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e){
+            throw new RepresentationViolation("Not a segment histogram");
+        }
+    }
+
+    /**
+     * @param variant PEAKS, INCL_PEAKS or INDET_PEAKS
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in ns
+     * @return the number of peaks of the variant for the adjacency break, as given by PulseGenerator.segmentScheme
+     */
+    public int getPeaks(int variant, long adjacencyBreak){
+        int k = Arrays.binarySearch(lengths[variant], adjacencyBreak);
+        int below = k >= 0 ? k : -k - 1;
+        return (below == 0 ? 0 : cumulative[variant][below - 1]) + endPeak;
+    }
+
+    /**
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in ns
+     * @return the number of segments shorter than the adjacency break
+     */
+    public int getPeaks(long adjacencyBreak){
+        return getPeaks(PEAKS, adjacencyBreak);
+    }
+
+    /**
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in ns
+     * @return the number of segments shorter than the adjacency break when edges are included
+     */
+    public int getInclPeaks(long adjacencyBreak){
+        return getPeaks(INCL_PEAKS, adjacencyBreak);
+    }
+
+    /**
+     * @param adjacencyBreak the minimal acceptable Hi or Lo segment in ns
+     * @return the number of segments shorter than the adjacency break when edges are indeterminate
+     */
+    public int getIndetPeaks(long adjacencyBreak){
+        return getPeaks(INDET_PEAKS, adjacencyBreak);
+    }
+
+    /**
+     * @return the histogram as whitespace separated tokens: the end peak (0 or 1), then for the segment lengths,
+     * the lengths with edges included and the lengths with edges indeterminate, the number of distinct lengths
+     * followed by each length in ns and its count
+     */
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder();
+        builder.append(endPeak);
+        for (int v = 0; v < 3; v++){
+            builder.append(' ').append(lengths[v].length);
+            for (int k = 0; k < lengths[v].length; k++){
+                int count = k == 0 ? cumulative[v][k] : cumulative[v][k] - cumulative[v][k - 1];
+                builder.append(' ').append(lengths[v][k]).append(' ').append(count);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object that){
+        if (!(that instanceof SegmentHistogram)){
+            return false;
+        }
+        SegmentHistogram other = (SegmentHistogram) that;
+        return endPeak == other.endPeak && Arrays.deepEquals(lengths, other.lengths) && Arrays.deepEquals(cumulative, other.cumulative);
+    }
+
+    @Override
+    public int hashCode(){
+        return Arrays.deepHashCode(lengths) + endPeak;
+    }
+
+}
@@ -0,0 +1,189 @@
+package DualSpeciesIsolation;
+
+public class Segments {
+
+    /**
+     * Value of each segment (1 is Hi and 0 is Lo)
+     */
+    private final int[] values;
+
+    /**
+     * Length of each segment in nanoseconds
+     */
+    private final long[] lengths;
+
+    /**
+     * Number of segments
+     */
+    private final int runs;
+
+    /**
+     * Time in nanoseconds of the start of the first segment
+     */
+    private final long startTime;
+
+    /**
+     * Uncertainty of every edge in nanoseconds (time between values of the sampled waveform)
+     */
+    private final long Resolution;
+
+    /*Abstraction Function:
+    A waveform given as consecutive Hi/Lo segments. Segment j has value values[j] and lasts lengths[j] nanoseconds,
+    starting at startTime plus the lengths of all the segments before it. Every edge is only known to within
+    Resolution nanoseconds.
+     */
+
+    /*Rep Invariant:
+    values and lengths are non-null and hold at least runs entries, runs is non-negative, every value is 0 or 1,
+    every length is greater than zero and Resolution is greater than zero.
+     */
+
+    /**
+     * Splits a sampled waveform into segments; every value stands for Resolution nanoseconds
+     * @param wave the sampled waveform; non-null
+     */
+    public Segments(Waveform wave){
+
+        int size = wave.size();
+        int count = 0;
+        int[] runValues = new int[16];
+        long[] runLengths = new long[16];
+        long counter = 0;
+        int value = 0;
+        for (int i = 0; i <= size; i++){
+            if (i < size && counter > 0 && wave.getValue(i) == value){
+                counter++;
+                continue;
+            }
+            if (counter > 0){
+                if (count == runValues.length){
+                    runValues = java.util.Arrays.copyOf(runValues, count*2);
+                    runLengths = java.util.Arrays.copyOf(runLengths, count*2);
+                }
+                runValues[count] = value;
+                runLengths[count] = counter*wave.getResolution();
+                count++;
+            }
+            if (i < size){
+                value = wave.getValue(i);
+                counter = 1;
+            }
+        }
+
+        this.values = runValues;
+        this.lengths = runLengths;
+        this.runs = count;
+        this.startTime = wave.getStartTime();
+        this.Resolution = wave.getResolution();
+    }
+
+    /**
+     * Builds the segments of a waveform given by its edges
+     * @param edges the times in ns where the waveform changes value, in increasing order and strictly between start and end; non-null
+     * @param firstValue the value (0 or 1) of the waveform at start
+     * @param start the time in ns of the start of the waveform
+     * @param end the time in ns of the end of the waveform; greater than start
+     * @param resolution the uncertainty in ns of every edge; greater than zero
+     */
+    public Segments(long[] edges, int firstValue, long start, long end, long resolution){
+
+        this.runs = edges.length + 1;
+        this.values = new int[runs];
+        this.lengths = new long[runs];
+        long previous = start;
+        for (int j = 0; j < runs; j++){
+            long next = j < edges.length ? edges[j] : end;
+            values[j] = (firstValue + j) % 2;
+            lengths[j] = next - previous;
+            previous = next;
+        }
+        this.startTime = start;
+        this.Resolution = resolution;
+    }
+
+    /**
+     * @param values the value (0 or 1) of each segment in order; non-null
+     * @param lengths the length of each segment in ns; non-null, each a positive multiple of resolution
+     * @param runs the number of segments; non-negative and at most the length of values and lengths
+     * @param start the time in ns of the start of the first segment
+     * @param resolution the uncertainty in ns of every edge; greater than zero
+     */
+    public Segments(int[] values, long[] lengths, int runs, long start, long resolution){
+        this.values = java.util.Arrays.copyOf(values, runs);
+        this.lengths = java.util.Arrays.copyOf(lengths, runs);
+        this.runs = runs;
+        this.startTime = start;
+        this.Resolution = resolution;
+    }
+
+    /**
+     * @return the number of segments
+     */
+    public int size(){
+        return runs;
+    }
+
+    /**
+     * @param j index of a segment; 0 <= j < size()
+     * @return the value (0 or 1) of segment j
+     */
+    public int getValue(int j){
+        return values[j];
+    }
+
+    /**
+     * @param j index of a segment; 0 <= j < size()
+     * @return the length of segment j in ns
+     */
+    public long getLength(int j){
+        return lengths[j];
+    }
+
+    /**
+     * A segment of n ns counts as n + 2*Resolution ns when its edges are included (Hi segments); the first segment
+     * only has one edge
+     * @param j index of a segment; 0 <= j < size()
+     * @return the length of segment j in ns when its edges are counted as Hi
+     */
+    public long getInclLength(int j){
+        if (values[j] == 0){
+            return lengths[j];
+        }
+        return j == 0 ? lengths[j] + Resolution : lengths[j] + 2*Resolution;
+    }
+
+    /**
+     * A segment of n ns counts as n - 2*Resolution ns when its edges are indeterminate (Lo segments); the first
+     * segment only has one edge
+     * @param j index of a segment; 0 <= j < size()
+     * @return the length of segment j in ns when its edges are not counted
+     */
+    public long getIndetLength(int j){
+        if (values[j] == 1){
+            return lengths[j];
+        }
+        return j == 0 ? lengths[j] - Resolution : lengths[j] - 2*Resolution;
+    }
+
+    /**
+     * @return true if the last segment is a single value long, in which case it counts as a peak
+     */
+    public boolean endsWithPeak(){
+        return runs > 1 && lengths[runs - 1] <= Resolution;
+    }
+
+    /**
+     * @return the time in ns of the start of the first segment
+     */
+    public long getStartTime(){
+        return startTime;
+    }
+
+    /**
+     * @return the uncertainty of every edge in ns
+     */
+    public long getResolution(){
+        return Resolution;
+    }
+
+}
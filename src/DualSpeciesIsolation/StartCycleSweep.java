@@ -0,0 +1,148 @@
+package DualSpeciesIsolation;
+
+import java.util.List;
+
+public class StartCycleSweep {
+
+    /**
+     * The first Mass of Interest
+     */
+    private final double MOI1;
+
+    /**
+     * The second Mass of Interest
+     */
+    private final double MOI2;
+
+    /**
+     * timings of the heavier Mass of Interest
+     */
+    private final MRSTiming heavyTiming;
+
+    /**
+     * timings of the lighter Mass of Interest
+     */
+    private final MRSTiming lightTiming;
+
+    /**
+     * Number of MRSCycles of the heavier mass
+     */
+    private final double MRSCycles;
+
+    /**
+     * True if the gate is the Dual MRS species combination, false if it is the heavier mass alone
+     */
+    private final Boolean dualAndComb;
+
+    /**
+     * time window in ns of every delayed gate
+     */
+    private final int timeScale;
+
+    /**
+     * waveform of the heavier mass delayed by referenceCycle
+     */
+    private final IntervalWave heavyWave;
+
+    /**
+     * start delay in ns of heavyWave
+     */
+    private final long referenceDelay;
+
+    /*Abstraction Function:
+    The gates of a dual (or single) MRS setup for every start delay. A delayed heavy waveform is anchored at its start
+    delay, so it is heavyWave moved by the difference of the start delays. The lighter mass and the Ions of Interest
+    keep the phase of their own time delay and are only switched on at the start delay, so they are cut from their
+    pattern for each start delay (from their Hi runs, never sampled).
+     */
+
+    /*Rep Invariant:
+    heavyTiming, lightTiming and heavyWave are non-null, heavyWave starts at referenceDelay and has timeScale values,
+    and MRSCycles > 0.
+     */
+
+    /**
+     * Generates the waveform of the heavier mass once for every start delay
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     */
+    public StartCycleSweep(double MOI1, double MOI2, double MRSCycles, double prop, double cycleCalib, Boolean dualAndComb){
+
+        this.MOI1 = MOI1;
+        this.MOI2 = MOI2;
+        this.heavyTiming = new MRSTiming(java.lang.Math.max(MOI1, MOI2), prop, cycleCalib);
+        this.lightTiming = new MRSTiming(java.lang.Math.min(MOI1, MOI2), prop, cycleCalib);
+        this.MRSCycles = MRSCycles;
+        this.dualAndComb = dualAndComb;
+        this.timeScale = PulseGenerator.getSuggestedTimeScaleShifted(heavyTiming.getMass(), MRSCycles, prop, cycleCalib);
+
+        //any start delay would do; the waveform relative to its start delay is the same for all of them
+        this.referenceDelay = heavyTiming.getStartDelay(1);
+        this.heavyWave = new IntervalWave(heavyTiming, MRSCycles, 1, 0, referenceDelay, timeScale);
+    }
+
+    /**
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @return the IOI sweep of the setup delayed by startCycle, equal to
+     * new IOISweep(MOI1, MOI2, MRSCycles, prop, cycleCalib, startCycle, dualAndComb)
+     */
+    public IOISweep at(double startCycle){
+
+        if (startCycle == 0){
+            return new IOISweep(MOI1, MOI2, MRSCycles, heavyTiming.getProp(), heavyTiming.getCycleCalib(), 0, dualAndComb);
+        }
+
+        double totalTime = heavyTiming.getTimeOn(MRSCycles);
+        long startTime = heavyTiming.getStartDelay(startCycle);
+        IntervalWave gate = heavyWave.shift(startTime - referenceDelay);
+        if (dualAndComb){
+            gate = gate.and(new IntervalWave(lightTiming, totalTime/lightTiming.getCycleCalibration(), 0, startTime, startTime, timeScale));
+        }
+
+        return new IOISweep(gate, totalTime, startTime, timeScale, heavyTiming.getProp(), heavyTiming.getCycleCalib(),
+            PulseGenerator.getSingleMRSEnds(heavyTiming, MRSCycles, startCycle),
+            heavyTiming.getTimeDelay() + PulseGenerator.halfCycles(startCycle)*heavyTiming.getPeriod());
+    }
+
+    /**
+     * Evaluates the on time of an Ion of Interest for every start delay in parallel (eg. 0 to 50 in steps of 0.5 with
+     * ParameterSweep.range)
+     * @param IOI Ion of Interest; greater than zero
+     * @param startCycles MRS start delays in MRS cycles, each non-negative; non-null
+     * @return IOIWaveformOnTime of the Ion of Interest for each start delay, in the order of startCycles
+     * @throws IllegalStateException if the on time for a start delay can not be evaluated (see ParallelTasks)
+     */
+    public int[] onTimes(double IOI, double[] startCycles){
+        List<Integer> results = ParallelTasks.evaluate(startCycles.length, k -> at(startCycles[k]).onTime(IOI));
+        int[] onTimes = new int[startCycles.length];
+        for (int k = 0; k < startCycles.length; k++){
+            onTimes[k] = results.get(k);
+        }
+        return onTimes;
+    }
+
+    /**
+     * Evaluates the on time of every Ion of Interest for every start delay, one parallel task per start delay so each
+     * delayed gate is built once
+     * @param IOIs Ions of Interest; non-null, each greater than zero
+     * @param startCycles MRS start delays in MRS cycles, each non-negative; non-null
+     * @return element [s][k] holds IOIWaveformOnTime of IOIs[k] delayed by startCycles[s]
+     * @throws IllegalStateException if the on times for a start delay can not be evaluated
+     */
+    public int[][] onTimes(double[] IOIs, double[] startCycles){
+        List<int[]> results = ParallelTasks.evaluate(startCycles.length, s -> {
+            IOISweep sweep = at(startCycles[s]);
+            int[] onTimes = new int[IOIs.length];
+            for (int k = 0; k < IOIs.length; k++){
+                onTimes[k] = sweep.onTime(IOIs[k]);
+            }
+            return onTimes;
+        });
+        return results.toArray(new int[0][]);
+    }
+
+}
@@ -0,0 +1,359 @@
+package DualSpeciesIsolation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class TraceComparison {
+
+    /**
+     * Time in ns added to the measured edges to align them with the simulated edges
+     */
+    private final long offset;
+
+    /**
+     * Number of matched edges, and of measured and simulated edges without a match where both waveforms overlap
+     */
+    private final int matched;
+    private final int unmatchedMeasured;
+    private final int unmatchedSimulated;
+
+    /**
+     * Timing error in ns (aligned measured time - simulated time) of every matched edge, in order of time
+     */
+    private final long[] errors;
+
+    /**
+     * Mean timing error in ns of the matched rising and falling edges
+     */
+    private final double meanRiseError;
+    private final double meanFallError;
+
+    /*Abstraction Function:
+    The edge timing agreement of a measured gate and a simulated gate. The measured edges are moved by offset, the
+    offset that matches the most edges, and every measured edge is matched to the simulated edge of the same
+    direction within the tolerance, in order of time; errors holds the timing error of every match.
+     */
+
+    /*Rep Invariant:
+    errors is non-null and holds matched entries, matched, unmatchedMeasured and unmatchedSimulated are non-negative.
+     */
+
+    private TraceComparison(long offset, int matched, int unmatchedMeasured, int unmatchedSimulated, long[] errors,
+                            double meanRiseError, double meanFallError){
+        this.offset = offset;
+        this.matched = matched;
+        this.unmatchedMeasured = unmatchedMeasured;
+        this.unmatchedSimulated = unmatchedSimulated;
+        this.errors = errors;
+        this.meanRiseError = meanRiseError;
+        this.meanFallError = meanFallError;
+    }
+
+    /**
+     * Aligns a measured gate with a simulated gate and compares the timings of their edges. The first rising edge of
+     * the measured gate is tried against each of the first searchEdges rising edges of the simulated gate, and the
+     * alignment matching the most edges is then centred on the median timing error.
+     * @param measured the measured gate (see ScopeTrace); non-null
+     * @param simulated the simulated gate; non-null
+     * @param tolerance the largest timing error in ns of a matched edge; non-negative
+     * @param searchEdges the number of simulated edges tried for the alignment; greater than zero
+     * @return the timing comparison of the edges
+     */
+    public static TraceComparison compare(Waveform measured, IntervalWave simulated, long tolerance, int searchEdges){
+        return compare(new Edges(measured), new Edges(simulated), tolerance, searchEdges);
+    }
+
+    /**
+     * @param measured the measured gate (see ScopeTrace); non-null
+     * @param simulated the simulated gate; non-null
+     * @param tolerance the largest timing error in ns of a matched edge; non-negative
+     * @param searchEdges the number of simulated edges tried for the alignment; greater than zero
+     * @return the timing comparison of the edges (see compare with an IntervalWave)
+     */
+    public static TraceComparison compare(Waveform measured, Waveform simulated, long tolerance, int searchEdges){
+        return compare(new Edges(measured), new Edges(simulated), tolerance, searchEdges);
+    }
+
+    private static TraceComparison compare(Edges measured, Edges simulated, long tolerance, int searchEdges){
+
+        int reference = 0;
+        while (reference < measured.count && !measured.rising[reference]){
+            reference++;
+        }
+        if (reference == measured.count){
+            reference = 0;
+        }
+
+        long offset = 0;
+        int best = -1;
+        for (int j = 0, tried = 0; j < simulated.count && tried < searchEdges && measured.count > 0; j++){
+            if (simulated.rising[j] != measured.rising[reference]){
+                continue;
+            }
+            long candidate = simulated.times[j] - measured.times[reference];
+            int matches = match(measured, simulated, candidate, tolerance, null, null);
+            if (matches > best){
+                best = matches;
+                offset = candidate;
+            }
+            tried++;
+        }
+
+        //centre the alignment on the median error, then match again
+        long[] errors = new long[java.lang.Math.min(measured.count, simulated.count)];
+        boolean[] matchedRising = new boolean[errors.length];
+        int matches = match(measured, simulated, offset, tolerance, errors, matchedRising);
+        if (matches > 0){
+            long[] sorted = Arrays.copyOf(errors, matches);
+            Arrays.sort(sorted);
+            offset -= sorted[matches/2];
+            matches = match(measured, simulated, offset, tolerance, errors, matchedRising);
+        }
+
+        double riseSum = 0;
+        double fallSum = 0;
+        int rises = 0;
+        for (int k = 0; k < matches; k++){
+            if (matchedRising[k]){
+                riseSum += errors[k];
+                rises++;
+            } else {
+                fallSum += errors[k];
+            }
+        }
+
+        //only the edges where both gates were recorded can be missing from the other one
+        long start = java.lang.Math.max(measured.startTime + offset, simulated.startTime);
+        long end = java.lang.Math.min(measured.endTime + offset, simulated.endTime);
+        int measuredInside = measured.countIn(start - offset, end - offset);
+        int simulatedInside = simulated.countIn(start, end);
+
+        return new TraceComparison(offset, matches, java.lang.Math.max(0, measuredInside - matches),
+            java.lang.Math.max(0, simulatedInside - matches), Arrays.copyOf(errors, matches),
+            rises > 0 ? riseSum/rises : 0, matches > rises ? fallSum/(matches - rises) : 0);
+    }
+
+    /**
+     * Matches the measured edges moved by offset with the simulated edges in one merge pass
+     * @param errors receives the timing error of every match if non-null
+     * @param matchedRising receives the direction of every match if non-null
+     * @return the number of matched edges
+     */
+    private static int match(Edges measured, Edges simulated, long offset, long tolerance, long[] errors, boolean[] matchedRising){
+        int matches = 0;
+        int i = 0;
+        int j = 0;
+        while (i < measured.count && j < simulated.count){
+            long difference = measured.times[i] + offset - simulated.times[j];
+            if (java.lang.Math.abs(difference) <= tolerance && measured.rising[i] == simulated.rising[j]){
+                if (errors != null){
+                    errors[matches] = difference;
+                    matchedRising[matches] = measured.rising[i];
+                }
+                matches++;
+                i++;
+                j++;
+            } else if (difference <= 0){
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return the time in ns added to the measured edges to align them with the simulated edges
+     */
+    public long getOffset(){
+        return offset;
+    }
+
+    /**
+     * @return the number of matched edges
+     */
+    public int getMatched(){
+        return matched;
+    }
+
+    /**
+     * @return the number of measured edges without a simulated edge where both gates were recorded
+     */
+    public int getUnmatchedMeasured(){
+        return unmatchedMeasured;
+    }
+
+    /**
+     * @return the number of simulated edges without a measured edge where both gates were recorded
+     */
+    public int getUnmatchedSimulated(){
+        return unmatchedSimulated;
+    }
+
+    /**
+     * @return the timing error in ns of every matched edge, in order of time
+     */
+    public long[] getErrors(){
+        return Arrays.copyOf(errors, errors.length);
+    }
+
+    /**
+     * @return the mean timing error in ns of the matched edges, 0 if there are none
+     */
+    public double getMeanError(){
+        double sum = 0;
+        for (long error : errors){
+            sum += error;
+        }
+        return errors.length > 0 ? sum/errors.length : 0;
+    }
+
+    /**
+     * @return the root mean square timing error in ns of the matched edges, 0 if there are none
+     */
+    public double getRMSError(){
+        double sum = 0;
+        for (long error : errors){
+            sum += (double) error*error;
+        }
+        return errors.length > 0 ? java.lang.Math.sqrt(sum/errors.length) : 0;
+    }
+
+    /**
+     * @return the largest absolute timing error in ns of the matched edges
+     */
+    public long getMaxError(){
+        long max = 0;
+        for (long error : errors){
+            max = java.lang.Math.max(max, java.lang.Math.abs(error));
+        }
+        return max;
+    }
+
+    /**
+     * @return the mean timing error in ns of the matched rising edges
+     */
+    public double getMeanRiseError(){
+        return meanRiseError;
+    }
+
+    /**
+     * @return the mean timing error in ns of the matched falling edges
+     */
+    public double getMeanFallError(){
+        return meanFallError;
+    }
+
+    @Override
+    public String toString(){
+        return "offset " + offset + " ns, matched " + matched + ", unmatched measured " + unmatchedMeasured
+            + ", unmatched simulated " + unmatchedSimulated + ", mean " + getMeanError() + " ns, rms " + getRMSError()
+            + " ns, max " + getMaxError() + " ns, rise " + meanRiseError + " ns, fall " + meanFallError + " ns";
+    }
+
+    /**
+     * TraceComparison traceFile threshold MOI1 MOI2 MRSCycles prop cycleCalib [tolerance] - compares a measured CSV
+     * trace (time in s, level) with the dual MRS gate of the suggested time scale
+     */
+    public static void main(String[] args){
+
+        if (args.length < 7){
+            System.out.println("TraceComparison traceFile threshold MOI1 MOI2 MRSCycles prop cycleCalib [tolerance]");
+            return;
+        }
+
+        try {
+            ScopeTrace trace = ScopeTrace.readCSV(Path.of(args[0]), 0, 1, 1e9, Double.parseDouble(args[1]), 0, 1);
+            double MOI1 = Double.parseDouble(args[2]);
+            double MOI2 = Double.parseDouble(args[3]);
+            double MRSCycles = Double.parseDouble(args[4]);
+            double prop = Double.parseDouble(args[5]);
+            double cycleCalib = Double.parseDouble(args[6]);
+            int timeScale = PulseGenerator.getSuggestedTimeScale(java.lang.Math.max(MOI1, MOI2), MRSCycles, prop, cycleCalib);
+            IntervalWave gate = PulseGenerator.speciesCombination(new double[]{MOI1, MOI2}, new double[0], MRSCycles, prop, timeScale, cycleCalib, 0);
+
+            long tolerance = args.length > 7 ? Long.parseLong(args[7]) : 100;
+            System.out.println(compare(trace.getWave(), gate, tolerance, 16));
+        } catch (IOException | RepresentationViolation e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The Rise/Fall switches of a waveform: the time of the first value after each switch and its direction
+     */
+    private static final class Edges {
+
+        private final long[] times;
+        private final boolean[] rising;
+        private final int count;
+
+        /**
+         * Time in ns of the first value and of the end of the last value
+         */
+        private final long startTime;
+        private final long endTime;
+
+        private Edges(Waveform wave){
+            WaveformIndex index = wave.index();
+            int total = index.edgeCountIn(wave.getStartTime(), wave.getStartTime() + (long) wave.size()*wave.getResolution());
+            this.times = new long[total];
+            this.rising = new boolean[total];
+            this.count = total;
+            this.startTime = wave.getStartTime();
+            this.endTime = wave.getStartTime() + (long) wave.size()*wave.getResolution();
+
+            long time = startTime;
+            for (int k = 0; k < total; k++){
+                time = index.nextEdgeAfter(time);
+                times[k] = time;
+                rising[k] = wave.getValue((int) ((time - startTime)/wave.getResolution())) == 1;
+            }
+        }
+
+        private Edges(IntervalWave wave){
+            this.times = new long[2*wave.getRunCount()];
+            this.rising = new boolean[2*wave.getRunCount()];
+            this.startTime = wave.getStartTime();
+            this.endTime = wave.getStartTime() + wave.size();
+
+            int edges = 0;
+            for (int k = 0; k < wave.getRunCount(); k++){
+                if (wave.getRunStart(k) > startTime){
+                    times[edges] = wave.getRunStart(k);
+                    rising[edges++] = true;
+                }
+                if (wave.getRunEnd(k) + 1 < endTime){
+                    times[edges] = wave.getRunEnd(k) + 1;
+                    rising[edges++] = false;
+                }
+            }
+            this.count = edges;
+        }
+
+        /**
+         * @return the number of edges at times start <= t < end
+         */
+        private int countIn(long start, long end){
+            int from = lowerBound(start);
+            int to = lowerBound(end);
+            return java.lang.Math.max(0, to - from);
+        }
+
+        private int lowerBound(long time){
+            int low = 0;
+            int high = count;
+            while (low < high){
+                int middle = (low + high) >>> 1;
+                if (times[middle] < time){
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package DualSpeciesIsolation;
+
+import java.util.List;
+
+public class TransmissionEstimator {
+
+    /**
+     * The gates and waveforms of the Ions of Interest
+     */
+    private final IOISweep sweep;
+
+    /**
+     * Arrival time spread of the ions of a bunch
+     */
+    private final ArrivalDistribution arrival;
+
+    /**
+     * Hi time of the gate in ns
+     */
+    private final long gateOnTime;
+
+    /*Abstraction Function:
+    The on time statistics of IOISweep for bunches with a finite arrival time spread: the waveform of an Ion of
+    Interest is moved by an offset drawn from arrival, and every statistic is its expectation over the offset, ie. the
+    convolution of the arrival distribution with the correlation of the gate and the IOI waveform.
+     */
+
+    /*Rep Invariant:
+    sweep and arrival are non-null, gateOnTime is the on time of the gate of sweep.
+     */
+
+    /**
+     * @param sweep the gate the Ions of Interest are compared with; non-null
+     * @param arrival the distribution of the arrival offset of an ion in ns; non-null
+     */
+    public TransmissionEstimator(IOISweep sweep, ArrivalDistribution arrival){
+        this.sweep = sweep;
+        this.arrival = arrival;
+        this.gateOnTime = sweep.getGate().onTime();
+    }
+
+    /**
+     * Sums the expected overlap of every Hi run of the gate with every Hi run of the IOI waveform it can meet within
+     * the arrival spread, in one merge pass over both (a run pair takes four lookups, see ArrivalDistribution.overlap)
+     * @param IOI Ion of Interest; greater than zero
+     * @return the expected time in ns that the gate and the moved IOI waveform are both Hi, ie. the transmission of
+     * the Ion of Interest through the gate
+     */
+    public double expectedOverlap(double IOI){
+
+        IntervalWave gate = sweep.getGate();
+        IntervalWave wave = sweep.IOIWave(IOI);
+        long first = arrival.getFirst();
+        long last = arrival.getLast();
+
+        double overlap = 0;
+        int j = 0;
+        for (int k = 0; k < gate.getRunCount(); k++){
+            long a = gate.getRunStart(k);
+            long b = gate.getRunEnd(k);
+            //runs that end before the gate run even when they arrive as late as possible never meet a later gate run
+            while (j < wave.getRunCount() && wave.getRunEnd(j) + last < a){
+                j++;
+            }
+            for (int m = j; m < wave.getRunCount() && wave.getRunStart(m) + first <= b; m++){
+                overlap += arrival.overlap(a, b, wave.getRunStart(m), wave.getRunEnd(m));
+            }
+        }
+        return overlap;
+    }
+
+    /**
+     * @param IOI Ion of Interest; greater than zero
+     * @return the expected on time in ns of the IOI waveform XOR-like combination (see IOISweep.onTime); equal to it
+     * if every ion arrives at offset 0
+     */
+    public double expectedOnTime(double IOI){
+        return gateOnTime - expectedOverlap(IOI);
+    }
+
+    /**
+     * Evaluates expectedOnTime for every Ion of Interest in parallel
+     * @param IOIs Ions of Interest; non-null, each greater than zero
+     * @return the expected on time of each Ion of Interest, in the order of IOIs
+     * @throws IllegalStateException if the expected on time of an Ion of Interest can not be evaluated (see ParallelTasks)
+     */
+    public double[] expectedOnTimes(double[] IOIs){
+        List<Double> results = ParallelTasks.evaluate(IOIs.length, k -> expectedOnTime(IOIs[k]));
+        double[] onTimes = new double[IOIs.length];
+        for (int k = 0; k < IOIs.length; k++){
+            onTimes[k] = results.get(k);
+        }
+        return onTimes;
+    }
+
+}
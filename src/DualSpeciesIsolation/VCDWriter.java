@@ -0,0 +1,183 @@
+package DualSpeciesIsolation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class VCDWriter implements Closeable {
+
+    /**
+     * Size in bytes of the buffer between the writer and the channel
+     */
+    private static final int BUFFER_SIZE = 1 << 22;
+
+    /**
+     * channel the dump is written to
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * bytes not yet written to the channel
+     */
+    private final ByteBuffer buffer;
+
+    /*Abstraction Function:
+    A Value Change Dump being written to channel; the bytes written so far are the bytes already passed to channel
+    followed by the bytes in buffer (from 0 up to its position).
+     */
+
+    /*Rep Invariant:
+    channel and buffer are non-null and channel is open until close is called.
+     */
+
+    /**
+     * @param channel the channel to write the dump to; non-null and open
+     */
+    public VCDWriter(WritableByteChannel channel){
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Writes waveforms to a new Value Change Dump file
+     * @param file the file to write; non-null, replaced if it exists
+     * @param channels the name of each waveform; non-null, without whitespace and the same length as waves
+     * @param waves the waveforms; non-null, at least one, with the same timebase and size
+     * @throws IOException if writing to file is interrupted/fails
+     */
+    public static void write(Path file, String[] channels, Waveform... waves) throws IOException{
+        try (VCDWriter writer = new VCDWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))){
+            writer.write(channels, waves);
+        }
+    }
+
+    /**
+     * Writes the header and every transition of the waveforms, with a time unit of 1 ns. Each waveform is a one bit
+     * wire of module MRS; the dump ends at the time after the last sample.
+     * @param channels the name of each waveform; non-null, without whitespace and the same length as waves
+     * @param waves the waveforms; non-null, at least one, with the same timebase and size
+     * @throws IOException if writing to the channel is interrupted/fails
+     */
+    public void write(String[] channels, Waveform... waves) throws IOException{
+
+        int size = waves[0].size();
+
+        put("$version DualSpeciesMRSSim $end\n");
+        put("$timescale 1 ns $end\n");
+        put("$scope module MRS $end\n");
+        for (int c = 0; c < waves.length; c++){
+            put("$var wire 1 " + identifier(c) + " " + channels[c] + " $end\n");
+        }
+        put("$upscope $end\n");
+        put("$enddefinitions $end\n");
+
+        if (size == 0){
+            return;
+        }
+
+        int[] previous = new int[waves.length];
+        put('#');
+        put(Long.toString(waves[0].getTime(0)));
+        put("\n$dumpvars\n");
+        for (int c = 0; c < waves.length; c++){
+            previous[c] = waves[c].getValue(0);
+            putChange(c, previous[c]);
+        }
+        put("$end\n");
+
+        for (int i = 1; i < size; i++){
+            boolean stamped = false;
+            for (int c = 0; c < waves.length; c++){
+                int value = waves[c].getValue(i);
+                if (value != previous[c]){
+                    if (!stamped){
+                        put('#');
+                        put(Long.toString(waves[0].getTime(i)));
+                        put('\n');
+                        stamped = true;
+                    }
+                    putChange(c, value);
+                    previous[c] = value;
+                }
+            }
+        }
+
+        put('#');
+        put(Long.toString(waves[0].getTime(size - 1) + waves[0].getResolution()));
+        put('\n');
+    }
+
+    /**
+     * @return the VCD identifier code of the channel with index c
+     */
+    private static String identifier(int c){
+        StringBuilder code = new StringBuilder();
+        do {
+            code.append((char) ('!' + c % 94));
+            c = c/94 - 1;
+        } while (c >= 0);
+        return code.toString();
+    }
+
+    /**
+     * Writes a scalar value change of the channel with index c
+     */
+    private void putChange(int c, int value) throws IOException{
+        put((char) ('0' + value));
+        put(identifier(c));
+        put('\n');
+    }
+
+    /**
+     * Writes an ASCII string
+     */
+    private void put(String text) throws IOException{
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        if (buffer.remaining() < bytes.length){
+            flush();
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * Writes an ASCII character
+     */
+    private void put(char character) throws IOException{
+        if (!buffer.hasRemaining()){
+            flush();
+        }
+        buffer.put((byte) character);
+    }
+
+    /**
+     * Writes the buffered bytes to the channel
+     * @throws IOException if writing to the channel is interrupted/fails
+     */
+    public void flush() throws IOException{
+        buffer.flip();
+        while (buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered bytes and closes the channel
+     * @throws IOException if writing to the channel is interrupted/fails
+     */
+    @Override
+    public void close() throws IOException{
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
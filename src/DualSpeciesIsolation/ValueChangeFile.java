@@ -0,0 +1,144 @@
+package DualSpeciesIsolation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+public class ValueChangeFile {
+
+    /**
+     * First token of the header line of a value change file
+     */
+    private static final String HEADER = "VC";
+
+    /**
+     * Writes waveforms as value change records instead of one line per sample. The header line holds the timebase
+     * and the channel names ("VC start resolution size name..."); it is followed by one "time channel value" line
+     * for the value of every channel at the first sample and then one for every change, in order of time.
+     * @param writer writes the records to a specified file; non-null
+     * @param channels the name of each waveform; non-null, without whitespace and the same length as waves
+     * @param waves the waveforms; non-null, at least one, with the same timebase and size
+     * @throws IOException if writing to file is interrupted/fails
+     */
+    public static void write(Writer writer, String[] channels, Waveform... waves) throws IOException{
+
+        int size = waves[0].size();
+        StringBuilder header = new StringBuilder(HEADER + " " + waves[0].getStartTime() + " " + waves[0].getResolution() + " " + size);
+        for (String channel : channels){
+            header.append(' ').append(channel);
+        }
+        writer.write(header + "\n");
+
+        if (size == 0){
+            return;
+        }
+
+        int[] previous = new int[waves.length];
+        for (int c = 0; c < waves.length; c++){
+            previous[c] = waves[c].getValue(0);
+            writer.write(waves[0].getTime(0) + " " + channels[c] + " " + previous[c] + "\n");
+        }
+        for (int i = 1; i < size; i++){
+            for (int c = 0; c < waves.length; c++){
+                int value = waves[c].getValue(i);
+                if (value != previous[c]){
+                    writer.write(waves[0].getTime(i) + " " + channels[c] + " " + value + "\n");
+                    previous[c] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Expands a value change file back to one line per sample, in the format written by WaveGrapher
+     * ("Ti   A  B  C" followed by "time   a  b  c" for every sample)
+     * @param reader reads the value change file; non-null
+     * @param writer writes the samples to a specified file; non-null
+     * @throws IOException if the file can not be read or written
+     * @throws RepresentationViolation if the file is not a value change file
+     */
+    public static void expand(BufferedReader reader, Writer writer) throws IOException, RepresentationViolation{
+
+        String line = reader.readLine();
+        String[] header = line == null ? new String[0] : line.trim().split("\\s+");
+        if (header.length < 5 || !header[0].equals(HEADER)){
+            throw new RepresentationViolation("Not a value change file");
+        }
+
+        try {
+            long start = Long.parseLong(header[1]);
+            long resolution = Long.parseLong(header[2]);
+            int size = Integer.parseInt(header[3]);
+            String[] channels = java.util.Arrays.copyOfRange(header, 4, header.length);
+            int[] values = new int[channels.length];
+
+            writer.write("Ti   " + String.join("  ", channels) + "\n");
+
+            String[] record = nextRecord(reader);
+            for (int i = 0; i < size; i++){
+                long time = start + i*resolution;
+                while (record != null && Long.parseLong(record[0]) <= time){
+                    values[channelIndex(channels, record[1])] = Integer.parseInt(record[2]);
+                    record = nextRecord(reader);
+                }
+
+                StringBuilder row = new StringBuilder();
+                row.append((double) time).append("   ").append(values[0]);
+                for (int c = 1; c < values.length; c++){
+                    row.append("  ").append(values[c]);
+                }
+                writer.write(row.append('\n').toString());
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e){
+            throw new RepresentationViolation("Not a value change file");
+        }
+    }
+
+    /**
+     * @return the next "time channel value" record, or null at the end of the file
+     */
+    private static String[] nextRecord(BufferedReader reader) throws IOException{
+        String line;
+        while ((line = reader.readLine()) != null){
+            if (!line.isBlank()){
+                return line.trim().split("\\s+");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of channel in channels
+     * @throws RepresentationViolation if there is no such channel
+     */
+    private static int channelIndex(String[] channels, String channel) throws RepresentationViolation{
+        for (int c = 0; c < channels.length; c++){
+            if (channels[c].equals(channel)){
+                return c;
+            }
+        }
+        throw new RepresentationViolation("Unknown channel " + channel);
+    }
+
+    /**
+     * ValueChangeFile valueChangeFile outputFile - expands a value change file to one line per sample
+     */
+    public static void main(String[] args){
+
+        if (args.length < 2){
+            System.out.println("ValueChangeFile valueChangeFile outputFile");
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(args[0]));
+             Writer writer = new BufferedWriter(new FileWriter(args[1]))){
+            expand(reader, writer);
+        } catch (IOException | RepresentationViolation e){
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -1,13 +1,20 @@
 package DualSpeciesIsolation;
 
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 public class WaveGrapher {
 
+    /**
+     * Size in chars of the buffer used when writing waveforms to file
+     */
+    private static final int WRITE_BUFFER = 1 << 20;
+
 
     /**
      * Writes the values and timings for the heavy, lighter, and combination mass waveforms to three separate files for graphing
@@ -23,6 +30,25 @@ public class WaveGrapher {
      * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
      */
     public static void singleMassPairWaveGrapher(double Mass1, double Mass2, int timeScale, int steps, double MRSCycles, double Proportion, FileWriter writer1, double cycleCalib){
+        singleMassPairWaveGrapher(Mass1, Mass2, timeScale, steps, MRSCycles, Proportion, writer1, cycleCalib, false);
+    }
+
+
+    /**
+     * Writes the values and timings for the heavy, lighter, and combination mass waveforms to three separate files for graphing
+     * @param Mass1 The first Mass of Interest that is non-null and greater than 0
+     * @param Mass2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param Proportion the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param steps The number of steps plus 1 sets the number of data points
+     * and therefore sets the resolution; steps must be greater than zero
+     * @param writer1 writes the waveform (timings and values) for the heavier mass to a specified file,
+     *                not the same instance as writer2 or writer3
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param valueChanges if only the value changes are written (see ValueChangeFile) instead of every sample
+     */
+    public static void singleMassPairWaveGrapher(double Mass1, double Mass2, int timeScale, int steps, double MRSCycles, double Proportion, FileWriter writer1, double cycleCalib, boolean valueChanges){
 
         double heavyMass, lightMass;
 
@@ -42,21 +68,19 @@ public class WaveGrapher {
         try {
             Waveform mainWave = new Waveform(waveA, waveB, false);
 
-            try {
-                ArrayList<Double> testTimingsA = waveA.getTimings();
-                ArrayList<Integer> testValuesA = waveA.getWave();
-                ArrayList<Integer> testValuesB = waveB.getWave();
-                ArrayList<Integer> testValuesC = mainWave.getWave();
-
-                writer1.write("Ti   HM  LM  CM\n");
+            try (BufferedWriter writer = new BufferedWriter(writer1, WRITE_BUFFER)) {
+                if (valueChanges) {
+                    ValueChangeFile.write(writer, new String[]{"HM", "LM", "CM"}, waveA, waveB, mainWave);
+                } else {
+                    writer.write("Ti   HM  LM  CM\n");
 
-                for (int i = 0; i < testTimingsA.size(); i++) {
+                    for (int i = 0; i < waveA.size(); i++) {
 
-                    writer1.write(testTimingsA.get(i) + "   " + testValuesA.get(i) + "  " + testValuesB.get(i) + "  " + testValuesC.get(i)+ "\n");
+                        writer.write((double) waveA.getTime(i) + "   " + waveA.getValue(i) + "  " + waveB.getValue(i) + "  " + mainWave.getValue(i)+ "\n");
 
 
+                    }
                 }
-                writer1.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -85,11 +109,33 @@ public class WaveGrapher {
      * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
      */
     public static void singleIOIPairWaveGrapher(double MOI1, double MOI2, double IOI, int timeScale, int steps, double MRSCycles, double prop, FileWriter writer1, double cycleCalib, double startCycle, Boolean dualAndComb){
+        singleIOIPairWaveGrapher(MOI1, MOI2, IOI, timeScale, steps, MRSCycles, prop, writer1, cycleCalib, startCycle, dualAndComb, false);
+    }
+
+
+    /**
+     * Writes the values and timings for the MRS combination, Ion of Interest, and Specialised XOR combination mass waveforms
+     * to three separate files for graphing
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param steps The number of steps plus 1 sets the number of data points
+     * and therefore sets the resolution; steps must be greater than zero
+     * @param writer1 writes the waveform (timings and values) for the heavier mass to a specified file,
+     *                not the same instance as writer2 or writer3
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param IOI Ion of Interest; greater than zero
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @param valueChanges if only the value changes are written (see ValueChangeFile) instead of every sample
+     */
+    public static void singleIOIPairWaveGrapher(double MOI1, double MOI2, double IOI, int timeScale, int steps, double MRSCycles, double prop, FileWriter writer1, double cycleCalib, double startCycle, Boolean dualAndComb, boolean valueChanges){
         double heavyMass;
         double lightMass;
         double totalTime;
-        double startTime = 0;
-        double delayOverwrite = 0;
+        long startTime = 0;
 
         if (MOI1 > MOI2){
             heavyMass = MOI1;
@@ -101,11 +147,10 @@ public class WaveGrapher {
         }
 
 
-        double cycleCalibration = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905));
-        totalTime = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905))*MRSCycles;
+        MRSTiming heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib);
+        totalTime = heavyTiming.getTimeOn(MRSCycles);
         if (startCycle != 0){
-            startTime = 5 * (int) ((((32800) * java.lang.Math.sqrt((heavyMass / 132.905))) - (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2)
-                + (startCycle*(cycleCalibration))) / 5);
+            startTime = heavyTiming.getStartDelay(startCycle);
         }
 
 
@@ -124,21 +169,19 @@ public class WaveGrapher {
             }
 
             Waveform finalWave = new Waveform(mainWave, waveIOI, true);
-            ArrayList<Double> testTimings = finalWave.getTimings();
-            ArrayList<Integer> bitList = finalWave.getWave();
-            ArrayList<Integer> IOIWave = waveIOI.getWave();
-            ArrayList<Integer> combWave = waveA.getWave();
 
-            try {
+            try (BufferedWriter writer = new BufferedWriter(writer1, WRITE_BUFFER)) {
+                if (valueChanges) {
+                    ValueChangeFile.write(writer, new String[]{"CM", "IO", "XR"}, waveA, waveIOI, finalWave);
+                } else {
+                    writer.write("Ti   CM  IO  XR\n");
 
-                writer1.write("Ti   CM  IO  XR\n");
+                    for (int i = 0; i < finalWave.size(); i++) {
 
-                for (int i = 0; i < testTimings.size(); i++) {
-
-                    writer1.write(testTimings.get(i) + "   " + combWave.get(i) + "  " + IOIWave.get(i) + "  " + bitList.get(i)+ "\n");
+                        writer.write((double) finalWave.getTime(i) + "   " + waveA.getValue(i) + "  " + waveIOI.getValue(i) + "  " + finalWave.getValue(i)+ "\n");
 
+                    }
                 }
-                writer1.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -152,6 +195,100 @@ public class WaveGrapher {
     }
 
 
+    /**
+     * Writes the heavy, light, combination, Ion of Interest and Specialised XOR combination waveforms to a Value Change
+     * Dump file for logic analyser tools
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param IOI Ion of Interest; greater than zero
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param steps The number of steps plus 1 sets the number of data points
+     * and therefore sets the resolution; steps must be greater than zero
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param file the Value Change Dump file to write; non-null, replaced if it exists
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param startCycle MRS start delay - the number of MRS Cycles used to delay the MRS waveform; can not be negative
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     */
+    public static void writeVCD(double MOI1, double MOI2, double IOI, int timeScale, int steps, double MRSCycles, double prop, Path file, double cycleCalib, double startCycle, Boolean dualAndComb){
+        double heavyMass;
+        double lightMass;
+        long startTime = 0;
+
+        if (MOI1 > MOI2){
+            heavyMass = MOI1;
+            lightMass = MOI2;
+        }
+        else{
+            heavyMass = MOI2;
+            lightMass = MOI1;
+        }
+
+        MRSTiming heavyTiming = new MRSTiming(heavyMass, prop, cycleCalib);
+        double totalTime = heavyTiming.getTimeOn(MRSCycles);
+        if (startCycle != 0){
+            startTime = heavyTiming.getStartDelay(startCycle);
+        }
+
+        Waveform waveA = new Waveform(heavyMass, MRSCycles, timeScale, steps, prop, cycleCalib, startCycle);
+        Waveform waveB = new Waveform(lightMass, timeScale, steps, prop, totalTime, cycleCalib, startTime);
+        Waveform waveIOI = new Waveform(IOI, timeScale, steps, prop, totalTime, cycleCalib, startTime);
+
+        try {
+            Waveform mainWave;
+            if (dualAndComb) {
+                mainWave = new Waveform(waveA, waveB, false);
+            } else{
+                mainWave = new Waveform(waveA);
+            }
+            Waveform finalWave = new Waveform(mainWave, waveIOI, true);
+
+            VCDWriter.write(file, new String[]{"heavy", "light", "combined", "IOI", "XOR"}, waveA, waveB, mainWave, waveIOI, finalWave);
+
+        } catch (SpecViolation | IOException e){
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Writes the heavy, light and combination waveforms of a mass pair as a NumPy .npy array of packed uint8 bits
+     * with one row per waveform (see NpyWriter.writeBits)
+     * @param Mass1 The first Mass of Interest that is non-null and greater than 0
+     * @param Mass2 The second Mass of Interest that is non-null and greater than 0
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param steps The number of steps plus 1 sets the number of data points
+     * and therefore sets the resolution; steps must be greater than zero
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param Proportion the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param file the .npy file to write; non-null, replaced if it exists
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     */
+    public static void writeNpy(double Mass1, double Mass2, int timeScale, int steps, double MRSCycles, double Proportion, Path file, double cycleCalib){
+
+        double heavyMass, lightMass;
+
+        if (Mass1 > Mass2){
+            heavyMass = Mass1;
+            lightMass = Mass2;
+        }
+        else{
+            heavyMass = Mass2;
+            lightMass = Mass1;
+        }
+
+        Waveform waveA = new Waveform(heavyMass, MRSCycles, timeScale, steps, Proportion, cycleCalib,0);
+        Waveform waveB = new Waveform(lightMass, timeScale, steps, Proportion, cycleCalib*java.lang.Math.sqrt((heavyMass/132.905))*MRSCycles, cycleCalib,0);
+
+        try {
+            NpyWriter.writeBits(file, waveA, waveB, new Waveform(waveA, waveB, false));
+        } catch (SpecViolation | IOException e){
+            e.printStackTrace();
+        }
+    }
+
+
     /**
      * Writes the lengths of each Hi and Lo segment in order (without the last segment due to resolution extension),
      * to a specified file
@@ -270,7 +407,8 @@ public class WaveGrapher {
 
             /**
              * Writes the values of interest of the AND combination waveform; the values of interest are the values
-             * without the left tail and right tails (the delay and the extended ending due to resolution)
+             * without the left tail and right tails (the delay and the extended ending due to resolution). The lighter
+             * mass waveform is ON as long as the heavier one.
              * @param mass1 The first Mass of Interest that is non-null and greater than 0
              * @param mass2 The second Mass of Interest that is non-null and greater than 0
              * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
@@ -282,29 +420,62 @@ public class WaveGrapher {
              * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
              */
             public static void writeValuesOfInterest(double mass1, double mass2, double MRSCycles, int timeScale, int steps, double prop, FileWriter writer1, double cycleCalib){
-            int timeSum; //timeSum uses nanoseconds only
-            int start;
-            Waveform waveA = new Waveform(mass1, MRSCycles, timeScale, steps, prop, cycleCalib,0);
-            Waveform waveB = new Waveform(mass2, timeScale, steps, prop, cycleCalib*java.lang.Math.sqrt((94/132.905))*50, cycleCalib,0);
+                double heavyMass = java.lang.Math.max(mass1, mass2);
+                writeValuesOfInterest(mass1, mass2, MRSCycles, timeScale, steps, prop, writer1, cycleCalib,
+                    cycleCalib*java.lang.Math.sqrt((heavyMass/132.905))*MRSCycles);
+            }
+
+
+            /**
+             * Writes the values of interest of the AND combination waveform; the values of interest are the values
+             * without the left tail and right tails (the delay and the extended ending due to resolution). The first
+             * and last Hi/Lo segments of the combination are found in a single pass over the one generated wave.
+             * @param mass1 The first Mass of Interest that is non-null and greater than 0
+             * @param mass2 The second Mass of Interest that is non-null and greater than 0
+             * @param MRSCycles The number of MRSCycles of the heavier mass; 0 < MRSCycles <= 850
+             * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+             * @param timeScale The time window for the wave in nanoseconds
+             * @param steps The number of steps plus 1 sets the number of data points
+             * and therefore sets the resolution; steps must be greater than zero
+             * @param writer1 writes the values of interest to a file for graphing//fft/dft usage
+             * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+             * @param lightTimeOn the time the lighter mass MRS is ON in nanoseconds; greater than 0
+             */
+            public static void writeValuesOfInterest(double mass1, double mass2, double MRSCycles, int timeScale, int steps, double prop, FileWriter writer1, double cycleCalib, double lightTimeOn){
+
+            double heavyMass, lightMass;
+
+            if (mass1 > mass2){
+                heavyMass = mass1;
+                lightMass = mass2;
+            }
+            else{
+                heavyMass = mass2;
+                lightMass = mass1;
+            }
+
+            Waveform waveA = new Waveform(heavyMass, MRSCycles, timeScale, steps, prop, cycleCalib,0);
+            Waveform waveB = new Waveform(lightMass, timeScale, steps, prop, lightTimeOn, cycleCalib,0);
 
             try {
                 Waveform mainWave = new Waveform(waveA, waveB, false);
+                Segments segments = new Segments(mainWave);
+
+                //values from the end of the first segment up to the start of the last segment
+                int start = 0;
+                int end = 0;
+                if (segments.size() > 1) {
+                    start = (int) (segments.getLength(0)/mainWave.getResolution());
+                    end = start;
+                }
+                for (int j = 1; j < segments.size() - 1; j++) {
+                    end += (int) (segments.getLength(j)/mainWave.getResolution());
+                }
 
-                try {
-                    ArrayList<Double> testTimingsA = waveA.getTimings();
-                    ArrayList<Integer> testValuesA = waveA.getWave();
-                    timeSum = arrSum(PulseGenerator
-                        .adjacentLengths(mass1, mass2, MRSCycles, prop, timeScale, steps, cycleCalib));
-                    start =
-                        PulseGenerator.adjacentLengths(mass1, mass2, MRSCycles, prop, timeScale, steps, cycleCalib)
-                            .get(0);
-
-                    for (int i = 0; i < testTimingsA.size(); i++) {
-                        if (i >= start && i < timeSum) {
-                            writer1.write(testValuesA.get(i) + "\n");
-                        }
+                try (BufferedWriter writer = new BufferedWriter(writer1, WRITE_BUFFER)) {
+                    for (int i = start; i < end; i++) {
+                        writer.write(mainWave.getValue(i) == 1 ? "1\n" : "0\n");
                     }
-                    writer1.close();
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -315,22 +486,6 @@ public class WaveGrapher {
         }
 
 
-            /**
-             *
-             * @param arr non null list of integers
-             * @return sum of all elements in arr
-             */
-            private static int arrSum(ArrayList<Integer> arr){
-            int sum = 0;
-
-            for (Integer integer : arr) {
-                sum += integer;
-            }
-
-            return sum;
-        }
-
-
             /**
              * @param mass1 The first Mass of Interest that is non-null and greater than 0
              * @param mass2 The second Mass of Interest that is non-null and greater than 0
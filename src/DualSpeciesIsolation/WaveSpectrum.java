@@ -0,0 +1,234 @@
+package DualSpeciesIsolation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+public class WaveSpectrum {
+
+    /**
+     * Width in ns of every bin the waveform is averaged over before the transform
+     */
+    private final long binWidth;
+
+    /**
+     * Number of bins (points of the transform)
+     */
+    private final int points;
+
+    /**
+     * One sided power of every frequency k/(points*binWidth) for k <= points/2
+     */
+    private final double[] power;
+
+    /*Abstraction Function:
+    The power spectrum of a waveform: the waveform is averaged over points bins of binWidth ns (the fraction of each
+    bin that is Hi, Lo after the end of the waveform) and power[k] is |X[k]|^2/points^2 of their discrete Fourier
+    transform, doubled for 0 < k < points/2 so the powers add up to the mean square of the bins.
+     */
+
+    /*Rep Invariant:
+    points is a power of two, at least 2, binWidth > 0 and power holds points/2 + 1 non-negative entries.
+     */
+
+    /**
+     * @param wave the waveform; non-null
+     * @param fft the transform of the spectrum, shared between spectra of the same size; non-null
+     */
+    WaveSpectrum(IntervalWave wave, FFT fft){
+
+        this.points = fft.getPoints();
+        this.binWidth = java.lang.Math.max(1, (wave.size() + points - 1)/points);
+        this.power = new double[points/2 + 1];
+
+        double[] re = new double[points];
+        double[] im = new double[points];
+        long startTime = wave.getStartTime();
+        for (int k = 0; k < wave.getRunCount(); k++){
+            long runStart = wave.getRunStart(k) - startTime;
+            long runEnd = wave.getRunEnd(k) - startTime + 1;
+            //the run covers the end of its first bin, whole bins, then the start of its last bin
+            int firstBin = (int) (runStart/binWidth);
+            int lastBin = (int) ((runEnd - 1)/binWidth);
+            if (firstBin == lastBin){
+                re[firstBin] += runEnd - runStart;
+                continue;
+            }
+            re[firstBin] += (firstBin + 1)*binWidth - runStart;
+            for (int bin = firstBin + 1; bin < lastBin; bin++){
+                re[bin] += binWidth;
+            }
+            re[lastBin] += runEnd - lastBin*binWidth;
+        }
+        for (int bin = 0; bin < points; bin++){
+            re[bin] /= binWidth;
+        }
+
+        fft.transform(re, im);
+        for (int k = 0; k <= points/2; k++){
+            double scale = k == 0 || k == points/2 ? 1 : 2;
+            power[k] = scale*(re[k]*re[k] + im[k]*im[k])/((double) points*points);
+        }
+    }
+
+    /**
+     * @param wave the waveform; non-null
+     * @param points the number of bins of the transform; a power of two, at least 2
+     * @throws SpecViolation if points is not a power of two of at least 2
+     */
+    public WaveSpectrum(IntervalWave wave, int points) throws SpecViolation{
+        this(wave, new FFT(points));
+    }
+
+    /**
+     * Spectrum of the AND combination of two MRS waveforms with the suggested time scale (see pulseSegments)
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param points the number of bins of the transform; a power of two, at least 2
+     * @return the power spectrum of the combined waveform
+     * @throws SpecViolation if points is not a power of two of at least 2
+     */
+    public static WaveSpectrum combined(double MOI1, double MOI2, double MRSCycles, double prop, double cycleCalib, int points) throws SpecViolation{
+        return combined(MOI1, MOI2, MRSCycles, prop, cycleCalib, new FFT(points));
+    }
+
+    private static WaveSpectrum combined(double MOI1, double MOI2, double MRSCycles, double prop, double cycleCalib, FFT fft){
+        int timeScale = PulseGenerator.getSuggestedTimeScale(java.lang.Math.max(MOI1, MOI2), MRSCycles, prop, cycleCalib);
+        return new WaveSpectrum(PulseGenerator.speciesCombination(new double[]{MOI1, MOI2}, new double[0], MRSCycles,
+            prop, timeScale, cycleCalib, 0), fft);
+    }
+
+    /**
+     * Spectrum of the IOI waveform XOR-like combination with the suggested time scale (see IOIWaveformOnTime)
+     * @param MOI1 The first Mass of Interest that is non-null and greater than 0
+     * @param MOI2 The second Mass of Interest that is non-null and greater than 0
+     * @param IOI Ion of Interest; greater than zero
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param dualAndComb if waveform is a Dual MRS species combination waveform
+     * @param points the number of bins of the transform; a power of two, at least 2
+     * @return the power spectrum of the XOR-like combination
+     * @throws SpecViolation if points is not a power of two of at least 2
+     */
+    public static WaveSpectrum XOR(double MOI1, double MOI2, double IOI, double MRSCycles, double prop, double cycleCalib, Boolean dualAndComb, int points) throws SpecViolation{
+        int timeScale = PulseGenerator.getSuggestedTimeScale(java.lang.Math.max(MOI1, MOI2), MRSCycles, prop, cycleCalib);
+        double[] masses = dualAndComb ? new double[]{MOI1, MOI2} : new double[]{java.lang.Math.max(MOI1, MOI2)};
+        return new WaveSpectrum(PulseGenerator.speciesCombination(masses, new double[]{IOI}, MRSCycles, prop, timeScale,
+            cycleCalib, 0), new FFT(points));
+    }
+
+    /**
+     * Spectra of the combined waveforms of many mass pairs, evaluated in parallel with one shared transform
+     * @param pairs the mass pairs, {MOI1, MOI2} each; non-null
+     * @param MRSCycles The number of MRSCycles; 0 < MRSCycles <= 850
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param points the number of bins of every transform; a power of two, at least 2
+     * @return the spectrum of each pair, in the order of pairs
+     * @throws SpecViolation if points is not a power of two of at least 2
+     * @throws IllegalStateException if the spectrum of a pair can not be evaluated (see ParallelTasks)
+     */
+    public static WaveSpectrum[] batch(double[][] pairs, double MRSCycles, double prop, double cycleCalib, int points) throws SpecViolation{
+        FFT fft = new FFT(points);
+        List<WaveSpectrum> spectra = ParallelTasks.evaluate(pairs.length,
+            k -> combined(pairs[k][0], pairs[k][1], MRSCycles, prop, cycleCalib, fft));
+        return spectra.toArray(new WaveSpectrum[0]);
+    }
+
+    /**
+     * Writes the strongest peaks of the spectrum of every mass pair, one line per pair
+     * ("M1   M2  F1  P1  F2  P2 ..." with frequencies in MHz)
+     * @param writer writes the peaks to a specified file; non-null
+     * @param pairs the mass pairs, {MOI1, MOI2} each; non-null
+     * @param spectra the spectrum of each pair (see batch); non-null
+     * @param count the number of peaks of each pair; non-negative
+     * @throws IOException if writing to file is interrupted/fails
+     */
+    public static void writePeaks(Writer writer, double[][] pairs, WaveSpectrum[] spectra, int count) throws IOException{
+        writer.write("M1   M2  F(MHz)  P\n");
+        for (int k = 0; k < pairs.length; k++){
+            StringBuilder line = new StringBuilder().append(pairs[k][0]).append("  ").append(pairs[k][1]);
+            for (int bin : spectra[k].peaks(count)){
+                line.append("  ").append(spectra[k].getFrequency(bin)).append("  ").append(spectra[k].getPower(bin));
+            }
+            writer.write(line.append('\n').toString());
+        }
+        writer.flush();
+    }
+
+    /**
+     * @param count the largest number of peaks; non-negative
+     * @return the frequency indices of the strongest local maxima of the power above 0 Hz, strongest first
+     */
+    public int[] peaks(int count){
+
+        int[] maxima = new int[points/2];
+        int found = 0;
+        for (int k = 1; k < points/2; k++){
+            if (power[k] > 0 && power[k] >= power[k - 1] && power[k] > power[k + 1]){
+                maxima[found++] = k;
+            }
+        }
+
+        Integer[] order = new Integer[found];
+        for (int i = 0; i < found; i++){
+            order[i] = maxima[i];
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(power[b], power[a]));
+
+        int[] peaks = new int[java.lang.Math.min(count, found)];
+        for (int i = 0; i < peaks.length; i++){
+            peaks[i] = order[i];
+        }
+        return peaks;
+    }
+
+    /**
+     * @param fundamental frequency index of the fundamental; 0 < fundamental <= points/2
+     * @param count the number of harmonics, including the fundamental; greater than zero
+     * @return the power at each multiple of the fundamental up to count times it (0 past the highest frequency)
+     */
+    public double[] harmonics(int fundamental, int count){
+        double[] harmonics = new double[count];
+        for (int h = 1; h <= count && (long) h*fundamental <= points/2; h++){
+            harmonics[h - 1] = power[h*fundamental];
+        }
+        return harmonics;
+    }
+
+    /**
+     * @param k frequency index; 0 <= k <= points/2
+     * @return the frequency of index k in MHz
+     */
+    public double getFrequency(int k){
+        return 1000.0*k/((double) points*binWidth);
+    }
+
+    /**
+     * @param k frequency index; 0 <= k <= points/2
+     * @return the one sided power at frequency index k
+     */
+    public double getPower(int k){
+        return power[k];
+    }
+
+    /**
+     * @return the number of frequencies, points/2 + 1
+     */
+    public int size(){
+        return power.length;
+    }
+
+    /**
+     * @return the width in ns of every bin the waveform is averaged over
+     */
+    public long getBinWidth(){
+        return binWidth;
+    }
+
+}
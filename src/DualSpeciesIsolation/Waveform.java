@@ -1,38 +1,42 @@
 package DualSpeciesIsolation;
 
 import java.util.ArrayList;
-import java.util.List;
 
 
 public class Waveform {
 
 
     /**
-     * Waveform values (values are 0 or 1)
+     * Waveform values packed 64 per word (bit i of the waveform is bit i%64 of word i/64; 1 is Hi and 0 is Lo)
      */
-    private final List<Integer> Wave;
+    private final long[] Wave;
 
     /**
-     * Resolution of waveform - time between values
+     * Number of values in the waveform
      */
-    private final double Resolution;
+    private final int size;
 
     /**
-     * List of timings for waveform's corresponding values
+     * Resolution of waveform - time between values in nanoseconds
      */
-    private final List<Double> timings;
+    private final long Resolution;
+
+    /**
+     * Time in nanoseconds of the first value of the waveform
+     */
+    private final long startTime;
 
     /*Abstraction Function:
     A 2D wave represented through digital values and times. Wave contains values of 1 corresponding to Hi/Blocking
     and 0 corresponding to Lo/Passing. Each value is separated by a specific time interval in the nanoseconds
-    calculated given the resolution. Timings contains the corresponding time (in nanoseconds) for each value of the wave.
+    given by the resolution. The i-th value corresponds to the time startTime + i*Resolution (in nanoseconds).
      */
 
 
 
     /*Rep Invariant:
-    Wave only contains 0's or 1's and is non-null. Each wave has a corresponding timing.
-    Timings are in ascending order and all timings are unique.
+    Wave is non-null and holds at least size bits; bits at or past size are 0. size is non-negative,
+    Resolution is greater than zero and startTime is non-negative.
      */
 
     /**
@@ -40,25 +44,16 @@ public class Waveform {
      */
     private Boolean checkRep(){
 
-        double difference;
-
-        if(Wave.size() != timings.size()){
+        if (Wave == null || size < 0 || Resolution <= 0 || startTime < 0){
             return false;
         }
 
-        difference = timings.get(1) - timings.get(0);
-        if (difference != Resolution){
+        if (Wave.length < (size + 63)/64){
             return false;
         }
 
-        for (int i = 0; i < Wave.size(); i++){
-            if (i != 1 && i != 0){
-                return false;
-            }
-        }
-
-        for (int i = 1; i < Wave.size()-1; i++){
-            if (timings.get(i+1) - timings.get(i) != difference){
+        for (int i = size; i < Wave.length*64; i++){
+            if (getBit(Wave, i)){
                 return false;
             }
         }
@@ -72,15 +67,17 @@ public class Waveform {
      * @param MRSCycles Number of MRS Cycles/duty cycles for the wave; non-zero and non-negative, <= 850
      * @param timeScale The time window for the wave in nanoseconds
      * @param steps The number of steps plus 1 sets the number of data points
-     *              and therefore sets the resolution; greater than zero
+     *              and therefore sets the resolution; greater than zero and not greater than timeScale
      * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
      * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
      * @param MRSStartCycle the number of MRS cycles used to delay the start of the MRS waveform; can not be negative
      */
     public Waveform(double MOI, double MRSCycles, int timeScale, int steps, double prop, double cycleCalib, double MRSStartCycle){
-        timings = new ArrayList<>();
-        Wave = new ArrayList<>(waveGenerator(MOI, MRSCycles, timeScale, steps, prop, cycleCalib, MRSStartCycle, 0));
-        Resolution = timings.get(1)-timings.get(0);
+        MRSTiming timing = new MRSTiming(MOI, prop, cycleCalib);
+        Resolution = getResolution(timeScale, steps);
+        size = getSize(timeScale, Resolution);
+        startTime = MRSStartCycle != 0 ? timing.getStartDelay(MRSStartCycle) : 0;
+        Wave = waveGenerator(timing, MRSCycles, MRSStartCycle, 0);
     }
 
     /**
@@ -88,17 +85,37 @@ public class Waveform {
      * @param MOI Mass of Interest that is non zero and non negative
      * @param timeScale the time window for the wave in nanoseconds; greater than zero
      * @param steps The number of steps plus 1 sets the number of data points
-     *            and therefore sets the resolution; greater than zero
+     *            and therefore sets the resolution; greater than zero and not greater than timeScale
      * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
      * @param timeOn the time the MRS is ON in nanoseconds; greater than 0
      * @param cycleCalibration time for 1 Cs 1333 cycle in ns; greater than zero
      * @param MRSStartTime  the start time of the MRS waveform in nanoseconds; can not be negative
      */
-    public Waveform(double MOI, int timeScale, int steps, double prop, double timeOn, double cycleCalibration, double MRSStartTime){
-        timings = new ArrayList<>();
+    public Waveform(double MOI, int timeScale, int steps, double prop, double timeOn, double cycleCalibration, long MRSStartTime){
+        MRSTiming timing = new MRSTiming(MOI, prop, cycleCalibration);
         double MRSCycles = (timeOn/(cycleCalibration*java.lang.Math.sqrt((MOI/132.905))));
-        Wave = new ArrayList<>(waveGenerator(MOI, MRSCycles, timeScale, steps, prop, cycleCalibration, 0, MRSStartTime));
-        Resolution = timings.get(1)-timings.get(0);
+        Resolution = getResolution(timeScale, steps);
+        size = getSize(timeScale, Resolution);
+        startTime = MRSStartTime;
+        Wave = waveGenerator(timing, MRSCycles, 0, MRSStartTime);
+    }
+
+
+    /**
+     * Constructs an MRS wave sampled on a given timebase
+     * @param timing the quantised timings of the MRS waveform for the Mass of Interest; non-null
+     * @param MRSCycles Number of MRS Cycles/duty cycles for the wave; non-zero and non-negative, <= 850
+     * @param MRSStartCycle the number of MRS cycles used to delay the start of the MRS waveform; can not be negative
+     * @param MRSStartTime the start time of the MRS waveform in nanoseconds, used when MRSStartCycle is 0; can not be negative
+     * @param startTime the time in nanoseconds of the first value; can not be negative
+     * @param Resolution the time between values in nanoseconds; greater than zero
+     * @param size the number of values; non-negative
+     */
+    public Waveform(MRSTiming timing, double MRSCycles, double MRSStartCycle, long MRSStartTime, long startTime, long Resolution, int size){
+        this.Resolution = Resolution;
+        this.size = size;
+        this.startTime = startTime;
+        Wave = waveGenerator(timing, MRSCycles, MRSStartCycle, MRSStartTime);
     }
 
 
@@ -106,9 +123,10 @@ public class Waveform {
      * Constructs a blank wave
      */
     public Waveform(){
-        Wave = new ArrayList<>();
-        timings = new ArrayList<>();
-        Resolution = 0;
+        Wave = new long[0];
+        size = 0;
+        Resolution = 1;
+        startTime = 0;
     }
 
     /**
@@ -116,33 +134,54 @@ public class Waveform {
      * @param Wave an instance of DualSpeciesIsolation.Waveform used for new wave copy and is non-null
      */
     public Waveform(Waveform Wave){
-        this.Wave = Wave.getWave();
-        this.timings = Wave.getTimings();
+        this.Wave = Wave.getBits();
+        this.size = Wave.size();
         this.Resolution = Wave.getResolution();
-
+        this.startTime = Wave.getStartTime();
     }
 
     /**
      * Constructs a wave given digital values
      * @param digitalValues values are 0's or 1's
-     * @param Resolution time between each value in the list
+     * @param Resolution time between each value in the list in nanoseconds; greater than zero
+     * @throws RepresentationViolation if a value is not 0 or 1 or the resolution is not greater than zero
      */
-    public Waveform(ArrayList<Integer> digitalValues, double Resolution) throws RepresentationViolation{
-        this.Wave = new ArrayList<>(digitalValues);
-        this.timings = new ArrayList<>();
+    public Waveform(ArrayList<Integer> digitalValues, long Resolution) throws RepresentationViolation{
+        this.Wave = new long[(digitalValues.size() + 63)/64];
+        this.size = digitalValues.size();
+        this.Resolution = Resolution;
+        this.startTime = 0;
 
         for (int i = 0; i < digitalValues.size(); i++){
-            timings.add(Resolution*i);
+            int value = digitalValues.get(i);
+            if (value != 0 && value != 1){
+                throw new RepresentationViolation("The representation invariant has been violated.");
+            }
+            if (value == 1){
+                setBit(Wave, i);
+            }
         }
 
-        this.Resolution = Resolution;
-
         if(!checkRep()){
             throw new RepresentationViolation("The representation invariant has been violated.");
         }
 
     }
 
+    /**
+     * Constructs a wave from packed values
+     * @param bits values packed 64 per word as described for Wave; bits at or past size are 0; not shared with the caller
+     * @param size number of values; non-negative
+     * @param Resolution time between each value in nanoseconds; greater than zero
+     * @param startTime time of the first value in nanoseconds; non-negative
+     */
+    Waveform(long[] bits, int size, long Resolution, long startTime){
+        this.Wave = bits;
+        this.size = size;
+        this.Resolution = Resolution;
+        this.startTime = startTime;
+    }
+
 
 
     /**
@@ -155,302 +194,209 @@ public class Waveform {
      */
     public Waveform( Waveform wave1, Waveform wave2, Boolean XOR) throws SpecViolation{
 
-        ArrayList<Double> wave1Timings = new ArrayList<>(wave1.getTimings());
-        ArrayList<Double> wave2Timings = new ArrayList<>(wave2.getTimings());
-        Boolean wave1Larger = false;
-
-        if (wave1Timings.size() >= wave2Timings.size()) {
-            this.timings = wave1.getTimings();
-            wave1Larger = true;
+        if (wave1.getStartTime() != wave2.getStartTime() || wave1.getResolution() != wave2.getResolution()){
+            throw new SpecViolation(XOR ? "Timings Do Not Align" : "Timings Do Not Match");
         }
-        else{
-            this.timings = wave2.getTimings();
-        }
-
 
-        ArrayList<Integer> waveA = new ArrayList<>(wave1.getWave());
-        ArrayList<Integer> waveB = new ArrayList<>(wave2.getWave());
-        this.Wave = new ArrayList<>();
+        long[] waveA = wave1.Wave;
+        long[] waveB = wave2.Wave;
+        this.Resolution = wave1.getResolution();
+        this.startTime = wave1.getStartTime();
 
         if (XOR){
-            if (!wave1Timings.get(0).equals(wave2Timings.get(0)) || wave1.getResolution() != wave2.getResolution()){
-                throw new SpecViolation("Timings Do Not Align");
-            }
 
-            int size;
-            if(wave1Larger){
-                size = wave2Timings.size();
-            } else{
-                size = wave1Timings.size();
-            }
+            //Hi only where wave 1 is Hi and wave 2 is Lo; past the end of wave 2, wave 1 is kept and past the end of wave 1 it is Lo
+            this.size = java.lang.Math.max(wave1.size(), wave2.size());
+            this.Wave = new long[(size + 63)/64];
 
-            for (int index = 0; index < size; index++) {
-                if (waveA.get(index) == 1 && waveB.get(index) == 0){
-                    this.Wave.add(1);
-                } else {
-                    this.Wave.add(0);
-                }
+            //the arrays may be longer than their values (see ScopeTrace), so only the words holding values are read
+            int wordsA = (wave1.size() + 63)/64;
+            int words = java.lang.Math.min(wordsA, (wave2.size() + 63)/64);
+            for (int index = 0; index < words; index++) {
+                this.Wave[index] = waveA[index] & ~waveB[index];
             }
-
-            if(wave1Larger){
-                for (int i = size; i < wave1Timings.size(); i++){
-                    this.Wave.add(waveA.get(i));
-                }
-            } else {
-                for (int i = size; i < wave2Timings.size(); i++){
-                    this.Wave.add(0);
-                }
+            for (int index = words; index < wordsA; index++) {
+                this.Wave[index] = waveA[index];
             }
         }
         else {
 
-            if (wave1Timings.size() != wave2Timings.size() || !wave1Timings.get(0).equals(wave2Timings.get(0)) || wave1.getResolution() != wave2.getResolution()){
-             //   System.out.println(wave1Timings.size() + " " + wave2Timings.size() + " " + wave1Timings.get(0) + " " + wave2Timings.get(0) + " " + wave1.getResolution() + " " + wave2.getResolution());
+            if (wave1.size() != wave2.size()){
                 throw new SpecViolation("Timings Do Not Match");
             }
 
-            for (int index = 0; index < waveA.size(); index++) {
-
-            //    System.out.println(waveA.size() + " " + waveB.size() + " " + wave1Timings.size() + " " + wave2Timings.size());
-              //  exit(0);
-
-                this.Wave.add(waveA.get(index) & waveB.get(index));
-
+            this.size = wave1.size();
+            this.Wave = new long[(size + 63)/64];
+            for (int index = 0; index < Wave.length; index++) {
+                this.Wave[index] = waveA[index] & waveB[index];
             }
         }
 
-        this.Resolution = timings.get(1)-timings.get(0);
-
     }
 
 
 
     /**
-     * Generates Digital DualSpeciesIsolation.Waveform
-     * @param MOI Mass of Interest that is non zero and non negative
+     * Generates Digital DualSpeciesIsolation.Waveform over the window of this wave (startTime, Resolution and size are set)
+     * @param timing the quantised timings of the MRS waveform for the Mass of Interest; non-null
      * @param MRSCycles Number of MRS Cycles/duty cycles for the wave; non-zero and non-negative, <= 850
-     * @param timeScale the time window for the wave in nanoseconds; greater than zero
-     * @param steps The number of steps plus 1 sets the number of data points
-     *             and therefore sets the resolution; greater than zero
-     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
-     * @param cycleCalibrationTime time for 1 Cs 1333 cycle in ns; greater than zero
      * @param startCycle the number of MRS cycles used to delay the start of the MRS waveform; can not be negative
-     * @param startTime   the start time of the MRS waveform in nanoseconds; can not be negative
-     * @return the list containing the digital signal in 0's and 1's, where each successive element represents the value
+     * @param MRSStartTime   the start time of the MRS waveform in nanoseconds; can not be negative
+     * @return the digital signal packed as described for Wave, where each successive bit represents the value
      * at a specific time (constant spacing)
      */
-    private ArrayList<Integer> waveGenerator(double MOI, double MRSCycles, double timeScale, double steps, double prop, double cycleCalibrationTime, double startCycle, double startTime){
-
-
-        ArrayList<Integer> wave = new ArrayList<>();
-        double cycleCalibration = cycleCalibrationTime*java.lang.Math.sqrt((MOI/132.905));
-        double timeOn = cycleCalibration*MRSCycles;
-
-        Boolean extend = false;
-        Boolean prevValue = false;
-        double prevState = 0;
+    private long[] waveGenerator(MRSTiming timing, double MRSCycles, double startCycle, long MRSStartTime){
 
+        long[] wave = new long[(size + 63)/64];
+        double timeOn = timing.getTimeOn(MRSCycles);
 
-        double startB = 0; //For point placement of where TON starts
-        if (startCycle != 0 ){
-            startB += 5 * (int) ((((32800) * java.lang.Math.sqrt((MOI / 132.905))) -
-                (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2) + (startCycle * cycleCalibration)) / 5);
+        long anchor; //For point placement of where the first MRS cycle starts
+        long startB; //For point placement of where TON starts
+        if (startCycle != 0){
+            anchor = timing.getStartDelay(startCycle);
+            startB = anchor;
         }
-        else if (startTime != 0){
-            startB += startTime;
+        else if (MRSStartTime != 0){
+            anchor = timing.getTimeDelay();
+            startB = MRSStartTime;
         } else {
-            startB += 5 * (int) ((((32800) * java.lang.Math.sqrt((MOI / 132.905))) -
-                (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2)) / 5);
-        }
-
-        double startA = 0; //For window start
-        if (startCycle != 0 ){
-            startA += 5 * (int) ((((32800) * java.lang.Math.sqrt((MOI / 132.905))) -
-                (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2) + (startCycle * cycleCalibration)) / 5);
-        }
-        else if (startTime != 0){
-            startA += startTime;
-        } else{
-            startA += 0;
-        }
-
-
-        if (waveFormula(timeOn + startB, MOI, MRSCycles, prop, false, cycleCalibrationTime, startA, 0, false, startCycle).getValue()){
-            extend = true;
+            anchor = timing.getTimeDelay();
+            startB = anchor;
         }
 
-        for(double i = startA; i < timeScale + startA; i = i + (int)(timeScale/steps)){
-            timings.add(i);
+        //The MRS is switched off after timeOn; if it is Hi at that point the last Hi half is extended to its end,
+        //but never past one more Hi half. Both limits are whole numbers of nanoseconds only by chance.
+        double cut = timeOn + startB;
+        double extended = timeOn + startB + timing.getOnTime();
+        long cutFloor = (long) java.lang.Math.floor(cut);
+        long cutCeil = (long) java.lang.Math.ceil(cut);
+        long extendedFloor = (long) java.lang.Math.floor(extended);
+        long extendedLast = (long) java.lang.Math.ceil(extended) - 1;
 
-            if (!extend) {
+        boolean extend = cut > startB && timing.isHi(cut, anchor);
 
-                ReturnBooleanDouble answer = new ReturnBooleanDouble(waveFormula(i, MOI, MRSCycles, prop, false, cycleCalibrationTime, startA, prevState, prevValue, startCycle));
-                prevState = answer.getTime();
-                prevValue = answer.getValue();
+        long time = startTime;
+        for(int i = 0; i < size; i++, time += Resolution){
 
+            boolean value;
 
-                if (prevValue) {
-                    wave.add(1);
-                } else {
-                    wave.add(0);
-                }
-
+            if (!extend || time < cutCeil || time > extendedFloor) {
+                value = waveFormula(time, timing, anchor, startB, cutFloor);
+            }
+            else if (time > cutFloor && !waveFormula(time, timing, anchor, startB, extendedLast)){
+                extend = false;
+                value = false;
             }
             else{
+                value = waveFormula(time, timing, anchor, startB, extendedLast);
+            }
 
-                if (i < timeOn + startB || i > + timeOn + startB + 5*(int)(((1-prop)*cycleCalibration/2)/5)){
-
-                    ReturnBooleanDouble answer1 = new ReturnBooleanDouble(waveFormula(i, MOI, MRSCycles, prop, false, cycleCalibrationTime, startA, prevState, prevValue, startCycle));
-                    prevState = answer1.getTime();
-                    prevValue = answer1.getValue();
-
-                    if (prevValue) {
-                        wave.add(1);
-                    } else {
-                        wave.add(0);
-                    }
-
-                }
-                else if (i > timeOn + startB && !waveFormula(i, MOI, MRSCycles, prop, extend, cycleCalibrationTime, startA, prevState, prevValue, startCycle).getValue()){
-                    ReturnBooleanDouble answer2 = new ReturnBooleanDouble(waveFormula(i, MOI, MRSCycles, prop, extend, cycleCalibrationTime, startA, prevState, prevValue, startCycle));
-                    prevState = answer2.getTime();
-                    prevValue = answer2.getValue();
-//                    if (!prevValue){
-                        extend = false;
-                        wave.add(0);
-//                    }
-
-                }
-                else{
-                    ReturnBooleanDouble answer3 = new ReturnBooleanDouble(waveFormula(i, MOI, MRSCycles, prop, extend, cycleCalibrationTime, startA, prevState, prevValue, startCycle));
-                    prevState = answer3.getTime();
-                    prevValue = answer3.getValue();
-                    if (prevValue) {
-                        wave.add(1);
-                    } else {
-                        wave.add(0);
-                    }
-                }
+            if (value){
+                setBit(wave, i);
             }
         }
 
-     //   System.out.println(countera + " " + counterb + " " + counterc + " " + counterd);
-
         return wave;
     }
 
     /**
      * Determines the digital value of a wave at a given time
      * @param time the time in nanoseconds at which the digital value of the wave is being obtained
-     * @param MOI Mass of Interest that is non zero and non negative
-     * @param MRSCycles Number of MRS Cycles/duty cycles for the wave; non-zero and non-negative, <= 850
-     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
-     * @param cycleCalibrationTime time for 1 Cs 1333 cycle in ns; greater than zero
-     * @param startCycle the number of MRS cycles used to delay the start of the MRS waveform; can not be negative
-     * @param extend if the MRS waveform was extended
-     * @param prevState the previous data point time of the MRS waveform in nanoseconds if available,
-     *                  otherwise keep as 0; must not be negative
-     * @param start the start time in nanoseconds of the data window for the MRS Waveform; can not be negative
-     * @param Val the previous data points value (Hi is true or Lo is false)
+     * @param timing the quantised timings of the MRS waveform for the Mass of Interest; non-null
+     * @param anchor the time in nanoseconds where the first MRS cycle starts
+     * @param start the time in nanoseconds after which the MRS is ON
+     * @param last the last time in nanoseconds where the MRS is ON
      * @return the digital value of the wave; true represents Hi and false represents Lo
      */
-    private ReturnBooleanDouble waveFormula(double time, double MOI, double MRSCycles, double prop, Boolean extend, double cycleCalibrationTime, double start, double prevState, Boolean Val, double startCycle){
-
-        double timeCounter = 0;
-        double cycleCalibration = cycleCalibrationTime*java.lang.Math.sqrt((MOI/132.905));
-        double timeOn = cycleCalibration*MRSCycles;
-        double timeDelay = 5*(int)((((32800)*java.lang.Math.sqrt((MOI/132.905))) - (5*(int)((prop*cycleCalibration/2)/5)/2))/5);
-        ReturnBooleanDouble info = new ReturnBooleanDouble();
-        double startTime = 0;
-
-        if (start == 0){
-            startTime += timeDelay;
-        }
-        else{
-            startTime += start;
-        }
-
-
+    private static boolean waveFormula(long time, MRSTiming timing, long anchor, long start, long last){
 
-        if (extend){
-            if (time <= startTime) {
-            return info;
-            }
-            if (time >= timeOn + startTime + 5*(int)(((1-prop)*cycleCalibration/2)/5)){
-                info.changeBoleanDouble(false,timeOn + startTime + 5*(int)(((1-prop)*cycleCalibration/2)/5));
-                return info;
-            }
-        }
-
-        if (!extend){
-            if (time <= startTime){
-            return info;
-            }
-            if (time > timeOn + startTime){
-                info.changeBoleanDouble(false,timeOn + startTime);
-                return info;
-            }
-        }
-
-
-
-        if (prevState == 0) {
-
-            if (startCycle != 0){
-               timeCounter += 5 * (int) ((((32800) * java.lang.Math.sqrt((MOI / 132.905))) -
-                    (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2) + (startCycle * cycleCalibration)) / 5);
-            } else {
-                timeCounter += timeDelay;
-            }
-        }
-        else{
-            timeCounter = prevState;
+        if (time <= start || time > last){
+            return false;
         }
 
+        return timing.isHi(time, anchor);
+    }
 
-        Boolean changed = false;
 
-        while (timeCounter < time){
+    /**
+     * @param timeScale the time window for the wave in nanoseconds; greater than zero
+     * @param steps the number of steps; greater than zero
+     * @return the time between values in nanoseconds; at least 1
+     */
+    private static long getResolution(int timeScale, int steps){
+        return java.lang.Math.max(1, timeScale/steps);
+    }
 
-            if (!Val || changed) {
-                timeCounter += 5 * (int) ((prop * cycleCalibration / 2) / 5);
-                if (timeCounter >= time) {
-                    info.changeBoleanDouble(false,
-                        timeCounter - 5 * (int) ((prop * cycleCalibration / 2) / 5));
-                    return info;
-                }
-                changed = true;
+    /**
+     * @param timeScale the time window for the wave in nanoseconds; greater than zero
+     * @param Resolution the time between values in nanoseconds; greater than zero
+     * @return the number of values in the time window
+     */
+    private static int getSize(int timeScale, long Resolution){
+        return (int) ((timeScale + Resolution - 1)/Resolution);
+    }
 
-            }
+    /**
+     * @param bits packed values; non-null
+     * @param index index of the value; 0 <= index < bits.length*64
+     * @return true if the value is 1
+     */
+    static boolean getBit(long[] bits, int index){
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
 
-            if (Val || changed) {
-                timeCounter += 5 * (int) (((1 - prop) * cycleCalibration / 2) / 5);
-                if (timeCounter > time) {
-                    info.changeBoleanDouble(true,
-                        timeCounter - 5 * (int) (((1 - prop) * cycleCalibration / 2) / 5));
-                    return info;
-                }
-                changed = true;
-            }
+    /**
+     * Sets a value to 1
+     * @param bits packed values; non-null
+     * @param index index of the value; 0 <= index < bits.length*64
+     */
+    static void setBit(long[] bits, int index){
+        bits[index >>> 6] |= 1L << index;
+    }
 
-            if (timeCounter == time){
-                info.changeBoleanDouble(false,timeCounter);
-                return info;
-            }
 
+    /**
+     *
+     * @return a list containing the digital values of the wave
+     */
+    public ArrayList<Integer> getWave(){
+        ArrayList<Integer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++){
+            values.add(getValue(i));
         }
+        return values;
+    }
 
+    /**
+     * @param index the index of the value; 0 <= index < size()
+     * @return the digital value (0 or 1) at index
+     */
+    public int getValue(int index){
+        return getBit(Wave, index) ? 1 : 0;
+    }
 
-        return info;
+    /**
+     * @return a copy of the values packed 64 per word; bit i of the waveform is bit i%64 of word i/64
+     */
+    public long[] getBits(){
+        return Wave.clone();
     }
 
+    /**
+     * Builds an index of the wave for repeated window queries: on time and switch counts between two times in O(1),
+     * and the next switch after a time in O(log n) (see WaveformIndex). The index costs one pass over the packed values
+     * and two counts per 64 values; the wave is not copied.
+     * @return an index of the values of this wave
+     */
+    public WaveformIndex index(){
+        return new WaveformIndex(Wave, size, startTime, Resolution);
+    }
 
     /**
-     *
-     * @return a list containing the digital values of the wave
+     * @return the number of values in the wave
      */
-    public ArrayList<Integer> getWave(){
-        return new ArrayList<>(Wave);
+    public int size(){
+        return size;
     }
 
     /**
@@ -458,14 +404,33 @@ public class Waveform {
      * @return a list containing all the timings in ascending order
      */
     public ArrayList<Double> getTimings(){
-        return new ArrayList<>(timings);
+        ArrayList<Double> timings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++){
+            timings.add((double) getTime(i));
+        }
+        return timings;
+    }
+
+    /**
+     * @param index the index of the value; non-negative
+     * @return the time in nanoseconds of the value at index
+     */
+    public long getTime(int index){
+        return startTime + index*Resolution;
+    }
+
+    /**
+     * @return the time in nanoseconds of the first value
+     */
+    public long getStartTime(){
+        return startTime;
     }
 
     /**
      *
-     * @return the resolution of the MRS waveform
+     * @return the resolution of the MRS waveform in nanoseconds
      */
-    public double getResolution(){
+    public long getResolution(){
         return Resolution;
     }
 
@@ -480,24 +445,16 @@ public class Waveform {
 
         Waveform wave  = (Waveform) O;
 
-        if (wave.getResolution() != this.Resolution){
+        if (wave.getResolution() != this.Resolution || wave.getStartTime() != this.startTime){
             return false;
         }
 
-        if (wave.getWave().size() != this.getWave().size()){
-            return false;
-        }
-        if (wave.getTimings().size() != this.getTimings().size()){
-            return false;
-        }
-        if (this.checkRep() && wave.checkRep()){
+        if (wave.size() != this.size){
             return false;
         }
 
-        ArrayList<Integer> thisWaveVals = new ArrayList<>(this.getWave());
-        ArrayList<Integer> otherWaveVals = new ArrayList<>(wave.getWave());
-        for (int  i = 0; i < thisWaveVals.size(); i++) {
-            if (thisWaveVals.get(i) != otherWaveVals.get(i)) {
+        for (int  i = 0; i < (size + 63)/64; i++) {
+            if (Wave[i] != wave.Wave[i]) {
                 return false;
             }
         }
@@ -508,13 +465,11 @@ public class Waveform {
     @Override
     public int hashCode()
     {
-        ArrayList<Integer> thisWaveVals = new ArrayList<>(this.getWave());
         int i = 0;
-        while (thisWaveVals.get(i) == 0){
+        while (i < size && !getBit(Wave, i)){
             i++;
         }
         return i;
     }
 
 }
-
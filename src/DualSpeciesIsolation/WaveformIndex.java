@@ -0,0 +1,155 @@
+package DualSpeciesIsolation;
+
+public class WaveformIndex {
+
+    /**
+     * Values of the waveform packed 64 per word, as in Waveform
+     */
+    private final long[] bits;
+
+    /**
+     * Edges of the waveform packed 64 per word: bit i is set when value i differs from value i-1 (never for i = 0)
+     */
+    private final long[] edges;
+
+    /**
+     * Number of Hi values and number of edges before each word; one entry more than there are words
+     */
+    private final int[] hiCounts;
+    private final int[] edgeCounts;
+
+    /**
+     * Number of values, time in ns of the first value and time between values in ns
+     */
+    private final int size;
+    private final long startTime;
+    private final long Resolution;
+
+    /*Abstraction Function:
+    A read-only index over the values of a Waveform: value i is at time startTime + i*Resolution, and hiCounts[w] and
+    edgeCounts[w] are the number of Hi values and of edges among values 0 to 64w - 1, so counts over any range of
+    values need at most two partial words.
+     */
+
+    /*Rep Invariant:
+    bits and edges hold (size + 63)/64 words with no bits at or past size, hiCounts and edgeCounts hold one more
+    entry than bits and are non-decreasing from 0, Resolution > 0.
+     */
+
+    /**
+     * @param bits the packed values of a waveform; non-null and not changed afterwards
+     * @param size the number of values; non-negative
+     * @param startTime the time in ns of the first value
+     * @param Resolution the time between values in ns; greater than zero
+     */
+    WaveformIndex(long[] bits, int size, long startTime, long Resolution){
+
+        int words = (size + 63)/64;
+        this.bits = bits;
+        this.edges = new long[words];
+        this.hiCounts = new int[words + 1];
+        this.edgeCounts = new int[words + 1];
+        this.size = size;
+        this.startTime = startTime;
+        this.Resolution = Resolution;
+
+        long carry = 0;
+        for (int w = 0; w < words; w++){
+            long mask = w == words - 1 && size % 64 != 0 ? (1L << size) - 1 : -1L;
+            //bit i of the shifted word is value i-1, so bit 0 of the first word never marks an edge
+            long previous = (bits[w] << 1) | carry;
+            edges[w] = (bits[w] ^ previous) & mask;
+            if (w == 0){
+                edges[w] &= ~1L;
+            }
+            carry = bits[w] >>> 63;
+            hiCounts[w + 1] = hiCounts[w] + Long.bitCount(bits[w]);
+            edgeCounts[w + 1] = edgeCounts[w] + Long.bitCount(edges[w]);
+        }
+    }
+
+    /**
+     * @param t0 start of the window in ns
+     * @param t1 end of the window in ns
+     * @return the Hi time in ns of the values at times t0 <= t < t1 (each value counts Resolution ns)
+     */
+    public long onTime(long t0, long t1){
+        return count(bits, hiCounts, index(t0), index(t1))*Resolution;
+    }
+
+    /**
+     * @param t0 start of the window in ns
+     * @param t1 end of the window in ns
+     * @return the number of Rise/Fall switches at times t0 <= t < t1; a switch is at the time of the first value
+     * after it
+     */
+    public int edgeCountIn(long t0, long t1){
+        return count(edges, edgeCounts, index(t0), index(t1));
+    }
+
+    /**
+     * @param t a time in ns
+     * @return the time in ns of the first switch after t, or -1 if there is none
+     */
+    public long nextEdgeAfter(long t){
+
+        int from = index(t + 1);
+        if (from >= size){
+            return -1;
+        }
+
+        int word = from >>> 6;
+        long remaining = edges[word] & (-1L << from);
+        if (remaining == 0){
+            //first word after word with an edge, by binary search over the edge counts
+            int target = edgeCounts[word + 1];
+            if (target == edgeCounts[edges.length]){
+                return -1;
+            }
+            int low = word + 1;
+            int high = edges.length - 1;
+            while (low < high){
+                int middle = (low + high) >>> 1;
+                if (edgeCounts[middle + 1] > target){
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            word = low;
+            remaining = edges[word];
+        }
+        return startTime + ((long) word*64 + Long.numberOfTrailingZeros(remaining))*Resolution;
+    }
+
+    /**
+     * @return the index of the first value at or after time, between 0 and size
+     */
+    private int index(long time){
+        if (time <= startTime){
+            return 0;
+        }
+        long index = (time - startTime + Resolution - 1)/Resolution;
+        return (int) java.lang.Math.min(index, size);
+    }
+
+    /**
+     * @return the number of set bits from index i0 up to but not including i1, using the counts before each word
+     */
+    private static int count(long[] packed, int[] counts, int i0, int i1){
+        if (i1 <= i0){
+            return 0;
+        }
+        return below(packed, counts, i1) - below(packed, counts, i0);
+    }
+
+    /**
+     * @return the number of set bits before index i
+     */
+    private static int below(long[] packed, int[] counts, int i){
+        int word = i >>> 6;
+        int bit = i & 63;
+        return bit == 0 ? counts[word] : counts[word] + Long.bitCount(packed[word] & ((1L << bit) - 1));
+    }
+
+}
@@ -67,4 +67,24 @@ public class WriteFile {
     }
 
 
+    /**
+     * Writes the segment histogram of the AND combination of two MRS waveforms to a specified file; the file is left
+     * open, as other pairs may still be running, and is closed by the scan once all of them are done
+     * @param writer write data to specified file; non-null
+     * @param mass1 non-null and greater than zero mass of interest
+     * @param mass2 non-null and greater than zero second mass of interest
+     * @param max the max mass that can be used; greater than zero and non-null
+     * @param histogram the segment histogram of the mass pair; non-null
+     */
+    public static synchronized void writeHistogram(FileWriter writer, int mass1, int mass2, int max, SegmentHistogram histogram){
+        try {
+            if (mass1 <= (max-5) && mass2 <= (max-5)) {
+                writer.write(mass1 + "  " + mass2 + "  " + histogram + "\n");
+            }
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+
 }
@@ -0,0 +1,460 @@
+package Tests;
+
+import DualSpeciesIsolation.IntervalWave;
+import DualSpeciesIsolation.MRSTiming;
+import DualSpeciesIsolation.PulseGenerator;
+import DualSpeciesIsolation.Waveform;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Differential test harness for the MRS engines. Randomised parameter sets are run through the frozen
+ * ReferenceEngine and through every registered alternative engine; the first differing sample or statistic
+ * of each failing case is reported. Cases are derived from (seed, case index) so any failure can be rerun alone.
+ *
+ * Run as an application for large runs: EquivalenceHarness [cases] [seed] [threads] [maxMass] [maxCycles]
+ */
+public class EquivalenceHarness {
+
+    /**
+     * Number of cases run as part of the unit tests
+     */
+    private static final int TEST_CASES = 60;
+
+    /**
+     * Number of cases run by each task of the thread pool
+     */
+    private static final int BLOCK = 16;
+
+    /**
+     * Maximum number of differences that are kept for the report
+     */
+    private static final int MAX_REPORTED = 20;
+
+
+    @Test
+    /*
+     * Check every alternative engine against the reference engine on random parameter sets
+     */
+    public void checkEnginesMatchReference(){
+        List<String> differences = run(TEST_CASES, 20220601L, Runtime.getRuntime().availableProcessors(), 140, 6);
+        Assertions.assertTrue(differences.isEmpty(), String.join("\n", differences));
+    }
+
+
+    public static void main(String[] args) {
+
+        long cases = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        double maxMass = args.length > 3 ? Double.parseDouble(args[3]) : 250;
+        int maxCycles = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        System.out.println("cases " + cases + "  seed " + seed + "  threads " + threads);
+        long begin = System.nanoTime();
+        List<String> differences = run(cases, seed, threads, maxMass, maxCycles);
+        long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin);
+
+        for (String difference : differences) {
+            System.out.println(difference);
+        }
+        System.out.println(differences.isEmpty() ? "All engines match the reference (" + elapsed + " s)"
+            : differences.size() + " differences reported (" + elapsed + " s)");
+        System.exit(differences.isEmpty() ? 0 : 1);
+    }
+
+
+    /**
+     * @return the engines that are compared against the reference engine
+     */
+    public static List<WaveEngine> alternativeEngines(){
+        List<WaveEngine> engines = new ArrayList<>();
+        engines.add(new SampledEngine());
+        engines.add(new TickAlignedEngine());
+        engines.add(new IntervalEngine());
+        return engines;
+    }
+
+
+    /**
+     * Runs random cases against every alternative engine in parallel
+     * @param cases number of random cases; greater than zero
+     * @param seed seed used to derive the parameters of every case
+     * @param threads number of worker threads; greater than zero
+     * @param maxMass largest mass used in a case; greater than 1
+     * @param maxCycles largest number of MRS cycles used in a case; greater than 0
+     * @return descriptions of the first difference found in each failing case (at most MAX_REPORTED)
+     */
+    public static List<String> run(long cases, long seed, int threads, double maxMass, int maxCycles){
+
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        ConcurrentLinkedQueue<String> differences = new ConcurrentLinkedQueue<>();
+        AtomicLong failures = new AtomicLong();
+        AtomicLong done = new AtomicLong();
+        WaveEngine reference = new ReferenceEngine();
+        List<WaveEngine> engines = alternativeEngines();
+
+        for (long block = 0; block < cases; block += BLOCK) {
+            final long first = block;
+            final long last = Math.min(cases, block + BLOCK);
+            service.execute(() -> {
+                for (long index = first; index < last; index++) {
+                    Case c = new Case(seed, index, maxMass, maxCycles);
+                    Results expected = new Results(reference, c);
+                    for (WaveEngine engine : engines) {
+                        String difference;
+                        try {
+                            difference = compare(expected, engine, c);
+                        } catch (RuntimeException e){
+                            difference = e.toString();
+                        }
+                        if (difference != null){
+                            if (failures.incrementAndGet() <= MAX_REPORTED){
+                                differences.add(engine.name() + " " + c + ": " + difference);
+                            }
+                            break;
+                        }
+                    }
+                    long count = done.incrementAndGet();
+                    if (count % 10000 == 0){
+                        System.out.println(count + " cases checked, " + failures.get() + " failing");
+                    }
+                }
+            });
+        }
+
+        service.shutdown();
+        try {
+            service.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e){
+            e.printStackTrace();
+        }
+
+        return new ArrayList<>(differences);
+    }
+
+
+    /**
+     * @return a description of the first difference between the reference results and the engine, or null if there is none
+     */
+    private static String compare(Results expected, WaveEngine engine, Case c){
+
+        String difference = compareSamples("heavy waveform", expected.heavy,
+            engine.waveform(c.heavyMass, c.MRSCycles, c.timeScale, c.steps, c.prop, c.cycleCalib, c.startCycle));
+        if (difference != null){
+            return difference;
+        }
+
+        difference = compareSamples("light waveform", expected.light,
+            engine.waveformTimeOn(c.lightMass, c.timeScale, c.steps, c.prop, c.totalTime, c.cycleCalib, c.startTime));
+        if (difference != null){
+            return difference;
+        }
+
+        if (expected.pulseScheme != null) {
+            difference = compareStatistics("pulseScheme", expected.pulseScheme,
+                engine.pulseScheme(c.heavyMass, c.lightMass, c.MRSCycles, c.prop, c.timeScale, c.steps,
+                    (int) (c.adjacencyBreak*expected.heavy.resolution), c.cycleCalib));
+            if (difference != null){
+                return difference;
+            }
+        }
+
+        int actual = engine.IOIWaveformOnTime(c.heavyMass, c.lightMass, c.IOI, c.MRSCycles, c.prop, c.timeScale, c.steps, c.cycleCalib, c.startCycle, c.dualAndComb);
+        if (expected.IOIOnTime != actual){
+            return "IOIWaveformOnTime expected " + expected.IOIOnTime + " but was " + actual;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a description of the first differing sample, or null if the waveforms are identical
+     */
+    private static String compareSamples(String label, WaveEngine.Samples expected, WaveEngine.Samples actual){
+
+        if (expected.start != actual.start || expected.resolution != actual.resolution){
+            return label + " timebase expected (" + expected.start + ", " + expected.resolution + ") but was ("
+                + actual.start + ", " + actual.resolution + ")";
+        }
+
+        int size = Math.min(expected.values.length, actual.values.length);
+        for (int i = 0; i < size; i++) {
+            if (expected.values[i] != actual.values[i]){
+                return label + " sample " + i + " (t = " + (expected.start + i*expected.resolution) + " ns) expected "
+                    + expected.values[i] + " but was " + actual.values[i];
+            }
+        }
+
+        if (expected.values.length != actual.values.length){
+            return label + " size expected " + expected.values.length + " but was " + actual.values.length;
+        }
+        return null;
+    }
+
+    /**
+     * @return a description of the first differing statistic, or null if all statistics are identical
+     */
+    private static String compareStatistics(String label, int[] expected, int[] actual){
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]){
+                return label + "[" + i + "] expected " + expected[i] + " but was " + actual[i];
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * The outputs of the reference engine for one case
+     */
+    private static final class Results {
+
+        private final WaveEngine.Samples heavy;
+        private final WaveEngine.Samples light;
+        private final int[] pulseScheme;
+        private final int IOIOnTime;
+
+        private Results(WaveEngine reference, Case c){
+            heavy = reference.waveform(c.heavyMass, c.MRSCycles, c.timeScale, c.steps, c.prop, c.cycleCalib, c.startCycle);
+            light = reference.waveformTimeOn(c.lightMass, c.timeScale, c.steps, c.prop, c.totalTime, c.cycleCalib, c.startTime);
+            if (c.startCycle == 0){
+                pulseScheme = toNanoseconds(reference.pulseScheme(c.heavyMass, c.lightMass, c.MRSCycles, c.prop, c.timeScale, c.steps, c.adjacencyBreak, c.cycleCalib),
+                    heavy.resolution, PulseGenerator.normFactor(c.heavyMass, c.MRSCycles, c.prop, c.cycleCalib));
+            } else {
+                pulseScheme = null;
+            }
+            IOIOnTime = reference.IOIWaveformOnTime(c.heavyMass, c.lightMass, c.IOI, c.MRSCycles, c.prop, c.timeScale, c.steps, c.cycleCalib, c.startCycle, c.dualAndComb);
+        }
+
+        /**
+         * Converts the statistics of the reference, which counts samples, to nanoseconds. The reference is called with
+         * the adjacency break in samples, the engines with the same break in nanoseconds, so the peak counts agree.
+         * @param stats pulseScheme statistics counted in samples (positions are sample indices of a wave starting at 0 ns)
+         * @param resolution time between samples in nanoseconds
+         * @param normFactor the normalizing factor for the On Time
+         * @return the statistics in nanoseconds
+         */
+        private static int[] toNanoseconds(int[] stats, long resolution, int normFactor){
+            int[] ns = stats.clone();
+            for (int i = 4; i <= 8; i++) {
+                if (ns[i] > 0){
+                    ns[i] = (int) (ns[i]*resolution);
+                }
+            }
+            ns[9] = (int)((double)ns[4]*100/normFactor);
+            return ns;
+        }
+    }
+
+
+    /**
+     * A random parameter set; the same (seed, index) always gives the same parameters
+     */
+    private static final class Case {
+
+        private final long index;
+        private final double heavyMass;
+        private final double lightMass;
+        private final double IOI;
+        private final double MRSCycles;
+        private final double prop;
+        private final double cycleCalib;
+        private final double startCycle;
+        private final int adjacencyBreak;
+        private final boolean dualAndComb;
+        private final int timeScale;
+        private final int steps;
+        private final double totalTime;
+        private final long startTime;
+
+        private Case(long seed, long index, double maxMass, int maxCycles){
+            Random random = new Random(seed * 6364136223846793005L + index);
+            this.index = index;
+
+            double mass1 = randomMass(random, maxMass);
+            double mass2 = randomMass(random, maxMass);
+            heavyMass = Math.max(mass1, mass2);
+            lightMass = Math.min(mass1, mass2);
+            IOI = randomMass(random, maxMass);
+
+            if (random.nextInt(4) == 0) {
+                MRSCycles = 1 + random.nextInt(maxCycles*2)/2.0;
+            } else {
+                MRSCycles = 1 + random.nextInt(maxCycles);
+            }
+            prop = 0.05 + random.nextInt(91)/100.0;
+            cycleCalib = 22000 + random.nextInt(30000)/20.0;
+            startCycle = random.nextInt(3) == 0 ? random.nextInt(21)/2.0 : 0;
+            adjacencyBreak = 2 + random.nextInt(6000);
+            dualAndComb = random.nextInt(4) != 0;
+
+            if (startCycle != 0) {
+                timeScale = PulseGenerator.getSuggestedTimeScaleShifted(heavyMass, MRSCycles, prop, cycleCalib);
+            } else {
+                timeScale = PulseGenerator.getSuggestedTimeScale(heavyMass, MRSCycles, prop, cycleCalib);
+            }
+            int resolution = random.nextInt(4) == 0 ? 1 + random.nextInt(10) : 1;
+            steps = timeScale/resolution;
+
+            double cycleCalibration = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905));
+            totalTime = cycleCalibration*MRSCycles;
+            if (startCycle != 0) {
+                startTime = 5 * (int) ((((32800) * java.lang.Math.sqrt((heavyMass / 132.905))) - (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2)
+                    + (startCycle*(cycleCalibration))) / 5);
+            } else {
+                startTime = 0;
+            }
+        }
+
+        /**
+         * @return a mass that is an integer half of the time and has three decimals otherwise
+         */
+        private static double randomMass(Random random, double maxMass){
+            if (random.nextBoolean()){
+                return 1 + random.nextInt((int) maxMass);
+            }
+            return 1 + random.nextInt((int) ((maxMass - 1)*1000))/1000.0;
+        }
+
+        @Override
+        public String toString(){
+            return "case " + index + " [heavy " + heavyMass + ", light " + lightMass + ", IOI " + IOI + ", cycles " + MRSCycles
+                + ", prop " + prop + ", cycleCalib " + cycleCalib + ", startCycle " + startCycle + ", adjBreak " + adjacencyBreak
+                + ", dual " + dualAndComb + ", timeScale " + timeScale + ", steps " + steps + "]";
+        }
+    }
+
+
+    /**
+     * The sampled engine in Waveform and PulseGenerator
+     */
+    private static class SampledEngine implements WaveEngine {
+
+        @Override
+        public String name(){
+            return "sampled";
+        }
+
+        @Override
+        public Samples waveform(double MOI, double MRSCycles, int timeScale, int steps, double prop, double cycleCalib, double MRSStartCycle){
+            return toSamples(new Waveform(MOI, MRSCycles, timeScale, steps, prop, cycleCalib, MRSStartCycle));
+        }
+
+        @Override
+        public Samples waveformTimeOn(double MOI, int timeScale, int steps, double prop, double timeOn, double cycleCalibration, long MRSStartTime){
+            return toSamples(new Waveform(MOI, timeScale, steps, prop, timeOn, cycleCalibration, MRSStartTime));
+        }
+
+        @Override
+        public int[] pulseScheme(double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, int steps, int adjacencyBreak, double cycleCalib){
+            return PulseGenerator.pulseScheme(MOI1, MOI2, MRSCycles, prop, timeScale, steps, adjacencyBreak, cycleCalib);
+        }
+
+        @Override
+        public int IOIWaveformOnTime(double MOI1, double MOI2, double IOI, double MRSCycles, double prop, int timeScale, int steps, double cycleCalib, double startCycle, Boolean dualAndComb){
+            return PulseGenerator.IOIWaveformOnTime(MOI1, MOI2, IOI, MRSCycles, prop, timeScale, steps, cycleCalib, startCycle, dualAndComb);
+        }
+
+        private static Samples toSamples(Waveform wave){
+            int[] samples = new int[wave.size()];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = wave.getValue(i);
+            }
+            return new Samples(wave.getStartTime(), wave.getResolution(), samples);
+        }
+    }
+
+
+    /**
+     * The tick-aligned sampling mode of pulseScheme; only used for nanosecond resolution, which it must reproduce
+     */
+    private static final class TickAlignedEngine extends SampledEngine {
+
+        @Override
+        public String name(){
+            return "tick-aligned";
+        }
+
+        @Override
+        public int[] pulseScheme(double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, int steps, int adjacencyBreak, double cycleCalib){
+            if (steps != timeScale){
+                return super.pulseScheme(MOI1, MOI2, MRSCycles, prop, timeScale, steps, adjacencyBreak, cycleCalib);
+            }
+            return PulseGenerator.pulseScheme(MOI1, MOI2, MRSCycles, prop, timeScale, adjacencyBreak, cycleCalib);
+        }
+    }
+
+    /**
+     * The Hi run (IntervalWave) engine; only used for nanosecond resolution, which it must reproduce
+     */
+    private static final class IntervalEngine extends SampledEngine {
+
+        @Override
+        public String name(){
+            return "interval";
+        }
+
+        @Override
+        public WaveEngine.Samples waveform(double MOI, double MRSCycles, int timeScale, int steps, double prop, double cycleCalib, double MRSStartCycle){
+            if (steps != timeScale){
+                return super.waveform(MOI, MRSCycles, timeScale, steps, prop, cycleCalib, MRSStartCycle);
+            }
+            MRSTiming timing = new MRSTiming(MOI, prop, cycleCalib);
+            long start = MRSStartCycle != 0 ? timing.getStartDelay(MRSStartCycle) : 0;
+            return toSamples(new IntervalWave(timing, MRSCycles, MRSStartCycle, 0, start, timeScale));
+        }
+
+        @Override
+        public WaveEngine.Samples waveformTimeOn(double MOI, int timeScale, int steps, double prop, double timeOn, double cycleCalibration, long MRSStartTime){
+            if (steps != timeScale){
+                return super.waveformTimeOn(MOI, timeScale, steps, prop, timeOn, cycleCalibration, MRSStartTime);
+            }
+            MRSTiming timing = new MRSTiming(MOI, prop, cycleCalibration);
+            return toSamples(new IntervalWave(timing, timeOn/timing.getCycleCalibration(), 0, MRSStartTime, MRSStartTime, timeScale));
+        }
+
+        @Override
+        public int[] pulseScheme(double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, int steps, int adjacencyBreak, double cycleCalib){
+            if (steps != timeScale){
+                return super.pulseScheme(MOI1, MOI2, MRSCycles, prop, timeScale, steps, adjacencyBreak, cycleCalib);
+            }
+            MRSTiming heavyTiming = new MRSTiming(Math.max(MOI1, MOI2), prop, cycleCalib);
+            MRSTiming lightTiming = new MRSTiming(Math.min(MOI1, MOI2), prop, cycleCalib);
+            return PulseGenerator.pulseScheme(PulseGenerator.pulseSegments(heavyTiming, lightTiming, MRSCycles, timeScale),
+                Math.max(MOI1, MOI2), MRSCycles, prop, adjacencyBreak, cycleCalib);
+        }
+
+        @Override
+        public int IOIWaveformOnTime(double MOI1, double MOI2, double IOI, double MRSCycles, double prop, int timeScale, int steps, double cycleCalib, double startCycle, Boolean dualAndComb){
+            if (steps != timeScale){
+                return super.IOIWaveformOnTime(MOI1, MOI2, IOI, MRSCycles, prop, timeScale, steps, cycleCalib, startCycle, dualAndComb);
+            }
+            return PulseGenerator.IOIWaveformOnTime(new MRSTiming(Math.max(MOI1, MOI2), prop, cycleCalib),
+                new MRSTiming(Math.min(MOI1, MOI2), prop, cycleCalib), new MRSTiming(IOI, prop, cycleCalib),
+                MRSCycles, timeScale, startCycle, dualAndComb);
+        }
+
+        /**
+         * @return the values of wave
+         */
+        private static WaveEngine.Samples toSamples(IntervalWave wave){
+            int[] values = new int[wave.size()];
+            for (int k = 0; k < wave.getRunCount(); k++){
+                for (long t = wave.getRunStart(k); t <= wave.getRunEnd(k); t++){
+                    values[(int) (t - wave.getStartTime())] = 1;
+                }
+            }
+            return new WaveEngine.Samples(wave.getStartTime(), 1, values);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package Tests;
+
+import java.util.ArrayList;
+
+/**
+ * Frozen copy of the original sampled MRS engine (Waveform.waveGenerator, Waveform.waveFormula, the AND and
+ * specialised XOR combinations, PulseGenerator.pulseScheme and PulseGenerator.IOIWaveformOnTime).
+ * This class must not be changed when the engine is optimised; it defines the expected output for
+ * every alternative engine checked by the EquivalenceHarness.
+ */
+public class ReferenceEngine implements WaveEngine {
+
+    @Override
+    public String name(){
+        return "reference";
+    }
+
+    @Override
+    public Samples waveform(double MOI, double MRSCycles, int timeScale, int steps, double prop, double cycleCalib, double MRSStartCycle){
+        ArrayList<Double> timings = new ArrayList<>();
+        ArrayList<Integer> wave = waveGenerator(MOI, MRSCycles, timeScale, steps, prop, cycleCalib, MRSStartCycle, 0, timings);
+        return toSamples(wave, timings);
+    }
+
+    @Override
+    public Samples waveformTimeOn(double MOI, int timeScale, int steps, double prop, double timeOn, double cycleCalibration, long MRSStartTime){
+        ArrayList<Double> timings = new ArrayList<>();
+        double MRSCycles = (timeOn/(cycleCalibration*java.lang.Math.sqrt((MOI/132.905))));
+        ArrayList<Integer> wave = waveGenerator(MOI, MRSCycles, timeScale, steps, prop, cycleCalibration, 0, MRSStartTime, timings);
+        return toSamples(wave, timings);
+    }
+
+    @Override
+    public int[] pulseScheme(double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, int steps, int adjacencyBreak, double cycleCalib){
+
+        double heavyMass;
+        double lightMass;
+        int counter;
+        int indetCounter;
+        int inclCounter;
+        int value;
+        int peaks = 0;
+        int indetPeaks = 0;
+        int onTime = 0;
+        int inclPeaks = 0;
+        int switches = 0;
+        int minAdj = -1;
+        int secondSmallest = -1;
+        double totalTime;
+        int minTime = -1;
+        int secondMinTime = -1;
+        int[] pkSwt = new int[10];
+
+        if (MOI1 > MOI2){
+            heavyMass = MOI1;
+            lightMass = MOI2;
+        }
+        else{
+            heavyMass = MOI2;
+            lightMass = MOI1;
+        }
+
+        totalTime = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905))*MRSCycles;
+
+        ArrayList<Double> timingsA = new ArrayList<>();
+        ArrayList<Double> timingsB = new ArrayList<>();
+        ArrayList<Integer> waveA = waveGenerator(heavyMass, MRSCycles, timeScale, steps, prop, cycleCalib, 0, 0, timingsA);
+        ArrayList<Integer> waveB = waveGenerator(lightMass, totalTime/(cycleCalib*java.lang.Math.sqrt((lightMass/132.905))),
+            timeScale, steps, prop, cycleCalib, 0, 0, timingsB);
+
+        ArrayList<Integer> bitList = andCombination(waveA, timingsA, waveB, timingsB);
+        if (bitList == null){
+            return pkSwt;
+        }
+
+        if (bitList.get(bitList.size()-1) != bitList.get(bitList.size()-2)){
+            peaks++;
+            indetPeaks++;
+            inclPeaks++;
+            switches++;
+        }
+
+        counter = 1;
+        inclCounter = 1;
+        indetCounter = 1;
+        value = bitList.get(0);
+        if (value == 1){
+            onTime++;
+        }
+        for(int i = 0; i < bitList.size()-1; i++){
+
+            if (bitList.get(i+1) == value){
+                counter++;
+                inclCounter++;
+                indetCounter++;
+                if(value == 1){
+                    onTime++;
+                }
+            }
+            else{
+                switches++;
+                if (value == 1){
+                    inclCounter++;
+                }
+                if (value == 0){
+                    indetCounter--;
+                }
+                if(minAdj < 0 || counter < minAdj){
+                    if (minAdj > 0){
+                        secondSmallest = minAdj;
+                        secondMinTime = minTime;
+                    }
+                    minAdj = counter;
+                    minTime = i;
+
+                }
+
+                if(minAdj > 0 && counter > minAdj && (secondSmallest > counter || secondSmallest < 0)){
+                    secondSmallest = counter;
+                    secondMinTime = i;
+                }
+
+                if(counter < adjacencyBreak){
+                    peaks++;
+                }
+                if (inclCounter < adjacencyBreak){
+                    inclPeaks++;
+                }
+                if (indetCounter < adjacencyBreak){
+                    indetPeaks++;
+                }
+
+                if(value == 0){
+                    inclCounter = 2;
+                    counter = 1;
+                    indetCounter = 1;
+                    onTime++;
+                }
+                else {
+                    counter = 1;
+                    inclCounter = 1;
+                    indetCounter = 0;
+                }
+                value = bitList.get(i+1);
+
+            }
+        }
+
+        if (secondSmallest < 0 || minAdj < 0){
+            minAdj = 0;
+            secondSmallest = 0;
+        }
+
+        pkSwt[0] = peaks;
+        pkSwt[1] = switches;
+        pkSwt[2] = indetPeaks;
+        pkSwt[3] = inclPeaks;
+        pkSwt[4] = onTime;
+        pkSwt[5] = minAdj;
+        pkSwt[6] = secondSmallest;
+        pkSwt[7] = minTime;
+        pkSwt[8] = secondMinTime;
+        pkSwt[9] = (int)((double)onTime*100/normFactor(heavyMass,MRSCycles, prop, cycleCalib));
+
+        return pkSwt;
+    }
+
+    @Override
+    public int IOIWaveformOnTime(double MOI1, double MOI2, double IOI, double MRSCycles, double prop, int timeScale, int steps, double cycleCalib, double startCycle, Boolean dualAndComb){
+
+        int OnTime = 0;
+        double heavyMass;
+        double lightMass;
+        double totalTime;
+        double startTime = 0;
+
+        if (MOI1 > MOI2){
+            heavyMass = MOI1;
+            lightMass = MOI2;
+        }
+        else{
+            heavyMass = MOI2;
+            lightMass = MOI1;
+        }
+
+        double cycleCalibration = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905));
+        totalTime = cycleCalib*java.lang.Math.sqrt((heavyMass/132.905))*MRSCycles;
+        if (startCycle != 0){
+            startTime = 5 * (int) ((((32800) * java.lang.Math.sqrt((heavyMass / 132.905))) - (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2)
+                + (startCycle*(cycleCalibration))) / 5);
+        }
+
+        ArrayList<Double> timingsA = new ArrayList<>();
+        ArrayList<Double> timingsB = new ArrayList<>();
+        ArrayList<Double> timingsIOI = new ArrayList<>();
+        ArrayList<Integer> waveA = waveGenerator(heavyMass, MRSCycles, timeScale, steps, prop, cycleCalib, startCycle, 0, timingsA);
+        ArrayList<Integer> waveB = waveGenerator(lightMass, totalTime/(cycleCalib*java.lang.Math.sqrt((lightMass/132.905))),
+            timeScale, steps, prop, cycleCalib, 0, startTime, timingsB);
+        ArrayList<Integer> waveIOI = waveGenerator(IOI, totalTime/(cycleCalib*java.lang.Math.sqrt((IOI/132.905))),
+            timeScale, steps, prop, cycleCalib, 0, startTime, timingsIOI);
+
+        ArrayList<Integer> mainWave = waveA;
+        if (dualAndComb){
+            mainWave = andCombination(waveA, timingsA, waveB, timingsB);
+            if (mainWave == null){
+                return OnTime;
+            }
+        }
+
+        ArrayList<Integer> bitList = xorCombination(mainWave, timingsA, waveIOI, timingsIOI);
+        if (bitList == null){
+            return OnTime;
+        }
+
+        for (int i = 0; i < bitList.size(); i++){
+            if (bitList.get(i) == 1){
+                OnTime++;
+            }
+        }
+
+        return OnTime;
+    }
+
+    /**
+     * Copy of PulseGenerator.normFactor
+     */
+    private static int normFactor(double mass, double MRSCycles, double proportion, double cycleCalib){
+
+        return (int) ((5*((int)(((1-proportion)*cycleCalib*java.lang.Math.sqrt((mass/132.905))/2)/5)) - 1)*(MRSCycles*2));
+
+    }
+
+    /**
+     * @param wave sampled values; non-null
+     * @param timings timings of the sampled values; non-null and at least two values
+     * @return the samples with their timebase
+     */
+    private static Samples toSamples(ArrayList<Integer> wave, ArrayList<Double> timings){
+        int[] values = new int[wave.size()];
+        for (int i = 0; i < values.length; i++){
+            values[i] = wave.get(i);
+        }
+        return new Samples((long) (double) timings.get(0), (long) (timings.get(1) - timings.get(0)), values);
+    }
+
+    /**
+     * Copy of the AND combination in Waveform(Waveform, Waveform, Boolean)
+     * @return the combined values or null if the original would throw a SpecViolation
+     */
+    private static ArrayList<Integer> andCombination(ArrayList<Integer> waveA, ArrayList<Double> timingsA, ArrayList<Integer> waveB, ArrayList<Double> timingsB){
+
+        if (timingsA.size() != timingsB.size() || !timingsA.get(0).equals(timingsB.get(0))
+            || timingsA.get(1) - timingsA.get(0) != timingsB.get(1) - timingsB.get(0)){
+            return null;
+        }
+
+        ArrayList<Integer> wave = new ArrayList<>();
+        for (int index = 0; index < waveA.size(); index++) {
+            wave.add(waveA.get(index) & waveB.get(index));
+        }
+        return wave;
+    }
+
+    /**
+     * Copy of the specialised XOR combination in Waveform(Waveform, Waveform, Boolean)
+     * @return the combined values or null if the original would throw a SpecViolation
+     */
+    private static ArrayList<Integer> xorCombination(ArrayList<Integer> waveA, ArrayList<Double> timingsA, ArrayList<Integer> waveB, ArrayList<Double> timingsB){
+
+        if (!timingsA.get(0).equals(timingsB.get(0)) || timingsA.get(1) - timingsA.get(0) != timingsB.get(1) - timingsB.get(0)){
+            return null;
+        }
+
+        boolean wave1Larger = timingsA.size() >= timingsB.size();
+        int size = wave1Larger ? timingsB.size() : timingsA.size();
+
+        ArrayList<Integer> wave = new ArrayList<>();
+        for (int index = 0; index < size; index++) {
+            if (waveA.get(index) == 1 && waveB.get(index) == 0){
+                wave.add(1);
+            } else {
+                wave.add(0);
+            }
+        }
+
+        if(wave1Larger){
+            for (int i = size; i < timingsA.size(); i++){
+                wave.add(waveA.get(i));
+            }
+        } else {
+            for (int i = size; i < timingsB.size(); i++){
+                wave.add(0);
+            }
+        }
+        return wave;
+    }
+
+    /**
+     * Copy of Waveform.waveGenerator
+     * @param timings list the timings of each value are added to; non-null and empty
+     */
+    private static ArrayList<Integer> waveGenerator(double MOI, double MRSCycles, double timeScale, double steps, double prop, double cycleCalibrationTime, double startCycle, double startTime, ArrayList<Double> timings){
+
+        ArrayList<Integer> wave = new ArrayList<>();
+        double cycleCalibration = cycleCalibrationTime*java.lang.Math.sqrt((MOI/132.905));
+        double timeOn = cycleCalibration*MRSCycles;
+
+        Boolean extend = false;
+        Boolean prevValue = false;
+        double prevState = 0;
+
+        double startB = 0;
+        if (startCycle != 0 ){
+            startB += 5 * (int) ((((32800) * java.lang.Math.sqrt((MOI / 132.905))) -
+                (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2) + (startCycle * cycleCalibration)) / 5);
+        }
+        else if (startTime != 0){
+            startB += startTime;
+        } else {
+            startB += 5 * (int) ((((32800) * java.lang.Math.sqrt((MOI / 132.905))) -
+                (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2)) / 5);
+        }
+
+        double startA = 0;
+        if (startCycle != 0 ){
+            startA += 5 * (int) ((((32800) * java.lang.Math.sqrt((MOI / 132.905))) -
+                (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2) + (startCycle * cycleCalibration)) / 5);
+        }
+        else if (startTime != 0){
+            startA += startTime;
+        }
+
+        if (waveFormula(timeOn + startB, MOI, MRSCycles, prop, false, cycleCalibrationTime, startA, 0, false, startCycle).value){
+            extend = true;
+        }
+
+        for(double i = startA; i < timeScale + startA; i = i + (int)(timeScale/steps)){
+            timings.add(i);
+
+            if (!extend) {
+                Pair answer = waveFormula(i, MOI, MRSCycles, prop, false, cycleCalibrationTime, startA, prevState, prevValue, startCycle);
+                prevState = answer.time;
+                prevValue = answer.value;
+                wave.add(prevValue ? 1 : 0);
+            }
+            else{
+                if (i < timeOn + startB || i > + timeOn + startB + 5*(int)(((1-prop)*cycleCalibration/2)/5)){
+                    Pair answer1 = waveFormula(i, MOI, MRSCycles, prop, false, cycleCalibrationTime, startA, prevState, prevValue, startCycle);
+                    prevState = answer1.time;
+                    prevValue = answer1.value;
+                    wave.add(prevValue ? 1 : 0);
+                }
+                else if (i > timeOn + startB && !waveFormula(i, MOI, MRSCycles, prop, extend, cycleCalibrationTime, startA, prevState, prevValue, startCycle).value){
+                    Pair answer2 = waveFormula(i, MOI, MRSCycles, prop, extend, cycleCalibrationTime, startA, prevState, prevValue, startCycle);
+                    prevState = answer2.time;
+                    prevValue = answer2.value;
+                    extend = false;
+                    wave.add(0);
+                }
+                else{
+                    Pair answer3 = waveFormula(i, MOI, MRSCycles, prop, extend, cycleCalibrationTime, startA, prevState, prevValue, startCycle);
+                    prevState = answer3.time;
+                    prevValue = answer3.value;
+                    wave.add(prevValue ? 1 : 0);
+                }
+            }
+        }
+
+        return wave;
+    }
+
+    /**
+     * Copy of Waveform.waveFormula
+     */
+    private static Pair waveFormula(double time, double MOI, double MRSCycles, double prop, Boolean extend, double cycleCalibrationTime, double start, double prevState, Boolean Val, double startCycle){
+
+        double timeCounter = 0;
+        double cycleCalibration = cycleCalibrationTime*java.lang.Math.sqrt((MOI/132.905));
+        double timeOn = cycleCalibration*MRSCycles;
+        double timeDelay = 5*(int)((((32800)*java.lang.Math.sqrt((MOI/132.905))) - (5*(int)((prop*cycleCalibration/2)/5)/2))/5);
+        Pair info = new Pair(false, 0);
+        double startTime = 0;
+
+        if (start == 0){
+            startTime += timeDelay;
+        }
+        else{
+            startTime += start;
+        }
+
+        if (extend){
+            if (time <= startTime) {
+                return info;
+            }
+            if (time >= timeOn + startTime + 5*(int)(((1-prop)*cycleCalibration/2)/5)){
+                return new Pair(false, timeOn + startTime + 5*(int)(((1-prop)*cycleCalibration/2)/5));
+            }
+        }
+
+        if (!extend){
+            if (time <= startTime){
+                return info;
+            }
+            if (time > timeOn + startTime){
+                return new Pair(false, timeOn + startTime);
+            }
+        }
+
+        if (prevState == 0) {
+            if (startCycle != 0){
+                timeCounter += 5 * (int) ((((32800) * java.lang.Math.sqrt((MOI / 132.905))) -
+                    (5 * (int) ((prop * cycleCalibration / 2) / 5) / 2) + (startCycle * cycleCalibration)) / 5);
+            } else {
+                timeCounter += timeDelay;
+            }
+        }
+        else{
+            timeCounter = prevState;
+        }
+
+        Boolean changed = false;
+
+        while (timeCounter < time){
+
+            if (!Val || changed) {
+                timeCounter += 5 * (int) ((prop * cycleCalibration / 2) / 5);
+                if (timeCounter >= time) {
+                    return new Pair(false, timeCounter - 5 * (int) ((prop * cycleCalibration / 2) / 5));
+                }
+                changed = true;
+            }
+
+            if (Val || changed) {
+                timeCounter += 5 * (int) (((1 - prop) * cycleCalibration / 2) / 5);
+                if (timeCounter > time) {
+                    return new Pair(true, timeCounter - 5 * (int) (((1 - prop) * cycleCalibration / 2) / 5));
+                }
+                changed = true;
+            }
+
+            if (timeCounter == time){
+                return new Pair(false, timeCounter);
+            }
+        }
+
+        return info;
+    }
+
+    /**
+     * Value and time pair returned by waveFormula (copy of ReturnBooleanDouble)
+     */
+    private static final class Pair {
+
+        private final boolean value;
+
+        private final double time;
+
+        private Pair(boolean value, double time){
+            this.value = value;
+            this.time = time;
+        }
+    }
+}
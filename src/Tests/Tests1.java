@@ -1,12 +1,49 @@
 package Tests;
 
+import DualSpeciesIsolation.ArrivalDistribution;
+import DualSpeciesIsolation.BeatPredictor;
+import DualSpeciesIsolation.ContaminationMatrix;
+import DualSpeciesIsolation.CycleCalibration;
+import DualSpeciesIsolation.DeltaTPairs;
+import DualSpeciesIsolation.DualMRSWaveformStatistics;
+import DualSpeciesIsolation.HistogramQuery;
+import DualSpeciesIsolation.IOISweep;
+import DualSpeciesIsolation.IntervalWave;
+import DualSpeciesIsolation.MRSTiming;
+import DualSpeciesIsolation.NpyWriter;
+import DualSpeciesIsolation.ParameterSweep;
 import DualSpeciesIsolation.PulseGenerator;
 import DualSpeciesIsolation.RepresentationViolation;
+import DualSpeciesIsolation.ScopeTrace;
+import DualSpeciesIsolation.SegmentHistogram;
+import DualSpeciesIsolation.SpecViolation;
+import DualSpeciesIsolation.StartCycleSweep;
+import DualSpeciesIsolation.TraceComparison;
+import DualSpeciesIsolation.TransmissionEstimator;
+import DualSpeciesIsolation.Segments;
+import DualSpeciesIsolation.ValueChangeFile;
+import DualSpeciesIsolation.WaveGrapher;
 import DualSpeciesIsolation.Waveform;
+import DualSpeciesIsolation.WaveformIndex;
+import DualSpeciesIsolation.WaveSpectrum;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import javax.swing.JProgressBar;
+import javax.swing.JTextField;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -333,6 +370,702 @@ public class Tests1 {
         Assertions.assertEquals(0, a);
     }
 
+    @Test
+    /*
+     * Ensure that sampling on the tick grid gives the same statistics as sampling every nanosecond
+     */
+    public void checkTickAlignedPulseScheme(){
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 20, 0.4, 22682.5);
+        int[] a = PulseGenerator.pulseScheme(94, 66, 20, 0.4, timeScale, timeScale, 10, 22682.5);
+        int[] b = PulseGenerator.pulseScheme(94, 66, 20, 0.4, timeScale, 10, 22682.5);
+
+        Assertions.assertArrayEquals(a, b);
+    }
+
+    @Test
+    /*
+     * Check the nanosecond statistics of a waveform given by its edges
+     */
+    public void checkEdgeSegmentScheme(){
+        int[] a = PulseGenerator.segmentScheme(new long[]{10, 13, 30}, 0, 0, 100, 1, 5);
+
+        Assertions.assertArrayEquals(new int[]{1, 3, 1, 0, 73, 3, 10, 12, 9, 0}, a);
+    }
+
+    @Test
+    /*
+     * Ensure that the segment histogram gives the peaks of pulseScheme for any adjacency break
+     */
+    public void checkSegmentHistogram(){
+        Segments segments = PulseGenerator.pulseSegments(94, 66, 20, 0.4, PulseGenerator.getSuggestedTimeScale(94, 20, 0.4, 22682.5), 22682.5);
+        try {
+            SegmentHistogram histogram = SegmentHistogram.parse(new SegmentHistogram(segments).toString().split(" "), 0);
+            for (int adjacencyBreak : new int[]{2, 10, 1000, 4537, 100000}) {
+                int[] a = PulseGenerator.segmentScheme(segments, adjacencyBreak);
+                Assertions.assertEquals(a[0], histogram.getPeaks(adjacencyBreak));
+                Assertions.assertEquals(a[2], histogram.getIndetPeaks(adjacencyBreak));
+                Assertions.assertEquals(a[3], histogram.getInclPeaks(adjacencyBreak));
+            }
+        } catch (RepresentationViolation e){
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the histogram file of a scan, closed once every pair is written, gives the peaks of pulseScheme for
+     * new adjacency breaks in ns
+     */
+    public void checkHistogramQuery() throws IOException, RepresentationViolation{
+        File scan = File.createTempFile("scan", ".txt");
+        File histograms = File.createTempFile("histograms", ".txt");
+        scan.deleteOnExit();
+        histograms.deleteOnExit();
+        FileWriter scanWriter = new FileWriter(scan);
+        DualMRSWaveformStatistics.DualMRSMassScanner(2, 100, 103, 20, 0.5, 1000, false, scanWriter, new JTextField(),
+            new JProgressBar(), 22682.5, true, new FileWriter(histograms));
+        scanWriter.close();
+
+        for (long adjacencyBreak : new long[]{500, 3000}){
+            StringWriter query = new StringWriter();
+            try (BufferedReader reader = new BufferedReader(new FileReader(histograms))){
+                HistogramQuery.query(reader, query, adjacencyBreak);
+            }
+            String[] lines = query.toString().split("\n");
+            //the pairs of the trapezoid 100 to 103 with a window of 2 (see DualMRSMassScanner)
+            Assertions.assertEquals(1 + 9, lines.length);
+            for (int k = 1; k < lines.length; k++){
+                String[] columns = lines[k].trim().split("\\s+");
+                int mass1 = Integer.parseInt(columns[0]);
+                int mass2 = Integer.parseInt(columns[1]);
+                int[] expected = PulseGenerator.pulseScheme(mass1, mass2, 20, 0.5,
+                    PulseGenerator.getSuggestedTimeScale(mass2, 20, 0.5, 22682.5), (int) adjacencyBreak, 22682.5);
+                Assertions.assertEquals(expected[2], Integer.parseInt(columns[2]));
+                Assertions.assertEquals(expected[0], Integer.parseInt(columns[3]));
+                Assertions.assertEquals(expected[3], Integer.parseInt(columns[4]));
+            }
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that expanding the value change export gives the per sample export
+     */
+    public void checkValueChangeExport() throws IOException{
+        File dense = File.createTempFile("dense", ".txt");
+        File changes = File.createTempFile("changes", ".txt");
+        dense.deleteOnExit();
+        changes.deleteOnExit();
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+
+        WaveGrapher.singleMassPairWaveGrapher(94, 66, timeScale, timeScale/3, 5, 0.4, new FileWriter(dense), 22682.5, false);
+        WaveGrapher.singleMassPairWaveGrapher(94, 66, timeScale, timeScale/3, 5, 0.4, new FileWriter(changes), 22682.5, true);
+
+        StringWriter expanded = new StringWriter();
+        try (BufferedReader reader = new BufferedReader(new FileReader(changes))) {
+            ValueChangeFile.expand(reader, expanded);
+        } catch (RepresentationViolation e){
+            Assertions.fail(e);
+        }
+        Assertions.assertEquals(Files.readString(dense.toPath()), expanded.toString());
+        Assertions.assertTrue(changes.length() * 100 < dense.length());
+    }
+
+    @Test
+    /*
+     * Ensure that the VCD export has the header of the five channels and a transition at every edge of each waveform
+     */
+    public void checkVCDExport() throws IOException, SpecViolation{
+        File dump = File.createTempFile("waves", ".vcd");
+        dump.deleteOnExit();
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+        WaveGrapher.writeVCD(94, 66, 80, timeScale, timeScale/2, 5, 0.4, dump.toPath(), 22682.5, 0, true);
+
+        MRSTiming heavy = new MRSTiming(94, 0.4, 22682.5);
+        Waveform waveA = new Waveform(94, 5.0, timeScale, timeScale/2, 0.4, 22682.5, 0);
+        Waveform waveB = new Waveform(66, timeScale, timeScale/2, 0.4, heavy.getTimeOn(5), 22682.5, 0L);
+        Waveform waveIOI = new Waveform(80, timeScale, timeScale/2, 0.4, heavy.getTimeOn(5), 22682.5, 0L);
+        Waveform combined = new Waveform(waveA, waveB, false);
+        Waveform[] waves = {waveA, waveB, combined, waveIOI, new Waveform(combined, waveIOI, true)};
+
+        List<String> lines = Files.readAllLines(dump.toPath());
+        Assertions.assertTrue(lines.contains("$timescale 1 ns $end"));
+        List<String> codes = new ArrayList<>();
+        for (String line : lines){
+            if (line.startsWith("$var wire 1 ")){
+                codes.add(line.split(" ")[3]);
+            }
+        }
+        Assertions.assertEquals(5, codes.size());
+
+        int line = lines.indexOf("$dumpvars") + 1;
+        for (int c = 0; c < waves.length; c++){
+            Assertions.assertEquals(waves[c].getValue(0) + codes.get(c), lines.get(line++));
+        }
+        Assertions.assertEquals("$end", lines.get(line++));
+
+        List<List<Long>> changes = new ArrayList<>();
+        for (int c = 0; c < waves.length; c++){
+            changes.add(new ArrayList<>());
+        }
+        long time = 0;
+        for (; line < lines.size(); line++){
+            if (lines.get(line).startsWith("#")){
+                time = Long.parseLong(lines.get(line).substring(1));
+            } else {
+                changes.get(codes.indexOf(lines.get(line).substring(1))).add(time);
+            }
+        }
+        Assertions.assertEquals(waves[0].getTime(waves[0].size() - 1) + waves[0].getResolution(), time);
+        for (int c = 0; c < waves.length; c++){
+            List<Long> edges = new ArrayList<>();
+            for (int i = 1; i < waves[c].size(); i++){
+                if (waves[c].getValue(i) != waves[c].getValue(i - 1)){
+                    edges.add(waves[c].getTime(i));
+                }
+            }
+            Assertions.assertFalse(edges.isEmpty());
+            Assertions.assertEquals(edges, changes.get(c));
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the .npy exports read back with the NumPy header, 64 byte aligned data, packbits bit order and
+     * int32 cells of the pulseScheme statistics
+     */
+    public void checkNpyExport() throws IOException, SpecViolation{
+        File bits = File.createTempFile("waves", ".npy");
+        bits.deleteOnExit();
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+        Waveform waveA = new Waveform(94, 5.0, timeScale, timeScale/2, 0.4, 22682.5, 0);
+        Waveform waveB = new Waveform(66, 5.0, timeScale, timeScale/2, 0.4, 22682.5, 0);
+        NpyWriter.writeBits(bits.toPath(), waveA, waveB);
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(bits.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        Assertions.assertEquals((byte) 0x93, data.get(0));
+        Assertions.assertEquals("NUMPY", new String(data.array(), 1, 5, StandardCharsets.US_ASCII));
+        int start = 10 + data.getShort(8);
+        Assertions.assertEquals(0, start % 64);
+        String header = new String(data.array(), 10, start - 10, StandardCharsets.US_ASCII);
+        int rowBytes = (waveA.size() + 7)/8;
+        Assertions.assertTrue(header.startsWith("{'descr': '|u1', 'fortran_order': False, 'shape': (2, " + rowBytes + "), }"));
+        Assertions.assertEquals(start + 2*rowBytes, data.limit());
+        for (int i = 0; i < waveA.size(); i += 97){
+            //numpy.packbits order: the first value is the most significant bit of each byte
+            Assertions.assertEquals(waveA.getValue(i), (data.get(start + i/8) >> (7 - i % 8)) & 1);
+            Assertions.assertEquals(waveB.getValue(i), (data.get(start + rowBytes + i/8) >> (7 - i % 8)) & 1);
+        }
+
+        //deleteOnExit does not remove a directory that still holds files, so the matrices are deleted here
+        Path directory = Files.createTempDirectory("matrices");
+        try {
+            DualMRSWaveformStatistics.DualMRSMassMatrix(100, 102, 50, 0.5, 1000, 22682.5, directory);
+            for (String name : new String[]{"peaks", "onTime"}){
+                data = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(name + ".npy"))).order(ByteOrder.LITTLE_ENDIAN);
+                start = 10 + data.getShort(8);
+                Assertions.assertEquals(0, start % 64);
+                header = new String(data.array(), 10, start - 10, StandardCharsets.US_ASCII);
+                Assertions.assertTrue(header.startsWith("{'descr': '<i4', 'fortran_order': False, 'shape': (3, 3), }"));
+                int statistic = name.equals("peaks") ? 0 : 4;
+                for (int a = 0; a < 3; a++){
+                    for (int b = a; b < 3; b++){
+                        int expected = PulseGenerator.pulseScheme(100 + a, 100 + b, 50, 0.5,
+                            PulseGenerator.getSuggestedTimeScale(100 + b, 50, 0.5, 22682.5), 1000, 22682.5)[statistic];
+                        Assertions.assertEquals(expected, data.getInt(start + 4*(3*a + b)));
+                        Assertions.assertEquals(expected, data.getInt(start + 4*(3*b + a)));
+                    }
+                }
+            }
+        } finally {
+            for (File matrix : directory.toFile().listFiles()){
+                matrix.delete();
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the values of interest are the combined wave from the end of its first segment up to the start of
+     * its last segment, with the lighter mass ON as long as the heavier one
+     */
+    public void checkValuesOfInterest() throws IOException, SpecViolation{
+        File values = File.createTempFile("values", ".txt");
+        values.deleteOnExit();
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+        WaveGrapher.writeValuesOfInterest(66, 94, 5, timeScale, timeScale/2, 0.4, new FileWriter(values), 22682.5);
+
+        Waveform waveA = new Waveform(94, 5.0, timeScale, timeScale/2, 0.4, 22682.5, 0);
+        Waveform waveB = new Waveform(66, timeScale, timeScale/2, 0.4, 22682.5*java.lang.Math.sqrt(94/132.905)*5, 22682.5, 0L);
+        Waveform combined = new Waveform(waveA, waveB, false);
+        int start = 1;
+        while (combined.getValue(start) == combined.getValue(0)){
+            start++;
+        }
+        int end = combined.size() - 1;
+        while (combined.getValue(end - 1) == combined.getValue(combined.size() - 1)){
+            end--;
+        }
+
+        List<String> lines = Files.readAllLines(values.toPath());
+        Assertions.assertEquals(end - start, lines.size());
+        for (int i = start; i < end; i++){
+            Assertions.assertEquals(Integer.toString(combined.getValue(i)), lines.get(i - start));
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the sweep rows are in grid order and hold the IOI on time and pulseScheme of their grid point, and
+     * that a failed grid point is reported instead of leaving a row out
+     */
+    public void checkParameterSweep() throws SpecViolation{
+        double[] props = {0.4, 0.5};
+        double[] cycleCalibs = {22682.5};
+        double[] MRSCycles = {5, 10};
+        double[] startCycles = {0, 2};
+        int[][] rows = ParameterSweep.sweep(94, 66, 80, true, props, cycleCalibs, MRSCycles, startCycles, 20, null);
+        Assertions.assertEquals(8, rows.length);
+
+        int row = 0;
+        for (double prop : props){
+            for (double cycles : MRSCycles){
+                int timeScale = PulseGenerator.getSuggestedTimeScale(94, cycles, prop, 22682.5);
+                int[] scheme = PulseGenerator.pulseScheme(94, 66, cycles, prop, timeScale, 20, 22682.5);
+                for (double startCycle : startCycles){
+                    int window = startCycle != 0 ? PulseGenerator.getSuggestedTimeScaleShifted(94, cycles, prop, 22682.5) : timeScale;
+                    Assertions.assertEquals(ParameterSweep.COLUMNS, rows[row].length);
+                    Assertions.assertEquals(PulseGenerator.IOIWaveformOnTime(94, 66, 80, cycles, prop, window, window,
+                        22682.5, startCycle, true), rows[row][0]);
+                    for (int k = 0; k < scheme.length; k++){
+                        Assertions.assertEquals(scheme[k], rows[row][k + 1]);
+                    }
+                    row++;
+                }
+            }
+        }
+
+        //a null dualAndComb fails inside the grid point tasks
+        Assertions.assertThrows(SpecViolation.class, () -> ParameterSweep.sweep(94, 66, 80, null, props, cycleCalibs,
+            MRSCycles, startCycles, 20, null));
+    }
+
+    @Test
+    /*
+     * Ensure that the optimiser finds the best normalized On Time of an exhaustive pulseScheme grid within the peak
+     * and leakage bounds, for single pairs and in parallel
+     */
+    public void checkOptimiseSettings(){
+        //{MOI1, MOI2, IOI, adjacencyBreak, maxPeaks, maxLeakage}; each bound changes the best setting of its pair
+        double[][] cases = {{94, 66, 80, 1000, 0, -1}, {120, 100, 110, 50, 3, 500}};
+        double[][] pairs = new double[cases.length][];
+        for (int k = 0; k < cases.length; k++){
+            double[] c = cases[k];
+            double[] fit = PulseGenerator.optimiseSettings(c[0], c[1], c[2], 2, 25, 1, 0.3, 0.5, 0.01, (int) c[3], (int) c[4], (int) c[5], 22682.5);
+
+            double best = -1;
+            double unbounded = -1;
+            for (int i = 0; i <= 23; i++){
+                for (int j = 0; j <= 20; j++){
+                    double cycles = 2 + i;
+                    double prop = 0.3 + j*0.01;
+                    int timeScale = PulseGenerator.getSuggestedTimeScale(c[0], cycles, prop, 22682.5);
+                    int[] scheme = PulseGenerator.pulseScheme(c[0], c[1], cycles, prop, timeScale, (int) c[3], 22682.5);
+                    unbounded = java.lang.Math.max(unbounded, scheme[9]);
+                    if (scheme[9] <= best || (c[4] >= 0 && scheme[0] > c[4])){
+                        continue;
+                    }
+                    if (c[5] < 0 || PulseGenerator.IOIWaveformOnTime(c[0], c[1], c[2], cycles, prop, timeScale, timeScale, 22682.5, 0, true) <= c[5]){
+                        best = scheme[9];
+                    }
+                }
+            }
+            Assertions.assertTrue(best > 0 && best < unbounded);
+            Assertions.assertEquals(best, fit[2]);
+            Assertions.assertTrue(fit[3] <= c[4]);
+            Assertions.assertTrue(c[5] < 0 || fit[4] <= c[5]);
+            pairs[k] = new double[]{c[0], c[1], c[2]};
+        }
+
+        double[][] parallel = PulseGenerator.optimiseSettings(pairs, 2, 25, 1, 0.3, 0.5, 0.01, 50, 3, 500, 22682.5);
+        Assertions.assertArrayEquals(PulseGenerator.optimiseSettings(94, 66, 80, 2, 25, 1, 0.3, 0.5, 0.01, 50, 3, 500, 22682.5), parallel[0]);
+        Assertions.assertArrayEquals(PulseGenerator.optimiseSettings(120, 100, 110, 2, 25, 1, 0.3, 0.5, 0.01, 50, 3, 500, 22682.5), parallel[1]);
+
+        //a pair that can not be optimised fails the whole run rather than leaving its result null
+        Assertions.assertThrows(IllegalStateException.class, () -> PulseGenerator.optimiseSettings(new double[][]{{94, 66, 80}, {94}},
+            2, 5, 1, 0.3, 0.5, 0.1, 50, 3, 500, 22682.5));
+    }
+
+    @Test
+    /*
+     * Ensure that the preview scan refines every pair of a sharply changing map at full resolution
+     */
+    public void checkMassScanPreview(){
+        StringWriter writer = new StringWriter();
+        DualMRSWaveformStatistics.DualMRSMassScanPreview(3, 100, 110, 50, 0.5, 1000, 4, 100, -1, -1, -1, writer, 22682.5);
+
+        int refined = 0;
+        for (String line : writer.toString().split("\n")){
+            String[] values = line.trim().split("\\s+");
+            if (values[0].equals("R")){
+                int mass1 = Integer.parseInt(values[1]);
+                int mass2 = Integer.parseInt(values[2]);
+                int[] expected = PulseGenerator.pulseScheme(mass1, mass2, 50, 0.5,
+                    PulseGenerator.getSuggestedTimeScale(mass2, 50, 0.5, 22682.5), 1000, 22682.5);
+                Assertions.assertEquals(expected[0], Integer.parseInt(values[4]));
+                Assertions.assertEquals(expected[9], Integer.parseInt(values[10]));
+                refined++;
+            }
+        }
+        //pairs 100 <= i <= j <= 110 with j - i <= 3
+        Assertions.assertEquals(38, refined);
+    }
+
+    @Test
+    /*
+     * Ensure that the fractional mass scan gives the statistics of pulseScheme at the same masses
+     */
+    public void checkFractionalMassScan(){
+        StringWriter writer = new StringWriter();
+        DualMRSWaveformStatistics.DualMRSMassScanner(new double[]{94.95, 65.93, 94.9}, 40, 5, 0.4, 1000, false, writer, 22682.5);
+
+        String[] lines = writer.toString().split("\n");
+        Assertions.assertEquals(7, lines.length);
+        for (int k = 1; k < lines.length; k++){
+            String[] values = lines[k].trim().split("\\s+");
+            double mass1 = Double.parseDouble(values[0]);
+            double mass2 = Double.parseDouble(values[1]);
+            int timeScale = PulseGenerator.getSuggestedTimeScale(mass2, 5, 0.4, 22682.5);
+            int[] expected = PulseGenerator.pulseScheme(mass1, mass2, 5, 0.4, timeScale, timeScale, 1000, 22682.5);
+            Assertions.assertEquals(expected[0], Integer.parseInt(values[3]));
+            Assertions.assertEquals(expected[4], Integer.parseInt(values[5]));
+            Assertions.assertEquals(expected[9], Integer.parseInt(values[9]));
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the IOI sweep against a shared gate gives IOIWaveformOnTime and adjacentIOILengths
+     */
+    public void checkIOISweep(){
+        double[] IOIs = {60.5, 66, 80, 94, 101.25};
+        IOISweep sweep = new IOISweep(94, 66, 5, 0.4, 22682.5, 3, true);
+        int timeScale = sweep.getTimeScale();
+        int[] onTimes = sweep.onTimes(IOIs);
+        List<ArrayList<Integer>> lengths = sweep.adjacentLengths(IOIs);
+
+        for (int k = 0; k < IOIs.length; k++){
+            Assertions.assertEquals(PulseGenerator.IOIWaveformOnTime(94, 66, IOIs[k], 5, 0.4, timeScale, timeScale, 22682.5, 3, true), onTimes[k]);
+            Assertions.assertEquals(PulseGenerator.adjacentIOILengths(94, 66, IOIs[k], 5, 0.4, timeScale, timeScale, 22682.5, 3, true), lengths.get(k));
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the contamination matrix holds the on time and delta t pairs of every candidate
+     */
+    public void checkContaminationMatrix(){
+        double[] candidates = {66.5, 80, 101};
+        IOISweep sweep = new IOISweep(94, 66, 5, 0.4, 22682.5, 0, true);
+        int[][] matrix = sweep.contaminationMatrix(candidates);
+
+        for (int k = 0; k < candidates.length; k++){
+            ArrayList<List<Integer>> pairs = PulseGenerator.SingleMRSdeltaTPairs(94, 66, candidates[k], 5, 0.4, 22682.5, 0, true);
+            Assertions.assertEquals(pairs, sweep.deltaTPairs(candidates[k]));
+            Assertions.assertEquals(sweep.onTime(candidates[k]), matrix[k][0]);
+            Assertions.assertEquals(pairs.size(), matrix[k][1]);
+            Assertions.assertEquals(pairs.get(pairs.size() - 1).get(0), matrix[k][6]);
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that a candidate that can not be evaluated fails the contamination matrix rather than dropping its row
+     */
+    public void checkContaminationMatrixFailure() throws IOException, SpecViolation{
+        double[] candidates = {66.5, -80, 101};
+        IOISweep sweep = new IOISweep(94, 66, 5, 0.4, 22682.5, 0, true);
+        IllegalStateException failure = Assertions.assertThrows(IllegalStateException.class, () -> sweep.contaminationMatrix(candidates));
+        Assertions.assertTrue(failure.getCause() instanceof IllegalArgumentException);
+
+        //rows that do not line up with the candidates are not written
+        int[][] shortMatrix = sweep.contaminationMatrix(new double[]{66.5, 101});
+        StringWriter text = new StringWriter();
+        Assertions.assertThrows(SpecViolation.class, () -> ContaminationMatrix.write(text, candidates, shortMatrix));
+        Assertions.assertEquals("", text.toString());
+        ContaminationMatrix.write(text, new double[]{66.5, 101}, shortMatrix);
+        Assertions.assertEquals(3, text.toString().split("\n").length);
+    }
+
+    @Test
+    /*
+     * Ensure that the N species combination reduces to the dual combination and its IOI exclusion
+     */
+    public void checkSpeciesCombination(){
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+
+        Assertions.assertArrayEquals(PulseGenerator.pulseScheme(94, 66, 5, 0.4, timeScale, 1000, 22682.5),
+            PulseGenerator.pulseScheme(new double[]{66, 94}, new double[0], 5, 0.4, 1000, 22682.5, 0));
+        Assertions.assertEquals(PulseGenerator.IOIWaveformOnTime(94, 66, 80, 5, 0.4, timeScale, timeScale, 22682.5, 0, true),
+            PulseGenerator.speciesCombination(new double[]{94, 66}, new double[]{80}, 5, 0.4, timeScale, 22682.5, 0).onTime());
+
+        long dual = PulseGenerator.speciesCombination(new double[]{94, 66}, new double[]{80}, 5, 0.4, timeScale, 22682.5, 0).onTime();
+        long triple = PulseGenerator.speciesCombination(new double[]{94, 66, 71.5}, new double[]{80, 101}, 5, 0.4, timeScale, 22682.5, 0).onTime();
+        Assertions.assertTrue(triple <= dual);
+    }
+
+    @Test
+    /*
+     * Ensure that the start cycle sweep gives IOIWaveformOnTime for every start delay
+     */
+    public void checkStartCycleSweep(){
+        double[] startCycles = {0, 0.5, 3, 7.5};
+        int[] onTimes = new StartCycleSweep(94, 66, 5, 0.4, 22682.5, true).onTimes(80, startCycles);
+
+        for (int s = 0; s < startCycles.length; s++){
+            int timeScale = startCycles[s] != 0 ? PulseGenerator.getSuggestedTimeScaleShifted(94, 5, 0.4, 22682.5)
+                : PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+            Assertions.assertEquals(PulseGenerator.IOIWaveformOnTime(94, 66, 80, 5, 0.4, timeScale, timeScale, 22682.5, startCycles[s], true), onTimes[s]);
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the incremental MRSCycles sweep gives pulseScheme for every number of cycles
+     */
+    public void checkPulseSchemeCycles(){
+        double[] MRSCycles = {1, 2, 3, 4.5, 5, 9, 10, 25};
+        int[][] results = PulseGenerator.pulseSchemeCycles(94, 66, MRSCycles, 0.4, 1000, 22682.5);
+
+        for (int k = 0; k < MRSCycles.length; k++){
+            int timeScale = PulseGenerator.getSuggestedTimeScale(94, MRSCycles[k], 0.4, 22682.5);
+            Assertions.assertArrayEquals(PulseGenerator.pulseScheme(94, 66, MRSCycles[k], 0.4, timeScale, timeScale, 1000, 22682.5), results[k]);
+        }
+
+        //the numbers of cycles may be given in any order
+        double[] shuffled = {25, 4.5, 1, 10, 2, 9, 3, 5};
+        int[][] shuffledResults = PulseGenerator.pulseSchemeCycles(94, 66, shuffled, 0.4, 1000, 22682.5);
+        for (int k = 0; k < shuffled.length; k++){
+            Assertions.assertArrayEquals(results[Arrays.binarySearch(MRSCycles, shuffled[k])], shuffledResults[k]);
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the beat prediction gives the statistics and switches of the sampled waveform
+     */
+    public void checkBeatPredictor() throws SpecViolation{
+        BeatPredictor predictor = new BeatPredictor(94, 66, 5, 0.4, 22682.5);
+        int timeScale = predictor.getTimeScale();
+        int[] sampled = PulseGenerator.pulseScheme(94, 66, 5, 0.4, timeScale, timeScale, 1000, 22682.5);
+
+        Assertions.assertArrayEquals(sampled, predictor.predict(1000));
+        Assertions.assertArrayEquals(sampled, predictor.predict(1000, true));
+        Assertions.assertEquals(sampled[1], predictor.switchTimes().length);
+
+        //long combinations, where most cycles of the lighter mass are predicted from the phase of the beat
+        double[][] cases = {{94, 66, 850, 0.4}, {94, 66, 200, 0.6}, {85, 87, 300, 0.5}, {133, 39, 400, 0.8},
+            {100, 100, 100, 0.4}, {120, 119, 500, 0.6}, {200, 20, 100, 0.3}, {251.5, 17, 733.5, 0.15}};
+        for (double[] c : cases){
+            BeatPredictor beat = new BeatPredictor(c[0], c[1], c[2], c[3], 22682.5);
+            MRSTiming heavy = new MRSTiming(java.lang.Math.max(c[0], c[1]), c[3], 22682.5);
+            MRSTiming light = new MRSTiming(java.lang.Math.min(c[0], c[1]), c[3], 22682.5);
+            Segments segments = PulseGenerator.pulseSegments(heavy, light, c[2], beat.getTimeScale());
+            for (int adjacencyBreak : new int[]{5, 300, 1000, 5000}){
+                Assertions.assertArrayEquals(PulseGenerator.pulseScheme(segments, java.lang.Math.max(c[0], c[1]), c[2], c[3], adjacencyBreak, 22682.5),
+                    beat.predict(adjacencyBreak));
+            }
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the waveform index gives the on time, switches and next switch of a window
+     */
+    public void checkWaveformIndex(){
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+        Waveform wave = new Waveform(94, 5.0, timeScale, timeScale/5, 0.4, 22682.5, 0.0);
+        WaveformIndex index = wave.index();
+
+        long t0 = wave.getTime(wave.size()/3);
+        long t1 = wave.getTime(2*wave.size()/3);
+        long onTime = 0;
+        int switches = 0;
+        long next = -1;
+        for (int i = 1; i < wave.size(); i++){
+            long time = wave.getTime(i);
+            boolean edge = wave.getValue(i) != wave.getValue(i - 1);
+            if (time >= t0 && time < t1){
+                onTime += wave.getValue(i)*wave.getResolution();
+                switches += edge ? 1 : 0;
+            }
+            if (next < 0 && edge && time > t0){
+                next = time;
+            }
+        }
+
+        Assertions.assertEquals(onTime, index.onTime(t0, t1));
+        Assertions.assertEquals(switches, index.edgeCountIn(t0, t1));
+        Assertions.assertEquals(next, index.nextEdgeAfter(t0));
+        Assertions.assertEquals(-1, index.nextEdgeAfter(wave.getTime(wave.size() - 1)));
+    }
+
+    @Test
+    /*
+     * Ensure that the compact delta t pairs pair the sampled segment lengths with the MRS ends, with and without a
+     * start delay
+     */
+    public void checkCompactDeltaTPairs(){
+        for (double startCycle : new double[]{0, 2.5}){
+            MRSTiming timing = new MRSTiming(94, 0.4, 22682.5);
+            int timeScale = startCycle != 0 ? PulseGenerator.getSuggestedTimeScaleShifted(94, 5, 0.4, 22682.5)
+                : PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+            ArrayList<Integer> lengths = PulseGenerator.adjacentIOILengths(94, 66, 80, 5, 0.4, timeScale, timeScale, 22682.5, startCycle, true);
+            DeltaTPairs pairs = PulseGenerator.compactDeltaTPairs(94, 66, 80, 5, 0.4, 22682.5, startCycle, true);
+
+            long time = startCycle != 0 ? timing.getTimeDelay() + (long) (startCycle*2)*timing.getPeriod() : 0;
+            long end = (startCycle != 0 ? timing.getStartDelay(startCycle) : timing.getTimeDelay()) + timing.getPeriod();
+            int half = 1;
+            int k = 0;
+            for (int i = 0; i + 1 < lengths.size(); i += 2){
+                time += lengths.get(i) + lengths.get(i+1);
+                while (half <= 10 && time > end){
+                    half++;
+                    end += timing.getPeriod();
+                }
+                if (half <= 10){
+                    Assertions.assertEquals(half*10/2, pairs.getCycle(k));
+                    Assertions.assertEquals(lengths.get(i+1), pairs.getDeltaT(k));
+                    k++;
+                }
+            }
+            Assertions.assertEquals(k, pairs.size());
+            Assertions.assertEquals(pairs.toList(), PulseGenerator.SingleMRSdeltaTPairs(94, 66, 80, 5, 0.4, 22682.5, startCycle, true));
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that the expected on time is the on time without an arrival spread and the average of the on times of
+     * the moved IOI waveform for a histogram
+     */
+    public void checkTransmissionEstimator(){
+        IOISweep sweep = new IOISweep(94, 66, 5, 0.4, 22682.5, 0, true);
+        TransmissionEstimator exact = new TransmissionEstimator(sweep, ArrivalDistribution.gaussian(0, 0));
+        double[] onTimes = exact.expectedOnTimes(new double[]{66.5, 80, 101});
+        Assertions.assertEquals(sweep.onTime(66.5), onTimes[0], 1e-6);
+        Assertions.assertEquals(sweep.onTime(80), onTimes[1], 1e-6);
+        Assertions.assertEquals(sweep.onTime(101), onTimes[2], 1e-6);
+
+        MRSTiming timing = new MRSTiming(80, 0.4, 22682.5);
+        IntervalWave wave = new IntervalWave(timing, new MRSTiming(94, 0.4, 22682.5).getTimeOn(5)/timing.getCycleCalibration(), 0, 0, 0, sweep.getTimeScale());
+        TransmissionEstimator spread = new TransmissionEstimator(sweep, ArrivalDistribution.histogram(new long[]{-25, 40}, new double[]{1, 3}, 1));
+        double expected = 0.25*sweep.getGate().andNot(wave.shift(-25)).onTime() + 0.75*sweep.getGate().andNot(wave.shift(40)).onTime();
+        Assertions.assertEquals(expected, spread.expectedOnTime(80), 1e-6);
+    }
+
+    @Test
+    /*
+     * Ensure that the strongest peak of the spectrum of a single MRS waveform is its MRS frequency, and that the
+     * batch spectra are those of each mass pair
+     */
+    public void checkWaveSpectrum() throws SpecViolation{
+        MRSTiming timing = new MRSTiming(94, 0.4, 22682.5);
+        IntervalWave wave = new IntervalWave(timing, 50, 0, 0, 0, PulseGenerator.getSuggestedTimeScale(94, 50, 0.4, 22682.5));
+        WaveSpectrum spectrum = new WaveSpectrum(wave, 1 << 14);
+        int peak = spectrum.peaks(1)[0];
+        Assertions.assertEquals(1000.0/timing.getPeriod(), spectrum.getFrequency(peak), spectrum.getFrequency(1));
+        Assertions.assertEquals(spectrum.getPower(peak), spectrum.harmonics(peak, 2)[0]);
+
+        double[][] pairs = {{94, 66}, {101, 80}};
+        WaveSpectrum[] spectra = WaveSpectrum.batch(pairs, 5, 0.4, 22682.5, 1 << 12);
+        for (int k = 0; k < pairs.length; k++){
+            WaveSpectrum single = WaveSpectrum.combined(pairs[k][0], pairs[k][1], 5, 0.4, 22682.5, 1 << 12);
+            Assertions.assertEquals(single.getPower(single.peaks(1)[0]), spectra[k].getPower(spectra[k].peaks(1)[0]));
+        }
+
+        //the radix-2 transform only has a bit reversal for powers of two
+        for (int points : new int[]{0, 1, 3, 1000, -4}){
+            Assertions.assertThrows(SpecViolation.class, () -> new WaveSpectrum(wave, points));
+            Assertions.assertThrows(SpecViolation.class, () -> WaveSpectrum.batch(pairs, 5, 0.4, 22682.5, points));
+        }
+    }
+
+    @Test
+    /*
+     * Ensure that a scope trace of a simulated gate is read back as the gate and its edges match without error
+     */
+    public void checkScopeTrace() throws IOException, RepresentationViolation, SpecViolation{
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 5, 0.4, 22682.5);
+        IntervalWave gate = PulseGenerator.speciesCombination(new double[]{94, 66}, new double[0], 5, 0.4, timeScale, 22682.5, 0);
+        File trace = File.createTempFile("trace", ".csv");
+        trace.deleteOnExit();
+
+        StringBuilder text = new StringBuilder("TIME,CH1\n");
+        int run = 0;
+        for (int t = 0; t < timeScale; t += 2){
+            while (run < gate.getRunCount() && gate.getRunEnd(run) < t){
+                run++;
+            }
+            boolean hi = run < gate.getRunCount() && gate.getRunStart(run) <= t;
+            text.append((t - 2000)*1e-9).append(',').append(hi ? 3.3 : 0.02).append('\n');
+        }
+        Files.writeString(trace.toPath(), text);
+
+        ScopeTrace measured = ScopeTrace.readCSV(trace.toPath(), 0, 1, 1e9, 1.65, 0.5, 2);
+        Assertions.assertEquals(-2000, measured.getFirstTime(), 1e-6);
+        Assertions.assertEquals((timeScale + 1)/2, measured.getSamples());
+
+        TraceComparison comparison = TraceComparison.compare(measured.getWave(), gate, 10, 4);
+        Assertions.assertEquals(gate.switchTimes().length, comparison.getMatched());
+        Assertions.assertEquals(0, comparison.getUnmatchedMeasured());
+        Assertions.assertTrue(comparison.getMaxError() <= 1);
+
+        //the read wave only holds the words of its values and combines with simulated waves of the same window
+        Waveform wave = measured.getWave();
+        Assertions.assertEquals((wave.size() + 63)/64, wave.getBits().length);
+        Waveform values = new Waveform(wave.getWave(), 2);
+        Assertions.assertEquals(values, wave);
+        Assertions.assertEquals(wave, values);
+        Waveform heavy = new Waveform(new MRSTiming(94, 0.4, 22682.5), 5, 0, 0, 0, 2, wave.size());
+        Waveform leakage = new Waveform(wave, heavy, true);
+        Waveform both = new Waveform(wave, heavy, false);
+        for (int k = 0; k < wave.size(); k++){
+            Assertions.assertEquals(wave.getValue(k) == 1 && heavy.getValue(k) == 0 ? 1 : 0, leakage.getValue(k));
+            Assertions.assertEquals(wave.getValue(k) & heavy.getValue(k), both.getValue(k));
+        }
+
+        //a binary trace longer than a waveform can hold is rejected before anything is allocated
+        File samples = File.createTempFile("trace", ".bin");
+        samples.deleteOnExit();
+        Files.write(samples.toPath(), new byte[]{0, 100, 0, 100});
+        Waveform binary = ScopeTrace.readBinary(samples.toPath(), "|i1", 0, 4, 50, 10, 2).getWave();
+        Assertions.assertEquals(7, binary.size());
+        Assertions.assertEquals(1, binary.getValue(2));
+        Assertions.assertEquals(0, binary.getValue(4));
+        Assertions.assertThrows(RepresentationViolation.class,
+            () -> ScopeTrace.readBinary(samples.toPath(), "|i1", 0, 2e9, 50, 10, 1));
+    }
+
+    @Test
+    /*
+     * Ensure that the cycleCalib a dual MRS gate was simulated with is found again by correlation with the gate
+     */
+    public void checkCycleCalibration() throws SpecViolation{
+        MRSTiming heavy = new MRSTiming(94, 0.4, 22690.3);
+        MRSTiming light = new MRSTiming(66, 0.4, 22690.3);
+        int timeScale = PulseGenerator.getSuggestedTimeScale(94, 40, 0.4, 22690.3);
+        Waveform measured = new Waveform(new Waveform(heavy, 40, 0, 0, 0, 2, timeScale/2),
+            new Waveform(light, heavy.getTimeOn(40)/light.getCycleCalibration(), 0, 0, 0, 2, timeScale/2), false);
+
+        CycleCalibration calibration = new CycleCalibration(measured, 0, 94, 66, 40, 0.4, true);
+        Assertions.assertEquals(1, calibration.score(22690.3, MRSTiming.BASE_DELAY), 1e-9);
+        double[] fit = calibration.fit(22000, 23500, 41, 8);
+        Assertions.assertEquals(1, fit[2], 1e-9);
+        Assertions.assertEquals(22690.3, fit[0], 10);
+    }
+
  //   public static void main(String[] args){
  //       ArrayList<Double> a = PulseGenerator.getSingleMRSEnds(35, 30, 0.4, 22682.5);
  //       System.out.println(a.size());
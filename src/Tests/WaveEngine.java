@@ -0,0 +1,85 @@
+package Tests;
+
+/**
+ * An implementation of the sampled MRS engine that can be checked against the reference engine
+ * by the EquivalenceHarness. Every engine must reproduce the sampled behaviour of the reference
+ * bit for bit, including the 5 ns rounding of the half periods and the extended tail of the last cycle.
+ */
+public interface WaveEngine {
+
+    /**
+     * @return a short name used when reporting differences
+     */
+    String name();
+
+    /**
+     * Samples a single MRS waveform in the same way as Waveform(MOI, MRSCycles, timeScale, steps, prop, cycleCalib, MRSStartCycle)
+     * @param MOI Mass of Interest that is non zero and non negative
+     * @param MRSCycles Number of MRS Cycles/duty cycles for the wave; non-zero and non-negative, <= 850
+     * @param timeScale The time window for the wave in nanoseconds
+     * @param steps The number of steps plus 1 sets the number of data points
+     *              and therefore sets the resolution; greater than zero
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param cycleCalib time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param MRSStartCycle the number of MRS cycles used to delay the start of the MRS waveform; can not be negative
+     * @return the sampled waveform
+     */
+    Samples waveform(double MOI, double MRSCycles, int timeScale, int steps, double prop, double cycleCalib, double MRSStartCycle);
+
+    /**
+     * Samples a single MRS waveform in the same way as Waveform(MOI, timeScale, steps, prop, timeOn, cycleCalibration, MRSStartTime)
+     * @param MOI Mass of Interest that is non zero and non negative
+     * @param timeScale the time window for the wave in nanoseconds; greater than zero
+     * @param steps The number of steps plus 1 sets the number of data points
+     *            and therefore sets the resolution; greater than zero
+     * @param prop the percentage (in decimal) the duty cycle is OFF, 0 <= prop <= 1
+     * @param timeOn the time the MRS is ON in nanoseconds; greater than 0
+     * @param cycleCalibration time for 1 Cs 1333 cycle in ns; greater than zero
+     * @param MRSStartTime  the start time of the MRS waveform in nanoseconds; can not be negative
+     * @return the sampled waveform
+     */
+    Samples waveformTimeOn(double MOI, int timeScale, int steps, double prop, double timeOn, double cycleCalibration, long MRSStartTime);
+
+    /**
+     * Same contract as PulseGenerator.pulseScheme
+     */
+    int[] pulseScheme(double MOI1, double MOI2, double MRSCycles, double prop, int timeScale, int steps, int adjacencyBreak, double cycleCalib);
+
+    /**
+     * Same contract as PulseGenerator.IOIWaveformOnTime
+     */
+    int IOIWaveformOnTime(double MOI1, double MOI2, double IOI, double MRSCycles, double prop, int timeScale, int steps, double cycleCalib, double startCycle, Boolean dualAndComb);
+
+
+    /**
+     * Sampled values of a waveform together with its timebase
+     */
+    final class Samples {
+
+        /**
+         * Time of the first value in nanoseconds
+         */
+        public final long start;
+
+        /**
+         * Time between values in nanoseconds
+         */
+        public final long resolution;
+
+        /**
+         * Waveform values (values are 0 or 1)
+         */
+        public final int[] values;
+
+        /**
+         * @param start time of the first value in nanoseconds
+         * @param resolution time between values in nanoseconds
+         * @param values waveform values; non-null
+         */
+        public Samples(long start, long resolution, int[] values){
+            this.start = start;
+            this.resolution = resolution;
+            this.values = values;
+        }
+    }
+}